@@ -0,0 +1,54 @@
+package be.yami;
+
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Represents an object whose state may be saved to and restored from a
+ * checkpoint, e.g., a model enriched while following a growing log (see
+ * {@link be.yami.web.apache.ApacheUserSessionBuilder#follow(java.nio.file.Path)}).
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public interface Checkpointable {
+
+    /**
+     * Writes the state of this object to the given output.
+     *
+     * @param out The output of the checkpoint.
+     * @throws IOException If the state may not be written.
+     */
+    void saveState(DataOutput out) throws IOException;
+
+    /**
+     * Restores the state of this object from the given input, written by
+     * {@link #saveState(java.io.DataOutput)}. The current state of this object
+     * is replaced.
+     *
+     * @param in The input of the checkpoint.
+     * @throws IOException If the state may not be read.
+     */
+    void restoreState(DataInput in) throws IOException;
+
+}
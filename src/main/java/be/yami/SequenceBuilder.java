@@ -19,11 +19,14 @@ package be.yami;
  * limitations under the License.
  * #L%
  */
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.Vector;
 
 import be.yami.exception.SessionBuildException;
+import be.yami.io.CompressedInputs;
 
 /**
  * Represents an abstract SequenceBuilder. This object encapsulates methods to
@@ -148,4 +151,22 @@ public abstract class SequenceBuilder<S extends Sequence<E>, E extends SequenceE
      */
     public abstract void buildSessions(InputStream input) throws SessionBuildException;
 
+    /**
+     * Build the sequences from the entries of the given file. Compressed files
+     * (see {@link be.yami.io.Compression}) are decompressed on a background
+     * thread while the entries are processed. Each time a sequence is built,
+     * the listeners are notified.
+     *
+     * @param file The file to read.
+     * @throws SessionBuildException If an exception occurs during the building
+     * of the sessions.
+     */
+    public void buildSessions(Path file) throws SessionBuildException {
+        try (InputStream input = CompressedInputs.open(file)) {
+            buildSessions(input);
+        } catch (IOException ex) {
+            throw new SessionBuildException("Exception while reading input!", ex);
+        }
+    }
+
 }
@@ -0,0 +1,191 @@
+package be.yami.io;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An input stream reading its source on a background thread. The source is
+ * read by chunks, kept in a bounded buffer until they are consumed, so that
+ * the source (e.g., a decompressing stream) and the consumer of this stream
+ * (e.g., a parser) run concurrently on different cores.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class AsyncInputStream extends InputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncInputStream.class);
+
+    /**
+     * A chunk read from the source.
+     */
+    private static final class Chunk {
+
+        private final byte[] bytes;
+        private final int length;
+        private final IOException error;
+
+        Chunk(byte[] bytes, int length, IOException error) {
+            this.bytes = bytes;
+            this.length = length;
+            this.error = error;
+        }
+
+    }
+
+    private static final Chunk END = new Chunk(new byte[0], 0, null);
+
+    private final InputStream source;
+    private final BlockingQueue<Chunk> chunks;
+    private final Thread reader;
+    private Chunk current;
+    private int position;
+    private boolean closed;
+
+    /**
+     * Creates a new stream and starts reading the given source.
+     *
+     * @param source The source to read.
+     * @param chunkSize The size of the chunks read from the source.
+     * @param capacity The maximal number of chunks read ahead.
+     * @param name The name of the reading thread.
+     */
+    AsyncInputStream(InputStream source, int chunkSize, int capacity, String name) {
+        this.source = source;
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+        this.current = null;
+        this.position = 0;
+        this.closed = false;
+        this.reader = new Thread(() -> readSource(chunkSize), name);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void readSource(int chunkSize) {
+        try {
+            while (true) {
+                byte[] bytes = new byte[chunkSize];
+                int length = 0;
+                int read = 0;
+                while (length < chunkSize && (read = source.read(bytes, length, chunkSize - length)) >= 0) {
+                    length += read;
+                }
+                if (length > 0) {
+                    chunks.put(new Chunk(bytes, length, null));
+                }
+                if (read < 0) {
+                    chunks.put(END);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            try {
+                chunks.put(new Chunk(null, 0, ex instanceof IOException ? (IOException) ex
+                        : new IOException(ex)));
+            } catch (InterruptedException ie) {
+                LOG.debug("Reader thread interrupted");
+            }
+        } catch (InterruptedException ex) {
+            LOG.debug("Reader thread interrupted");
+        }
+    }
+
+    /**
+     * Returns the current chunk, waiting for the next one if needed.
+     *
+     * @return The current chunk or null at the end of the source.
+     */
+    private Chunk chunk() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (current == END) {
+            return null;
+        }
+        if (current != null && current.error != null) {
+            throw new IOException("Exception while reading input!", current.error);
+        }
+        if (current == null || position >= current.length) {
+            try {
+                current = chunks.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading input");
+            }
+            position = 0;
+            if (current.error != null) {
+                throw new IOException("Exception while reading input!", current.error);
+            }
+            if (current == END) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public int read() throws IOException {
+        Chunk c = chunk();
+        return c == null ? -1 : c.bytes[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        Chunk c = chunk();
+        if (c == null) {
+            return -1;
+        }
+        int n = Math.min(len, c.length - position);
+        System.arraycopy(c.bytes, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return closed || current == null || current == END ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            reader.interrupt();
+            try {
+                // Do not close the source while the reader thread is using it
+                reader.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            source.close();
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package be.yami.io;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens inputs that may be compressed (see {@link Compression}). The format of
+ * an input is detected using its first bytes. Compressed inputs are
+ * decompressed on a background thread, a few chunks ahead of the consumer of
+ * the decompressed stream.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class CompressedInputs {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressedInputs.class);
+
+    /**
+     * The size of the chunks of decompressed bytes.
+     */
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The maximal number of decompressed chunks waiting to be consumed.
+     */
+    public static final int CAPACITY = 8;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompressedInputs() {
+    }
+
+    /**
+     * Returns the format of the given file.
+     *
+     * @param file The file to check.
+     * @return The format of the file.
+     * @throws IOException If the file may not be read.
+     */
+    public static Compression detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = new byte[Compression.MAGIC_LENGTH];
+            return Compression.detect(header, readHeader(in, header));
+        }
+    }
+
+    /**
+     * Returns the format of the content of the given channel. The header is
+     * read from the beginning of the channel, without changing its position.
+     *
+     * @param channel The channel to check.
+     * @return The format of the content of the channel.
+     * @throws IOException If the channel may not be read.
+     */
+    public static Compression detect(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Compression.MAGIC_LENGTH);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // The buffer position is the position of the next byte in the channel
+        }
+        return Compression.detect(header.array(), header.position());
+    }
+
+    /**
+     * Returns a stream reading the decompressed content of the given input.
+     * Uncompressed inputs are returned buffered but otherwise unchanged.
+     * Closing the returned stream closes the given input.
+     *
+     * @param input The input to open.
+     * @return The decompressed input.
+     * @throws IOException If the header of the input may not be read.
+     */
+    public static InputStream open(InputStream input) throws IOException {
+        return open(input, true);
+    }
+
+    /**
+     * Returns a stream reading the decompressed content of the given input.
+     * The returned stream has to be closed to stop the decompression of a
+     * compressed input. If closeInput is false, the given input is left open,
+     * e.g., when it is owned by the caller.
+     *
+     * @param input The input to open.
+     * @param closeInput If closing the returned stream closes the given input.
+     * @return The decompressed input.
+     * @throws IOException If the header of the input may not be read.
+     */
+    public static InputStream open(InputStream input, boolean closeInput) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(closeInput ? input : new FilterInputStream(input) {
+            @Override
+            public void close() {
+                // Left open
+            }
+        }, BUFFER_SIZE);
+        byte[] header = new byte[Compression.MAGIC_LENGTH];
+        in.mark(header.length);
+        int length = readHeader(in, header);
+        in.reset();
+        Compression compression = Compression.detect(header, length);
+        if (compression == Compression.NONE) {
+            return in;
+        }
+        LOG.debug("Decompressing {} input", compression);
+        return new AsyncInputStream(compression.decompress(in), CHUNK_SIZE, CAPACITY,
+                "yami-decompress");
+    }
+
+    /**
+     * Returns a stream reading the decompressed content of the given file.
+     *
+     * @param file The file to open.
+     * @return The decompressed content of the file.
+     * @throws IOException If the file may not be read.
+     * @see #open(java.io.InputStream)
+     */
+    public static InputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            return open(in);
+        } catch (IOException | RuntimeException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    private static int readHeader(InputStream in, byte[] header) throws IOException {
+        int length = 0;
+        int read;
+        while (length < header.length && (read = in.read(header, length, header.length - length)) >= 0) {
+            length += read;
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,125 @@
+package be.yami.io;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+
+/**
+ * The compression formats supported for the inputs of the sequence builders.
+ * Formats are detected using the magic bytes at the beginning of the input.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public enum Compression {
+
+    /**
+     * Uncompressed input.
+     */
+    NONE(new byte[0]) {
+        @Override
+        InputStream decompress(InputStream input) {
+            return input;
+        }
+    },
+    /**
+     * Gzip input (e.g., access.log.1.gz).
+     */
+    GZIP(new byte[]{(byte) 0x1f, (byte) 0x8b}) {
+        @Override
+        InputStream decompress(InputStream input) throws IOException {
+            return new GZIPInputStream(input, BUFFER_SIZE);
+        }
+    },
+    /**
+     * Bzip2 input (e.g., access.log.1.bz2).
+     */
+    BZIP2(new byte[]{'B', 'Z', 'h'}) {
+        @Override
+        InputStream decompress(InputStream input) throws IOException {
+            return new BZip2CompressorInputStream(input, true);
+        }
+    },
+    /**
+     * Zstandard input (e.g., access.log.1.zst).
+     */
+    ZSTD(new byte[]{(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd}) {
+        @Override
+        InputStream decompress(InputStream input) throws IOException {
+            return new ZstdCompressorInputStream(input);
+        }
+    };
+
+    /**
+     * The maximal number of magic bytes of the formats.
+     */
+    static final int MAGIC_LENGTH = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final byte[] magic;
+
+    private Compression(byte[] magic) {
+        this.magic = magic;
+    }
+
+    /**
+     * Returns a stream decompressing the given input.
+     *
+     * @param input The compressed input.
+     * @return The decompressed input.
+     * @throws IOException If the header of the input may not be read.
+     */
+    abstract InputStream decompress(InputStream input) throws IOException;
+
+    /**
+     * Returns the format of an input starting with the given bytes.
+     *
+     * @param header The first bytes of the input.
+     * @param length The number of bytes in the header.
+     * @return The format of the input, {@link #NONE} if no other format
+     * matches.
+     */
+    public static Compression detect(byte[] header, int length) {
+        for (Compression c : values()) {
+            if (c != NONE && c.matches(header, length)) {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean matches(byte[] header, int length) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,202 @@
+package be.yami.io;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import be.vibes.dsl.io.Xml;
+import be.vibes.ts.UsageModel;
+import be.yami.exception.ModelGenerationException;
+import be.yami.ngram.NGram;
+
+/**
+ * Exports the usage models of several NGrams (e.g., one for each class of a
+ * Java program) to XML files. The models are built and written concurrently
+ * on a bounded pool of threads, so that at most one model per thread is in
+ * memory at a time. Each model is written to the file &lt;name&gt;.xml, where
+ * name is the name of its NGram, through a buffered channel output stream.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class UsageModelExporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UsageModelExporter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The outcome of the export of one model.
+     */
+    public static final class Export {
+
+        private final String name;
+        private final Path file;
+        private final long buildTime;
+        private final long writeTime;
+        private final Exception error;
+
+        Export(String name, Path file, long buildTime, long writeTime, Exception error) {
+            this.name = name;
+            this.file = file;
+            this.buildTime = buildTime;
+            this.writeTime = writeTime;
+            this.error = error;
+        }
+
+        /**
+         * Returns the name of the exported NGram.
+         *
+         * @return The name of the NGram.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the file of the model.
+         *
+         * @return The file of the model.
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the time taken to build the model.
+         *
+         * @return The build time, in milliseconds.
+         */
+        public long getBuildTime() {
+            return buildTime;
+        }
+
+        /**
+         * Returns the time taken to write the model.
+         *
+         * @return The write time, in milliseconds.
+         */
+        public long getWriteTime() {
+            return writeTime;
+        }
+
+        /**
+         * Returns the exception raised while building or writing the model.
+         *
+         * @return The exception, or null if the model has been exported.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+    }
+
+    private final int parallelism;
+
+    /**
+     * Creates a new exporter.
+     *
+     * @param parallelism The number of models built and written concurrently.
+     */
+    public UsageModelExporter(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "Parallelism must be greater than 0!");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Builds and writes the models of the given NGrams to the given folder. A
+     * model which may not be built or written does not prevent the others from
+     * being exported: its error is logged and reported in the returned
+     * exports.
+     *
+     * @param ngrams The NGrams to export.
+     * @param folder The folder of the model files, created if needed.
+     * @return The exports, in the order of the given NGrams.
+     * @throws ModelGenerationException If the folder may not be created, or if
+     * interrupted while waiting for the exports.
+     */
+    public List<Export> export(Collection<? extends NGram<?>> ngrams, Path folder)
+            throws ModelGenerationException {
+        try {
+            Files.createDirectories(folder);
+        } catch (Exception ex) {
+            throw new ModelGenerationException("Exception while creating folder " + folder + "!", ex);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(this.parallelism,
+                new ThreadFactoryBuilder().setNameFormat("yami-export-%d").setDaemon(true).build());
+        try {
+            List<Future<Export>> futures = new ArrayList<>();
+            for (NGram<?> ngram : ngrams) {
+                futures.add(executor.submit(() -> export(ngram, folder)));
+            }
+            List<Export> exports = new ArrayList<>();
+            for (Future<Export> future : futures) {
+                exports.add(future.get());
+            }
+            return exports;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ModelGenerationException("Interrupted while exporting models!", ex);
+        } catch (ExecutionException ex) {
+            // Export errors are caught by the tasks
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Export export(NGram<?> ngram, Path folder) {
+        Path file = folder.resolve(ngram.getName() + ".xml");
+        long buildTime = 0;
+        long writeTime = 0;
+        long start = System.currentTimeMillis();
+        try {
+            UsageModel model = ngram.getModel();
+            buildTime = System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+                Xml.print(model, out);
+            }
+            writeTime = System.currentTimeMillis() - start;
+            LOG.info("Model {} built in {} ms and written in {} ms", ngram.getName(), buildTime,
+                    writeTime);
+            return new Export(ngram.getName(), file, buildTime, writeTime, null);
+        } catch (Exception ex) {
+            LOG.error("Exception while exporting usage model for {}!", ngram.getName(), ex);
+            return new Export(ngram.getName(), file, buildTime, writeTime, ex);
+        }
+    }
+
+}
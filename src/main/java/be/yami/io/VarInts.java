@@ -0,0 +1,107 @@
+package be.yami.io;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes variable-length integers, using 7 bits per byte, the high
+ * bit of a byte being set if more bytes follow, so that small values take one
+ * or two bytes. Used by the compact binary formats (e.g., snapshots of bigrams
+ * and binary traces).
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public final class VarInts {
+
+    private VarInts() {
+    }
+
+    /**
+     * Writes the given non-negative int.
+     *
+     * @param out The output to write to.
+     * @param value The value to write.
+     * @throws IOException If the value may not be written.
+     */
+    public static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Writes the given non-negative long.
+     *
+     * @param out The output to write to.
+     * @param value The value to write.
+     * @throws IOException If the value may not be written.
+     */
+    public static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarInt(OutputStream, int)}.
+     *
+     * @param in The buffer to read from.
+     * @return The value read.
+     * @throws IOException If the value is malformed.
+     */
+    public static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer!");
+    }
+
+    /**
+     * Reads a long written by {@link #writeVarLong(OutputStream, long)}.
+     *
+     * @param in The buffer to read from.
+     * @return The value read.
+     * @throws IOException If the value is malformed.
+     */
+    public static long readVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length long!");
+    }
+
+}
@@ -0,0 +1,246 @@
+package be.yami.java;
+
+import be.yami.SequenceBuilder;
+import be.yami.exception.SessionBuildException;
+import be.yami.io.Compression;
+import be.yami.io.CompressedInputs;
+import be.yami.io.VarInts;
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class builds method call sequences from a binary trace file written by
+ * {@link BinaryMethodCallsWriter}. Usage:
+ *
+ * <pre>
+ * SequenceProcessor&lt;MethodCallSequence&gt; listener;
+ * EntryFilter&lt;MethodCall&gt; includeFilter;
+ * EntryFilter&lt;MethodCall&gt; excludeFilter;
+ * // ...
+ * newInstance().include(includeFilter)
+ * 		.exclude(excludeFilter)
+ * 		.addListener(listener)
+ * 		.parallelism(4)
+ * 		.buildSessions(Paths.get(&quot;calls.calls&quot;));
+ * </pre>
+ *
+ * Uncompressed files are mapped in memory, one block at a time. The blocks may
+ * be decoded (and their calls filtered) in parallel, but the sequences are
+ * always given to the listeners on the calling thread, in the order of the
+ * file.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class BinaryMethodCallsSequenceBuilder extends SequenceBuilder<MethodCallSequence, MethodCall> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryMethodCallsSequenceBuilder.class);
+
+    /**
+     * Gives access to the bytes of a binary trace file.
+     */
+    private interface Region {
+
+        ByteBuffer map(long offset, int length) throws IOException;
+
+    }
+
+    private int parallelism;
+
+    private BinaryMethodCallsSequenceBuilder() {
+        this.parallelism = 1;
+    }
+
+    /**
+     * Returns a new instance of this class.
+     *
+     * @return A fresh instance of this class.
+     */
+    public static BinaryMethodCallsSequenceBuilder newInstance() {
+        return new BinaryMethodCallsSequenceBuilder();
+    }
+
+    /**
+     * Sets the number of threads decoding the blocks of the input.
+     *
+     * @param parallelism The number of threads, 1 to decode the blocks on the
+     * calling thread.
+     * @return This builder.
+     */
+    public BinaryMethodCallsSequenceBuilder parallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "Parallelism must be greater than 0!");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    @Override
+    public void buildSessions(InputStream input) throws SessionBuildException {
+        ByteBuffer bytes;
+        try (InputStream in = CompressedInputs.open(input)) {
+            bytes = ByteBuffer.wrap(ByteStreams.toByteArray(in));
+        } catch (IOException ex) {
+            throw new SessionBuildException("Exception while reading input!", ex);
+        }
+        build((offset, length) -> {
+            ByteBuffer region = bytes.duplicate();
+            region.position((int) offset);
+            region.limit((int) offset + length);
+            return region.slice();
+        }, bytes.capacity());
+    }
+
+    /**
+     * {@inheritDoc} Uncompressed files are mapped in memory.
+     */
+    @Override
+    public void buildSessions(Path file) throws SessionBuildException {
+        try {
+            if (CompressedInputs.detect(file) != Compression.NONE) {
+                super.buildSessions(file);
+                return;
+            }
+        } catch (IOException ex) {
+            throw new SessionBuildException("Exception while reading input!", ex);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            build((offset, length) -> channel.map(FileChannel.MapMode.READ_ONLY, offset, length),
+                    channel.size());
+        } catch (IOException ex) {
+            throw new SessionBuildException("Exception while reading input!", ex);
+        }
+    }
+
+    private void build(Region region, long size) throws SessionBuildException {
+        try {
+            if (size < BinaryMethodCallsWriter.HEADER_SIZE + BinaryMethodCallsWriter.TRAILER_SIZE) {
+                throw new IOException("Invalid binary trace file!");
+            }
+            ByteBuffer header = region.map(0, BinaryMethodCallsWriter.HEADER_SIZE);
+            ByteBuffer trailer = region.map(size - BinaryMethodCallsWriter.TRAILER_SIZE,
+                    BinaryMethodCallsWriter.TRAILER_SIZE);
+            if (header.getInt() != BinaryMethodCallsWriter.MAGIC
+                    || header.getInt() != BinaryMethodCallsWriter.VERSION) {
+                throw new IOException("Invalid binary trace file!");
+            }
+            long dictionaryOffset = trailer.getLong();
+            if (trailer.getInt() != BinaryMethodCallsWriter.MAGIC || dictionaryOffset < 0
+                    || dictionaryOffset > size - BinaryMethodCallsWriter.TRAILER_SIZE) {
+                throw new IOException("Invalid binary trace file!");
+            }
+            ByteBuffer in = region.map(dictionaryOffset,
+                    (int) (size - BinaryMethodCallsWriter.TRAILER_SIZE - dictionaryOffset));
+            String[] dictionary = new String[VarInts.readVarInt(in) + 1];
+            for (int i = 1; i < dictionary.length; i++) {
+                byte[] bytes = new byte[VarInts.readVarInt(in)];
+                in.get(bytes);
+                dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            int blocks = VarInts.readVarInt(in);
+            long[] offsets = new long[blocks];
+            int[] lengths = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                offsets[i] = VarInts.readVarLong(in);
+                lengths[i] = VarInts.readVarInt(in);
+            }
+            LOG.debug("Reading {} blocks", blocks);
+            MethodSignatureTable signatures = new MethodSignatureTable();
+            if (parallelism == 1) {
+                for (int i = 0; i < blocks; i++) {
+                    complete(decode(region.map(offsets[i], lengths[i]), dictionary, signatures));
+                }
+            } else {
+                buildParallel(region, offsets, lengths, dictionary, signatures);
+            }
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException ex) {
+            // Truncated or corrupted file
+            throw new SessionBuildException("Exception while reading input!", ex);
+        }
+    }
+
+    private void buildParallel(Region region, long[] offsets, int[] lengths, String[] dictionary,
+            MethodSignatureTable signatures) throws IOException, SessionBuildException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("yami-decode-%d").setDaemon(true).build());
+        try {
+            // Decode a bounded number of blocks ahead of the listeners
+            Deque<Future<List<MethodCallSequence>>> pending = new ArrayDeque<>();
+            int next = 0;
+            while (next < offsets.length || !pending.isEmpty()) {
+                while (next < offsets.length && pending.size() < 2 * parallelism) {
+                    ByteBuffer block = region.map(offsets[next], lengths[next]);
+                    pending.add(executor.submit(() -> decode(block, dictionary, signatures)));
+                    next++;
+                }
+                complete(pending.poll().get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SessionBuildException("Interrupted while building sessions!", ex);
+        } catch (ExecutionException ex) {
+            throw new SessionBuildException("Exception while reading input!",
+                    ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void complete(List<MethodCallSequence> sequences) {
+        for (MethodCallSequence seq : sequences) {
+            LOG.debug("Sequence completed: {}", seq);
+            sequenceCompleted(seq);
+        }
+    }
+
+    /**
+     * Decodes the sequences of a block, keeping only the accepted calls and
+     * the sequences with accepted calls. Calls with the same signature share
+     * the same instance.
+     */
+    private List<MethodCallSequence> decode(ByteBuffer in, String[] dictionary,
+            MethodSignatureTable signatures) throws IOException {
+        int count = VarInts.readVarInt(in);
+        List<MethodCallSequence> sequences = new ArrayList<>(count);
+        List<String> params = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String className = dictionary[VarInts.readVarInt(in)];
+            MethodCallSequence seq = new MethodCallSequence(className);
+            int calls = VarInts.readVarInt(in);
+            for (int j = 0; j < calls; j++) {
+                String methodName = dictionary[VarInts.readVarInt(in)];
+                int size = VarInts.readVarInt(in);
+                params.clear();
+                for (int k = 0; k < size; k++) {
+                    params.add(dictionary[VarInts.readVarInt(in)]);
+                }
+                MethodCall call = signatures.get(className, methodName, params);
+                if (isAcceptedEntry(call)) {
+                    seq.add(call);
+                }
+            }
+            if (seq.size() > 0) {
+                sequences.add(seq);
+            }
+        }
+        return sequences;
+    }
+
+}
@@ -0,0 +1,257 @@
+package be.yami.java;
+
+import be.yami.SequenceProcessor;
+import be.yami.exception.SessionBuildException;
+import be.yami.io.VarInts;
+import com.google.common.base.Preconditions;
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes method call sequences in a compact binary trace format, read by
+ * {@link BinaryMethodCallsSequenceBuilder}. The names of the classes, methods
+ * and parameter types are written once, in a dictionary, and the sequences
+ * refer to them by index. All the integers are written as variable-length
+ * integers (7 bits per byte). The sequences are grouped in blocks of about
+ * the same size, indexed at the end of the file, so that the blocks may be
+ * read in parallel.
+ * <p>
+ * The layout of a binary trace file is: magic number and version (4 bytes
+ * each), blocks (number of sequences, then for each sequence the index of its
+ * class, its number of calls, and for each call the index of the method, the
+ * number of parameters and the index of each parameter type), dictionary
+ * (size, then length and UTF-8 bytes of each string), block index (number of
+ * blocks, then offset and length of each block), and a trailer (offset of the
+ * dictionary on 8 bytes and magic number on 4 bytes). Index 0 of the
+ * dictionary stands for null, the strings of the dictionary start at index 1.
+ * <p>
+ * The class of the calls is not written: all the calls of a sequence must
+ * belong to the class of the sequence (as for the sequences read from JSON
+ * method calls files), and are read back with that class.
+ * <p>
+ * The file is written to a temporary file, moved to its final location when
+ * the writer is closed. A JSON method calls file may be converted using
+ * {@link #convert(Path, Path)}.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class BinaryMethodCallsWriter implements SequenceProcessor<MethodCallSequence>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryMethodCallsWriter.class);
+
+    /**
+     * The extension of binary trace files.
+     */
+    public static final String EXTENSION = ".calls";
+
+    /**
+     * The default size of the blocks, in bytes.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    static final int MAGIC = 0x59425452;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int TRAILER_SIZE = 12;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Path tmp;
+    private final int blockSize;
+    private final CountingOutputStream counter;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream block;
+    private int blockSequences;
+    private final Map<String, Integer> dictionary;
+    private final List<String> values;
+    private final List<Long> offsets;
+    private final List<Integer> lengths;
+    private boolean closed;
+
+    /**
+     * Creates a new writer, using blocks of {@link #DEFAULT_BLOCK_SIZE} bytes.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file may not be created.
+     */
+    public BinaryMethodCallsWriter(Path file) throws IOException {
+        this(file, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a new writer.
+     *
+     * @param file The file to write.
+     * @param blockSize The minimal size of the blocks, in bytes (the last block
+     * may be smaller).
+     * @throws IOException If the file may not be created.
+     */
+    public BinaryMethodCallsWriter(Path file, int blockSize) throws IOException {
+        Preconditions.checkArgument(blockSize > 0, "Block size must be greater than 0!");
+        this.file = file;
+        this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        this.blockSize = blockSize;
+        this.counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp),
+                BUFFER_SIZE));
+        this.out = new DataOutputStream(counter);
+        this.block = new ByteArrayOutputStream(blockSize + BUFFER_SIZE);
+        this.blockSequences = 0;
+        this.dictionary = new HashMap<>();
+        this.values = new ArrayList<>();
+        this.offsets = new ArrayList<>();
+        this.lengths = new ArrayList<>();
+        this.closed = false;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    private int index(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = dictionary.get(value);
+        if (index == null) {
+            values.add(value);
+            index = values.size();
+            dictionary.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the given sequence.
+     *
+     * @param seq The sequence to write.
+     * @throws IllegalArgumentException If a call of the sequence belongs to
+     * another class than the sequence.
+     * @throws UncheckedIOException If the sequence may not be written.
+     */
+    @Override
+    public void process(MethodCallSequence seq) {
+        Preconditions.checkState(!closed, "Writer is closed!");
+        for (MethodCall call : seq) {
+            Preconditions.checkArgument(Objects.equals(call.getMethodClass(), seq.getClassName()),
+                    "Calls must belong to the class of the sequence %s: %s!", seq.getClassName(), call);
+        }
+        try {
+            VarInts.writeVarInt(block, index(seq.getClassName()));
+            VarInts.writeVarInt(block, seq.size());
+            for (MethodCall call : seq) {
+                VarInts.writeVarInt(block, index(call.getMethodName()));
+                VarInts.writeVarInt(block, call.parametersCount());
+                Iterator<String> it = call.parameters();
+                while (it.hasNext()) {
+                    VarInts.writeVarInt(block, index(it.next()));
+                }
+            }
+            blockSequences++;
+            if (block.size() >= blockSize) {
+                writeBlock();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Exception while writing sequence!", ex);
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        long offset = counter.getCount();
+        VarInts.writeVarInt(out, blockSequences);
+        block.writeTo(out);
+        offsets.add(offset);
+        lengths.add((int) (counter.getCount() - offset));
+        block.reset();
+        blockSequences = 0;
+    }
+
+    /**
+     * Writes the dictionary and the index of the blocks, and moves the file to
+     * its final location.
+     *
+     * @throws IOException If the file may not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (blockSequences > 0) {
+                writeBlock();
+            }
+            long dictionaryOffset = counter.getCount();
+            VarInts.writeVarInt(out, values.size());
+            for (String value : values) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                VarInts.writeVarInt(out, bytes.length);
+                out.write(bytes);
+            }
+            VarInts.writeVarInt(out, offsets.size());
+            for (int i = 0; i < offsets.size(); i++) {
+                VarInts.writeVarLong(out, offsets.get(i));
+                VarInts.writeVarInt(out, lengths.get(i));
+            }
+            out.writeLong(dictionaryOffset);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("{} blocks and {} strings written to {}", offsets.size(), values.size(), file);
+    }
+
+    /**
+     * Converts the given JSON method calls file (see
+     * {@link JsonMethodCallsSequenceBuilder}) to a binary trace file.
+     *
+     * @param json The JSON file to convert (possibly compressed).
+     * @param output The binary trace file to write.
+     * @throws SessionBuildException If the JSON file may not be read or the
+     * binary trace file may not be written.
+     */
+    public static void convert(Path json, Path output) throws SessionBuildException {
+        try {
+            BinaryMethodCallsWriter writer = new BinaryMethodCallsWriter(output);
+            try {
+                JsonMethodCallsSequenceBuilder.newInstance().addListener(writer).buildSessions(json);
+            } catch (SessionBuildException | RuntimeException ex) {
+                writer.discard();
+                throw ex;
+            }
+            writer.close();
+        } catch (IOException | UncheckedIOException ex) {
+            throw new SessionBuildException("Exception while writing output!", ex);
+        }
+    }
+
+    /**
+     * Closes this writer without writing the file.
+     */
+    private void discard() throws IOException {
+        closed = true;
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+}
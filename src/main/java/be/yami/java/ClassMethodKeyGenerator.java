@@ -1,5 +1,7 @@
 package be.yami.java;
 
+import be.yami.ngram.Fingerprints;
+import be.yami.ngram.KeyCache;
 import be.yami.ngram.ObjectKeyGenerator;
 
 /**
@@ -10,11 +12,24 @@ public class ClassMethodKeyGenerator implements ObjectKeyGenerator<MethodCall> {
     
     private static ClassMethodKeyGenerator instance = null;
     
+    private final KeyCache<MethodCall> cache = new KeyCache<>(KeyCache.DEFAULT_SIZE,
+            (call) -> KeyCache.hash(KeyCache.hash(0, call.getMethodClass()), call.getMethodName()),
+            (a, b) -> KeyCache.same(a.getMethodClass(), b.getMethodClass())
+            && KeyCache.same(a.getMethodName(), b.getMethodName()),
+            (call) -> call.getMethodClass() + '.' + call.getMethodName());
+    
     private ClassMethodKeyGenerator(){}
     
     @Override
     public String generateKey(MethodCall call) {
-        return String.format("%s.%s", call.getMethodClass(), call.getMethodName());
+        return cache.get(call);
+    }
+
+    @Override
+    public long generateFingerprint(MethodCall call) {
+        long fingerprint = Fingerprints.append(Fingerprints.start(), call.getMethodClass());
+        fingerprint = Fingerprints.append(fingerprint, '.');
+        return Fingerprints.finish(Fingerprints.append(fingerprint, call.getMethodName()));
     }
     
     public static ClassMethodKeyGenerator getInstance(){
@@ -1,5 +1,7 @@
 package be.yami.java;
 
+import be.yami.ngram.Fingerprints;
+import be.yami.ngram.KeyCache;
 import be.yami.ngram.ObjectKeyGenerator;
 import java.util.Iterator;
 
@@ -11,12 +13,62 @@ public class ClassMethodParametersKeyGenerator implements ObjectKeyGenerator<Met
 
     private static ClassMethodParametersKeyGenerator instance = null;
 
+    private final KeyCache<MethodCall> cache = new KeyCache<>(KeyCache.DEFAULT_SIZE,
+            ClassMethodParametersKeyGenerator::hash, ClassMethodParametersKeyGenerator::sameKey,
+            ClassMethodParametersKeyGenerator::buildKey);
+
     private ClassMethodParametersKeyGenerator() {
     }
 
     @Override
     public String generateKey(MethodCall call) {
-        StringBuilder buff = new StringBuilder(String.format("%s.%s(", call.getMethodClass(), call.getMethodName()));
+        return cache.get(call);
+    }
+
+    @Override
+    public long generateFingerprint(MethodCall call) {
+        long fingerprint = Fingerprints.append(Fingerprints.start(), call.getMethodClass());
+        fingerprint = Fingerprints.append(fingerprint, '.');
+        fingerprint = Fingerprints.append(fingerprint, call.getMethodName());
+        fingerprint = Fingerprints.append(fingerprint, '(');
+        Iterator<String> it = call.parameters();
+        while (it.hasNext()) {
+            fingerprint = Fingerprints.append(fingerprint, it.next());
+            if (it.hasNext()) {
+                fingerprint = Fingerprints.append(fingerprint, ',');
+            }
+        }
+        return Fingerprints.finish(Fingerprints.append(fingerprint, ')'));
+    }
+
+    private static int hash(MethodCall call) {
+        int hash = KeyCache.hash(KeyCache.hash(0, call.getMethodClass()), call.getMethodName());
+        Iterator<String> it = call.parameters();
+        while (it.hasNext()) {
+            hash = KeyCache.hash(hash, it.next());
+        }
+        return hash;
+    }
+
+    private static boolean sameKey(MethodCall a, MethodCall b) {
+        if (!KeyCache.same(a.getMethodClass(), b.getMethodClass())
+                || !KeyCache.same(a.getMethodName(), b.getMethodName())
+                || a.parametersCount() != b.parametersCount()) {
+            return false;
+        }
+        Iterator<String> itA = a.parameters();
+        Iterator<String> itB = b.parameters();
+        while (itA.hasNext()) {
+            if (!KeyCache.same(itA.next(), itB.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String buildKey(MethodCall call) {
+        StringBuilder buff = new StringBuilder().append(call.getMethodClass()).append('.')
+                .append(call.getMethodName()).append('(');
         Iterator<String> it = call.parameters();
         while (it.hasNext()) {
             buff.append(it.next());
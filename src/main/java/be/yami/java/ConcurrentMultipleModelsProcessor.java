@@ -0,0 +1,236 @@
+package be.yami.java;
+
+import be.yami.SequenceProcessor;
+import be.yami.exception.ModelGenerationException;
+import be.yami.ngram.NGram;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A concurrent version of {@link MultipleModelsProcessor}: the sequences are
+ * added to the NGrams of their classes on a pool of worker threads. Each class
+ * is assigned to a single worker (using the hash of its name), with its own
+ * bounded queue of sequences, so that the NGram of a class is only updated by
+ * one thread and the sequences of a class are added in the order in which they
+ * are processed. The {@link #awaitCompletion()} or {@link #close()} method must
+ * be called before getting the NGrams.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public abstract class ConcurrentMultipleModelsProcessor implements SequenceProcessor<MethodCallSequence>,
+        AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrentMultipleModelsProcessor.class);
+
+    /**
+     * The default maximal number of sequences waiting in the queue of each
+     * worker.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Object END = new Object();
+
+    /**
+     * The NGrams of the classes assigned to a worker, only accessed by the
+     * thread of the worker until the queue has been drained.
+     */
+    private static final class Worker {
+
+        private final BlockingQueue<Object> queue;
+        private final Map<String, NGram<MethodCall>> models;
+
+        Worker(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.models = new HashMap<>();
+        }
+
+    }
+
+    private final List<Worker> workers;
+    private final ExecutorService executor;
+    private final AtomicReference<Exception> error;
+    private boolean closed;
+
+    /**
+     * Creates a new processor using the given number of worker threads.
+     *
+     * @param parallelism The number of worker threads.
+     */
+    public ConcurrentMultipleModelsProcessor(int parallelism) {
+        this(parallelism, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new processor using the given number of worker threads.
+     *
+     * @param parallelism The number of worker threads.
+     * @param capacity The maximal number of sequences waiting in the queue of
+     * each worker. The processing blocks while the queue of the worker of a
+     * class is full.
+     */
+    public ConcurrentMultipleModelsProcessor(int parallelism, int capacity) {
+        Preconditions.checkArgument(parallelism > 0, "Parallelism must be greater than 0!");
+        Preconditions.checkArgument(capacity > 0, "Capacity must be greater than 0!");
+        this.workers = new ArrayList<>();
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("yami-model-%d").setDaemon(true).build());
+        this.error = new AtomicReference<>();
+        this.closed = false;
+        for (int i = 0; i < parallelism; i++) {
+            Worker worker = new Worker(capacity);
+            this.workers.add(worker);
+            this.executor.execute(() -> run(worker));
+        }
+    }
+
+    private void run(Worker worker) {
+        try {
+            Object item;
+            while ((item = worker.queue.take()) != END) {
+                if (item instanceof CountDownLatch) {
+                    // All the previous sequences have been processed
+                    ((CountDownLatch) item).countDown();
+                } else {
+                    addTrace(worker, (MethodCallSequence) item);
+                }
+            }
+        } catch (InterruptedException ex) {
+            LOG.debug("Worker interrupted");
+        }
+    }
+
+    private void addTrace(Worker worker, MethodCallSequence seq) {
+        NGram<MethodCall> ngram = null;
+        try {
+            String className = seq.getClassName();
+            ngram = worker.models.get(className);
+            if (ngram == null) {
+                ngram = buildNewNGram(className);
+                worker.models.put(className, ngram);
+            }
+            ngram.addTrace(seq);
+        } catch (ModelGenerationException | RuntimeException ex) {
+            LOG.error("Error while processing sequence using NGram({})!",
+                    ngram == null ? null : ngram.getClass(), ex);
+            this.error.compareAndSet(null, ex);
+        } catch (Error err) {
+            // The worker keeps taking the sequences of its queue, so that process and close do not block
+            LOG.error("Error while processing sequence using NGram({})!",
+                    ngram == null ? null : ngram.getClass(), err);
+            this.error.compareAndSet(null, new ExecutionException("Error while processing sequence!", err));
+        }
+    }
+
+    @Override
+    public void process(MethodCallSequence seq) {
+        Preconditions.checkState(!this.closed, "Processor is closed!");
+        int index = Math.floorMod(String.valueOf(seq.getClassName()).hashCode(), this.workers.size());
+        try {
+            this.workers.get(index).queue.put(seq);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while processing sequence {}!", seq);
+            // The sequence is lost: reported by awaitCompletion and close
+            this.error.compareAndSet(null,
+                    new ModelGenerationException("Interrupted while processing sequence " + seq + "!", ex));
+        }
+    }
+
+    /**
+     * Waits until all the sequences processed so far have been added to the
+     * NGrams of their classes. Sequences may still be processed afterwards.
+     *
+     * @throws ModelGenerationException If a sequence could not be added to
+     * its NGram, or if interrupted while waiting.
+     */
+    public void awaitCompletion() throws ModelGenerationException {
+        if (!this.closed) {
+            CountDownLatch latch = new CountDownLatch(this.workers.size());
+            try {
+                for (Worker worker : this.workers) {
+                    worker.queue.put(latch);
+                }
+                latch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ModelGenerationException("Interrupted while updating models!", ex);
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Waits until all the processed sequences have been added to the NGrams of
+     * their classes and stops the worker threads.
+     *
+     * @throws ModelGenerationException If a sequence could not be added to
+     * its NGram, or if interrupted while waiting.
+     */
+    @Override
+    public void close() throws ModelGenerationException {
+        if (!this.closed) {
+            this.closed = true;
+            this.executor.shutdown();
+            try {
+                for (Worker worker : this.workers) {
+                    worker.queue.put(END);
+                }
+                while (!this.executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    LOG.debug("Waiting for the workers");
+                }
+            } catch (InterruptedException ex) {
+                this.executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new ModelGenerationException("Interrupted while updating models!", ex);
+            }
+        }
+        checkError();
+    }
+
+    private void checkError() throws ModelGenerationException {
+        if (this.error.get() != null) {
+            throw new ModelGenerationException("Exception while updating models!", this.error.get());
+        }
+    }
+
+    /**
+     * Returns the NGrams generated for each class. This method should only be
+     * called after {@link #awaitCompletion()} or {@link #close()}.
+     *
+     * @return The NGrams generated for each class.
+     */
+    public Set<NGram<MethodCall>> getNGrams() {
+        Set<NGram<MethodCall>> ngrams = new HashSet<>();
+        for (Worker worker : this.workers) {
+            ngrams.addAll(worker.models.values());
+        }
+        return ngrams;
+    }
+
+    /**
+     * Build a new NGram to use for model inference. This method is called by
+     * the worker threads whenever a new class is found in the sequences, and
+     * has therefore to be thread-safe.
+     *
+     * @param name The name of the new ngram.
+     * @return A new NGram with the given name
+     */
+    protected abstract NGram<MethodCall> buildNewNGram(String name);
+
+}
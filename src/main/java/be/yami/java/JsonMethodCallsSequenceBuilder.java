@@ -2,15 +2,15 @@ package be.yami.java;
 
 import be.yami.SequenceBuilder;
 import be.yami.exception.SessionBuildException;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import be.yami.io.CompressedInputs;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +32,11 @@ import org.slf4j.LoggerFactory;
  * The format of the JSON file must be a
  * {@code HashMap<String, Set<List<MethodCalls>>>} generated from
  * <a href="https://github.com/Mozhan/evosuite_extension/blob/5a1b0edb8ae18b4f756a85b593b78ef0930cd772/client/src/main/java/org/evosuite/seeding/MethodCalls.java">MethodCalls.java</a>.
+ * The file is read as a stream of JSON tokens: each sequence is given to the
+ * listeners as soon as it has been read, so that the memory used does not
+ * depend on the size of the file but on the size of the largest sequence.
+ * The file is parsed leniently (see
+ * {@link JsonReader#setLenient(boolean)}), e.g., unquoted names are accepted.
  *
  * @author Xavier Devroey - xavier.devroey@gmail.com
  */
@@ -39,24 +44,6 @@ public class JsonMethodCallsSequenceBuilder extends SequenceBuilder<MethodCallSe
 
     private static final Logger LOG = LoggerFactory.getLogger(JsonMethodCallsSequenceBuilder.class);
 
-    private class MCall {
-
-        String methodName;
-        List<String> params;
-
-        public MCall() {
-        }
-
-        public String getMethodName() {
-            return methodName;
-        }
-
-        public List<String> getParams() {
-            return params;
-        }
-
-    }
-
     private JsonMethodCallsSequenceBuilder() {
     }
 
@@ -71,35 +58,82 @@ public class JsonMethodCallsSequenceBuilder extends SequenceBuilder<MethodCallSe
 
     @Override
     public void buildSessions(InputStream input) throws SessionBuildException {
-        try (JsonReader reader = new JsonReader(new InputStreamReader(input))) {
-            GsonBuilder builder = new GsonBuilder();
-            Gson gson = builder.create();
-            Map<String, List<List<MCall>>> result;
-            // Configuring Gson with the right type
-            result = gson.fromJson(reader, new TypeToken<Map<String, List<List<MCall>>>>() {
-            }.getType());
-            for (Map.Entry<String, List<List<MCall>>> entry : result.entrySet()) {
-                String className = entry.getKey();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(CompressedInputs.open(input),
+                StandardCharsets.UTF_8))) {
+            // As Gson.fromJson, accept the relaxed syntax of the JSON files read so far
+            reader.setLenient(true);
+            MethodSignatureTable signatures = new MethodSignatureTable();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String className = reader.nextName();
                 LOG.debug("Building sequences for class: {}", className);
-                List<List<MCall>> values = entry.getValue();
-                for (List<MCall> callSequence : values) {
-                    MethodCallSequence seq = new MethodCallSequence(className);
-                    for (MCall c : callSequence) {
-                        MethodCall call = new MethodCall(className, c.getMethodName(), c.getParams());
-                        if (isAcceptedEntry(call)) {
-                            seq.add(call);
-                        }
-                    }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    MethodCallSequence seq = readSequence(reader, className, signatures);
                     if (seq.size() > 0) {
                         LOG.debug("Sequence completed: {}", seq);
                         sequenceCompleted(seq);
                     }
                 }
+                reader.endArray();
             }
-        } catch (IOException ex) {
+            reader.endObject();
+        } catch (IOException | IllegalStateException ex) {
             LOG.error("Error while accessing input stream!", ex);
             throw new SessionBuildException("Error while processing input stream!", ex);
         }
     }
 
+    /**
+     * Reads a sequence of calls (a JSON array of calls), keeping only the
+     * accepted calls.
+     */
+    private MethodCallSequence readSequence(JsonReader reader, String className,
+            MethodSignatureTable signatures) throws IOException {
+        MethodCallSequence seq = new MethodCallSequence(className);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            MethodCall call = readCall(reader, className, signatures);
+            if (isAcceptedEntry(call)) {
+                seq.add(call);
+            }
+        }
+        reader.endArray();
+        return seq;
+    }
+
+    /**
+     * Reads a call (a JSON object with a methodName and a params array),
+     * returning the shared call with the same signature.
+     */
+    private static MethodCall readCall(JsonReader reader, String className,
+            MethodSignatureTable signatures) throws IOException {
+        String methodName = null;
+        List<String> params = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if ("methodName".equals(name)) {
+                methodName = reader.nextString();
+            } else if ("params".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                        params.add(null);
+                    } else {
+                        params.add(reader.nextString());
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return signatures.get(className, methodName, params);
+    }
+
 }
@@ -4,11 +4,14 @@ import be.yami.SequenceEntry;
 import com.google.common.base.Preconditions;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 /**
- * This class represents a method call in a Java program.
+ * This class represents a method call in a Java program. Method calls are
+ * immutable, and may therefore be shared by the sequences having calls with
+ * the same signature (see {@link MethodSignatureTable}).
  *
  * @author Xavier Devroey - xavier.devroey@gmail.com
  */
@@ -27,8 +30,7 @@ public class MethodCall implements SequenceEntry{
     public MethodCall(String methodClass, String methodName, List<String> types) {
         this.className = methodClass;
         this.methodName = methodName;
-        this.parameterTypes = new ArrayList<>();
-        this.parameterTypes.addAll(types);
+        this.parameterTypes = Collections.unmodifiableList(new ArrayList<>(types));
     }
 
     public String getMethodClass() {
@@ -0,0 +1,114 @@
+package be.yami.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table of the distinct signatures (class, method and parameter types) of
+ * the method calls read from a trace file. Traces usually contain a few
+ * thousand distinct signatures repeated millions of times: the table returns
+ * a single shared (immutable) {@link MethodCall} for each signature, and the
+ * names of the signatures are shared by the calls, so that the key caches of
+ * the key generators (see {@link be.yami.ngram.KeyCache}) compare the names
+ * of the calls by reference. The table may be used concurrently.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class MethodSignatureTable {
+
+    /**
+     * The signature of a method call, used to look up its shared instance.
+     */
+    private static final class Signature {
+
+        private final String className;
+        private final String methodName;
+        private final List<String> types;
+        private final int hash;
+
+        Signature(String className, String methodName, List<String> types) {
+            this.className = className;
+            this.methodName = methodName;
+            this.types = types;
+            this.hash = 31 * (31 * Objects.hashCode(className) + Objects.hashCode(methodName))
+                    + types.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) obj;
+            return hash == other.hash && Objects.equals(className, other.className)
+                    && Objects.equals(methodName, other.methodName) && types.equals(other.types);
+        }
+
+    }
+
+    private final ConcurrentMap<Signature, MethodCall> calls;
+    private final ConcurrentMap<String, String> names;
+
+    /**
+     * Creates a new empty table.
+     */
+    public MethodSignatureTable() {
+        this.calls = new ConcurrentHashMap<>();
+        this.names = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the shared method call with the given signature. The given list
+     * of parameter types is only copied the first time the signature is seen.
+     *
+     * @param className The class of the method.
+     * @param methodName The name of the method.
+     * @param types The parameter types of the method.
+     * @return The method call with the given signature.
+     */
+    public MethodCall get(String className, String methodName, List<String> types) {
+        MethodCall call = calls.get(new Signature(className, methodName, types));
+        if (call == null) {
+            List<String> sharedTypes = new ArrayList<>(types.size());
+            for (String type : types) {
+                sharedTypes.add(name(type));
+            }
+            call = new MethodCall(name(className), name(methodName), sharedTypes);
+            MethodCall previous = calls.putIfAbsent(new Signature(call.getMethodClass(),
+                    call.getMethodName(), sharedTypes), call);
+            if (previous != null) {
+                call = previous;
+            }
+        }
+        return call;
+    }
+
+    private String name(String name) {
+        if (name == null) {
+            return null;
+        }
+        String previous = names.putIfAbsent(name, name);
+        return previous == null ? name : previous;
+    }
+
+    /**
+     * Returns the number of distinct signatures in this table.
+     *
+     * @return The number of signatures.
+     */
+    public int size() {
+        return calls.size();
+    }
+
+}
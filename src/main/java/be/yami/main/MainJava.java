@@ -1,19 +1,20 @@
 package be.yami.main;
 
-import be.vibes.dsl.io.Xml;
-import be.vibes.ts.UsageModel;
+import be.yami.SequenceBuilder;
 import be.yami.exception.ModelGenerationException;
+import be.yami.io.UsageModelExporter;
+import be.yami.java.BinaryMethodCallsSequenceBuilder;
+import be.yami.java.BinaryMethodCallsWriter;
 import be.yami.java.ClassMethodParametersKeyGenerator;
+import be.yami.java.ConcurrentMultipleModelsProcessor;
 import be.yami.java.JsonMethodCallsSequenceBuilder;
 import be.yami.java.MethodCall;
 import be.yami.java.MethodCallSequence;
-import be.yami.java.MultipleModelsProcessor;
 import be.yami.ngram.Bigram;
 import be.yami.ngram.NGram;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.Collections;
 import java.util.List;
 import org.slf4j.Logger;
@@ -35,7 +36,8 @@ public class MainJava {
      *
      * @param args Arguments from the command line. Input file name must be at
      * position 0. Usage models are generated in a folder with the same name as
-     * the input file.
+     * the input file. Input files with the .calls extension are read as binary
+     * traces (see {@link BinaryMethodCallsWriter}), other input files as JSON.
      * @throws java.lang.Exception Because shit happens...
      */
     public static void main(String[] args) throws Exception {
@@ -48,7 +50,8 @@ public class MainJava {
         long startTime = System.currentTimeMillis();
 
         // The bigram which will construct the model
-        final MultipleModelsProcessor processor = new MultipleModelsProcessor() {
+        final ConcurrentMultipleModelsProcessor processor = new ConcurrentMultipleModelsProcessor(
+                Runtime.getRuntime().availableProcessors()) {
             @Override
             protected NGram<MethodCall> buildNewNGram(String name) {
                 LOG.info("Bigram created for class {}", name);
@@ -56,8 +59,14 @@ public class MainJava {
             }
         };
 
-        // The session builder (Apache sessions in this case)
-        JsonMethodCallsSequenceBuilder builder = JsonMethodCallsSequenceBuilder.newInstance();
+        // The sequence builder (binary or JSON method call sequences in this case)
+        SequenceBuilder<MethodCallSequence, MethodCall> builder;
+        if (input.getName().endsWith(BinaryMethodCallsWriter.EXTENSION)) {
+            builder = BinaryMethodCallsSequenceBuilder.newInstance()
+                    .parallelism(Runtime.getRuntime().availableProcessors());
+        } else {
+            builder = JsonMethodCallsSequenceBuilder.newInstance();
+        }
 
         // Add session listener that will enrich the model (via bigram) using the session
         builder.addListener(processor);
@@ -71,24 +80,26 @@ public class MainJava {
         //builder.include(filter);
         //builder.exclude(filter);
         // Launch the session building from the input file 
-        builder.buildSessions(new FileInputStream(input));
-
-        // Get the usage models and print them
-        File outFolder = new File(args[0].replace(".json", "").replace(".JSON", "").replace(".Json", ""));
-        LOG.info("Printing models in folder {}", outFolder);
-        if (!outFolder.exists()) {
-            outFolder.mkdir();
-        }
-        processor.getNGrams().forEach((ngram) -> {
+        try {
+            builder.buildSessions(input.toPath());
+        } finally {
+            // Wait for the workers to update the models
             try {
-                LOG.info("Printing model {}", ngram.getName());
-                UsageModel um = ngram.getModel();
-                File output = new File(outFolder, ngram.getName() + ".xml");
-                Xml.print(um, output);
+                processor.close();
             } catch (ModelGenerationException ex) {
-                LOG.error("Exception while retrieving usage model for {}!", ngram.getName(), ex);
+                // As for sequential processing, the failing sequences are logged and the models exported
+                LOG.error("Some sequences could not be added to the models!", ex);
             }
-        });
+        }
+
+        // Get the usage models and print them
+        File outFolder = new File(args[0].replace(".json", "").replace(".JSON", "").replace(".Json", "")
+                .replace(BinaryMethodCallsWriter.EXTENSION, ""));
+        LOG.info("Printing models in folder {}", outFolder);
+        UsageModelExporter exporter = new UsageModelExporter(Runtime.getRuntime().availableProcessors());
+        long exportTime = System.currentTimeMillis();
+        List<UsageModelExporter.Export> exports = exporter.export(processor.getNGrams(), outFolder.toPath());
+        exportTime = System.currentTimeMillis() - exportTime;
 
         // Print statistics
         double sum = 0.0;
@@ -109,6 +120,12 @@ public class MainJava {
         System.err.println("Stdev sequence size = " + stdev);
         System.err.println("Min sequence size = " + Collections.min(sizes));
         System.err.println("Max sequence size = " + Collections.max(sizes));
+        System.err.println("Models count = " + exports.size());
+        System.err.println("Models export time = " + exportTime + " ms");
+        System.err.println("Models build time = "
+                + exports.stream().mapToLong(UsageModelExporter.Export::getBuildTime).sum() + " ms (total)");
+        System.err.println("Models write time = "
+                + exports.stream().mapToLong(UsageModelExporter.Export::getWriteTime).sum() + " ms (total)");
         System.err.println("Computation time = " + (System.currentTimeMillis() - startTime) / 1000 + " sec.");
     }
 
@@ -0,0 +1,47 @@
+package be.yami.main;
+
+import be.yami.java.BinaryMethodCallsWriter;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This is the Main class provided to convert Java method call sequences JSON
+ * files to binary traces, read faster by {@link MainJava}.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ */
+public class MainJavaConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MainJavaConverter.class);
+
+    /**
+     * Converts a Java method calls sequences JSON file to a binary trace file.
+     *
+     * @param args Arguments from the command line. Input file name must be at
+     * position 0. The output file name may be given at position 1, by default
+     * the binary trace is written next to the input file, with the .calls
+     * extension.
+     * @throws java.lang.Exception Because shit happens...
+     */
+    public static void main(String[] args) throws Exception {
+
+        Preconditions.checkArgument(args.length > 0, "Input file name must be provided as first argument!");
+
+        File input = new File(args[0]);
+        File output = args.length > 1 ? new File(args[1])
+                : new File(args[0].replace(".json", "").replace(".JSON", "").replace(".Json", "")
+                        + BinaryMethodCallsWriter.EXTENSION);
+
+        long startTime = System.currentTimeMillis();
+        BinaryMethodCallsWriter.convert(input.toPath(), output.toPath());
+        LOG.info("{} converted to {}", input, output);
+
+        System.err.println("Input size = " + input.length() + " bytes");
+        System.err.println("Output size = " + output.length() + " bytes");
+        System.err.println("Computation time = " + (System.currentTimeMillis() - startTime) / 1000 + " sec.");
+    }
+
+}
@@ -20,24 +20,31 @@ package be.yami.main;
  * #L%
  */
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import be.yami.ngram.Bigram;
+import be.yami.ngram.ObjectKeyGenerator;
+import be.yami.web.FanOutSessionProcessor;
 import be.yami.web.UserSessionProcessor;
 import be.yami.web.apache.ApacheLogFormatPatternBuilder;
 import be.yami.web.apache.ApacheUserRequest;
 import be.yami.web.apache.ApacheUserSession;
 import be.yami.web.apache.ApacheUserSessionBuilder;
 import be.yami.web.apache.UserRequesRRKeyGenerator;
+import be.yami.web.apache.UserRequesRRNKeyGenerator;
+import be.yami.web.apache.UserRequesRRNVKeyGenerator;
 import be.vibes.dsl.io.Xml;
 import be.vibes.ts.UsageModel;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is the Main class provided to process Apache Web Logs with this library.
@@ -49,31 +56,80 @@ public class MainWeb {
 
     private static final Logger LOG = LoggerFactory.getLogger(MainWeb.class);
 
+    private static final String SNAPSHOT_OPTION = "--snapshot=";
+
+    private static final String KEYS_OPTION = "--keys=";
+
+    private static final Map<String, ObjectKeyGenerator<ApacheUserRequest>> KEY_GENERATORS
+            = ImmutableMap.of("RR", UserRequesRRKeyGenerator.getInstance(),
+                    "RRN", UserRequesRRNKeyGenerator.getInstance(),
+                    "RRNV", UserRequesRRNVKeyGenerator.getInstance());
+
     /**
      * Create a usage model from a WordPress Apache Log.
      *
      * @param args Arguments from the command line. Input file name must be at
-     * position 0.
+     * position 0. Additional input files (e.g., the logs of the other nodes of
+     * a load balanced web site) may be given at the following positions. An
+     * option --snapshot=&lt;file&gt; may be given to load the counts of the
+     * previous runs from the file before processing the input files, and to
+     * save the updated counts to the file afterwards. An option
+     * --keys=&lt;key&gt;,... (RR, RRN or RRNV, default RR) may be given to infer
+     * models using several key generators in one pass over the input files: the
+     * model of each key generator is then saved to the file
+     * &lt;input&gt;.&lt;key&gt;.xml (and the snapshot to
+     * &lt;snapshot&gt;.&lt;key&gt;) instead of printed on System.out.
      * @throws java.lang.Exception Because shit happens...
      */
     public static void main(String[] args) throws Exception {
 
-        // Input Log file is the first parameter provided to the application
-        File input = new File(args[0]);
+        // Input Log files are the parameters provided to the application
+        List<File> files = Lists.newArrayList();
+        File snapshot = null;
+        List<String> keys = Lists.newArrayList("RR");
+        for (String arg : args) {
+            if (arg.startsWith(SNAPSHOT_OPTION)) {
+                snapshot = new File(arg.substring(SNAPSHOT_OPTION.length()));
+            } else if (arg.startsWith(KEYS_OPTION)) {
+                keys = Lists.newArrayList(arg.substring(KEYS_OPTION.length()).split(","));
+            } else {
+                files.add(new File(arg));
+            }
+        }
+        File input = files.get(0);
 
         long startTime = System.currentTimeMillis();
 
-        // The bigram which will construct the model
-        final Bigram<ApacheUserRequest> bigram = new Bigram<>("apache",
-                UserRequesRRKeyGenerator.getInstance());
+        // The bigrams which will construct the models (one for each key generator)
+        final List<Bigram<ApacheUserRequest>> bigrams = Lists.newArrayList();
+        final List<File> snapshots = Lists.newArrayList();
+        for (String key : keys) {
+            if (!KEY_GENERATORS.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown key generator " + key + "!");
+            }
+            Bigram<ApacheUserRequest> bigram = new Bigram<>("apache", KEY_GENERATORS.get(key));
+            File file = snapshot == null || keys.size() == 1 ? snapshot
+                    : new File(snapshot.getPath() + "." + key);
+            if (file != null && file.exists()) {
+                // Start from the counts of the previous runs
+                bigram.loadSnapshot(file.toPath());
+                LOG.info("Snapshot {} loaded in {} ms", file, System.currentTimeMillis() - startTime);
+            }
+            bigrams.add(bigram);
+            snapshots.add(file);
+        }
 
         // The session builder (Apache sessions in this case)
         ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance()
                 // Configure the log format to use 
-                .logFormat(ApacheLogFormatPatternBuilder.COMBINED_LOG_FORMAT);
+                .logFormat(ApacheLogFormatPatternBuilder.COMBINED_LOG_FORMAT)
+                // Parse the log on all the available cores
+                .parallelism(Runtime.getRuntime().availableProcessors());
 
-        // Add session listener that will enrich the model (via bigram) using the session
+        // Add session listener that will enrich the models (via bigrams) using the session
         final List<Integer> sizes = Lists.newArrayList();
+        final FanOutSessionProcessor<ApacheUserRequest, ApacheUserSession> models
+                = new FanOutSessionProcessor<>(bigrams);
         builder.addListener(new UserSessionProcessor<ApacheUserSession>() {
             int i = 0;
 
@@ -83,7 +139,7 @@ public class MainWeb {
                 i++;
                 LOG.trace("Sessions processed: {}", i);
                 LOG.trace("Session: {}", session);
-                bigram.addTrace(session);
+                models.process(session);
             }
         });
 
@@ -113,14 +169,43 @@ public class MainWeb {
                     .equals("jetmon/1.0 (Jetpack Site Uptime Monitor by WordPress.com)"));
         });
 
-        // Launch the session building from the input file 
-        builder.buildSessions(new FileInputStream(input));
-
-        // Get the usage model from the Bigram
-        UsageModel model = bigram.getModel();
+        if (files.size() > 1) {
+            // Launch the session building from the input files merged by time
+            List<InputStream> inputs = Lists.newArrayList();
+            for (File file : files) {
+                inputs.add(Files.newInputStream(file.toPath()));
+            }
+            try {
+                builder.buildSessions(inputs);
+            } finally {
+                models.close();
+                for (InputStream in : inputs) {
+                    in.close();
+                }
+            }
+        } else {
+            // Launch the session building from the input file (mapped in memory)
+            try {
+                builder.buildSessions(input.toPath());
+            } finally {
+                models.close();
+            }
+        }
 
-        // Print XML model on System.out
-        Xml.print(model, System.out);
+        for (int i = 0; i < bigrams.size(); i++) {
+            if (snapshots.get(i) != null) {
+                // Save the counts for the next runs
+                bigrams.get(i).saveSnapshot(snapshots.get(i).toPath());
+            }
+            // Get the usage model from the Bigram
+            UsageModel model = bigrams.get(i).getModel();
+            if (bigrams.size() == 1) {
+                // Print XML model on System.out
+                Xml.print(model, System.out);
+            } else {
+                Xml.print(model, new File(input.getPath() + "." + keys.get(i) + ".xml"));
+            }
+        }
 
         // Print statistics
         double sum = 0.0;
@@ -0,0 +1,389 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import be.vibes.ts.Action;
+import be.vibes.ts.UsageModel;
+import be.yami.Sequence;
+import be.yami.SequenceEntry;
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An approximate {@link Bigram} with a fixed memory budget, for key generators
+ * producing an unbounded number of keys (e.g., keys including the values of
+ * the parameters of the requests). Only the most frequent keys (at most the
+ * capacity given at construction) get their own state, tracked using the
+ * Space-Saving algorithm: when a key which is not monitored becomes more
+ * frequent than the least frequent monitored key, it replaces it. The
+ * frequency of the keys which are not monitored is estimated using a
+ * count-min sketch of fixed size. All the keys which are not monitored are
+ * folded into a single {@link #OTHER_STATE_ID} state, reached using the
+ * {@link #OTHER_ACTION} action: when a key stops being monitored, its
+ * transitions are moved to this state.
+ * <p>
+ * As long as the number of distinct keys does not exceed the capacity, the
+ * inferred model is the same as the one inferred by a {@link Bigram}.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ * @param <T> The object type passed to the ObjectKeyGenerator provided at
+ * construction time of ApproximateBigram object.
+ */
+public class ApproximateBigram<T extends SequenceEntry> implements NGram<T> {
+
+    /**
+     * The state of the keys which are not monitored.
+     */
+    public static final String OTHER_STATE_ID = "sOther";
+
+    /**
+     * The action of the transitions to the {@link #OTHER_STATE_ID} state.
+     */
+    public static final String OTHER_ACTION = "other";
+
+    /**
+     * The default number of rows of the count-min sketch.
+     */
+    public static final int DEFAULT_SKETCH_DEPTH = 4;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApproximateBigram.class);
+
+    private static final int START_ID = 0;
+    private static final int END_ID = -1;
+    private static final int NO_SLOT = -2;
+
+    private final String name;
+    private final ObjectKeyGenerator<T> keyGen;
+    private final int capacity;
+    private final int otherId;
+    // Monitored keys, in slots 1 to capacity
+    private final Map<String, Integer> slots;
+    private final String[] keys;
+    private int used;
+    // The slot reassigned by the last call to getState, if any
+    private int evicted;
+    // Min-heap of the slots by count (Space-Saving)
+    private final long[] counts;
+    private final int[] heap;
+    private final int[] positions;
+    // Count-min sketch of the keys which are not monitored
+    private final int[][] sketch;
+    private final int sketchMask;
+    private final int[] indexes;
+    // INV: <(source << 32) | target, count>
+    private final LongIntHashMap transitions;
+    // Keys of the transitions from or to each slot (possibly stale)
+    private final long[][] touching;
+    private final int[] touchingCount;
+
+    /**
+     * Create a new {@link ApproximateBigram} object, with a count-min sketch
+     * whose width is 16 times the capacity.
+     *
+     * @param name The name of the ngram.
+     * @param keyGen The key generator used to generate the key corresponding to
+     * each trace entry.
+     * @param capacity The maximal number of monitored keys.
+     */
+    public ApproximateBigram(String name, ObjectKeyGenerator<T> keyGen, int capacity) {
+        this(name, keyGen, capacity, 16 * capacity, DEFAULT_SKETCH_DEPTH);
+    }
+
+    /**
+     * Create a new {@link ApproximateBigram} object.
+     *
+     * @param name The name of the ngram.
+     * @param keyGen The key generator used to generate the key corresponding to
+     * each trace entry.
+     * @param capacity The maximal number of monitored keys.
+     * @param sketchWidth The number of counters in a row of the count-min
+     * sketch (rounded up to a power of 2).
+     * @param sketchDepth The number of rows of the count-min sketch.
+     */
+    public ApproximateBigram(String name, ObjectKeyGenerator<T> keyGen, int capacity,
+            int sketchWidth, int sketchDepth) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be greater than 0!");
+        Preconditions.checkArgument(sketchWidth > 0, "Sketch width must be greater than 0!");
+        Preconditions.checkArgument(sketchDepth > 0, "Sketch depth must be greater than 0!");
+        this.name = name;
+        this.keyGen = keyGen;
+        this.capacity = capacity;
+        this.otherId = capacity + 1;
+        this.slots = new HashMap<>();
+        this.keys = new String[capacity + 1];
+        this.used = 0;
+        this.counts = new long[capacity + 1];
+        this.heap = new int[capacity];
+        this.positions = new int[capacity + 1];
+        int width = Integer.highestOneBit(Math.max(1, sketchWidth - 1)) << 1;
+        this.sketch = new int[sketchDepth][width];
+        this.sketchMask = width - 1;
+        this.indexes = new int[sketchDepth];
+        this.transitions = new LongIntHashMap();
+        this.touching = new long[capacity + 1][];
+        this.touchingCount = new int[capacity + 1];
+    }
+
+    @Override
+    public void addTrace(Sequence<T> seq) {
+        LOG.debug("Adding trace {} to model", seq);
+        int state = START_ID;
+        int next;
+        Iterator<T> trace = seq.iterator();
+        while (trace.hasNext()) {
+            this.evicted = NO_SLOT;
+            next = getState(this.keyGen.generateKey(trace.next()));
+            if (this.evicted == state) {
+                // The previous key has been folded into the other state
+                state = this.otherId;
+            }
+            increment(state, next);
+            state = next;
+        }
+        // Final state has a transition to end state
+        increment(state, END_ID);
+    }
+
+    /**
+     * Returns the state of the given key, counting an occurrence of the key.
+     */
+    private int getState(String key) {
+        Integer slot = this.slots.get(key);
+        if (slot != null) {
+            this.counts[slot]++;
+            siftDown(this.positions[slot]);
+            return slot;
+        }
+        long estimate = estimate(key);
+        if (this.used < this.capacity) {
+            slot = ++this.used;
+            this.heap[slot - 1] = slot;
+            this.positions[slot] = slot - 1;
+            this.counts[slot] = estimate;
+            siftUp(slot - 1);
+        } else if (estimate > this.counts[this.heap[0]]) {
+            slot = this.heap[0];
+            LOG.trace("Key {} replaces key {}", key, this.keys[slot]);
+            this.slots.remove(this.keys[slot]);
+            fold(slot);
+            this.evicted = slot;
+            this.counts[slot] = estimate;
+            siftDown(0);
+        } else {
+            return this.otherId;
+        }
+        this.slots.put(key, slot);
+        this.keys[slot] = key;
+        return slot;
+    }
+
+    /**
+     * Counts an occurrence of the given key in the sketch (using conservative
+     * update) and returns the estimated number of occurrences of the key.
+     */
+    private long estimate(String key) {
+        int hash = key.hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < this.sketch.length; row++) {
+            int h = (hash + row * 0x9E3779B9) * 0x85EBCA6B;
+            this.indexes[row] = (h ^ (h >>> 15)) & this.sketchMask;
+            min = Math.min(min, this.sketch[row][this.indexes[row]]);
+        }
+        int estimate = min == Integer.MAX_VALUE ? min : min + 1;
+        for (int row = 0; row < this.sketch.length; row++) {
+            if (this.sketch[row][this.indexes[row]] < estimate) {
+                this.sketch[row][this.indexes[row]] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    private void siftUp(int position) {
+        int slot = this.heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (this.counts[this.heap[parent]] <= this.counts[slot]) {
+                break;
+            }
+            move(this.heap[parent], position);
+            position = parent;
+        }
+        move(slot, position);
+    }
+
+    private void siftDown(int position) {
+        int slot = this.heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= this.used) {
+                break;
+            }
+            if (child + 1 < this.used && this.counts[this.heap[child + 1]] < this.counts[this.heap[child]]) {
+                child++;
+            }
+            if (this.counts[slot] <= this.counts[this.heap[child]]) {
+                break;
+            }
+            move(this.heap[child], position);
+            position = child;
+        }
+        move(slot, position);
+    }
+
+    private void move(int slot, int position) {
+        this.heap[position] = slot;
+        this.positions[slot] = position;
+    }
+
+    private static long transition(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    private void increment(int source, int target) {
+        long transition = transition(source, target);
+        int size = this.transitions.size();
+        this.transitions.addTo(transition, 1);
+        if (this.transitions.size() > size) {
+            touch(source, transition);
+            touch(target, transition);
+        }
+    }
+
+    private void touch(int state, long transition) {
+        if (state <= START_ID || state >= this.otherId) {
+            return;
+        }
+        long[] keys = this.touching[state];
+        int size = this.touchingCount[state];
+        if (keys == null) {
+            keys = new long[4];
+        } else if (size == keys.length) {
+            size = compact(keys, size);
+            if (size > keys.length / 2) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+        }
+        keys[size++] = transition;
+        this.touching[state] = keys;
+        this.touchingCount[state] = size;
+    }
+
+    /**
+     * Removes the duplicated keys and the keys of the transitions which were
+     * moved.
+     */
+    private int compact(long[] keys, int size) {
+        Arrays.sort(keys, 0, size);
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if ((live == 0 || keys[live - 1] != keys[i]) && this.transitions.get(keys[i], 0) > 0) {
+                keys[live++] = keys[i];
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Moves the transitions from or to the given slot to the other state.
+     */
+    private void fold(int slot) {
+        long[] keys = this.touching[slot];
+        int size = keys == null ? 0 : compact(keys, this.touchingCount[slot]);
+        for (int i = 0; i < size; i++) {
+            int count = this.transitions.get(keys[i], 0);
+            this.transitions.remove(keys[i]);
+            int source = (int) (keys[i] >>> 32);
+            int target = (int) keys[i];
+            source = source == slot ? this.otherId : source;
+            target = target == slot ? this.otherId : target;
+            long transition = transition(source, target);
+            int before = this.transitions.size();
+            this.transitions.addTo(transition, count);
+            if (this.transitions.size() > before) {
+                touch(source, transition);
+                touch(target, transition);
+            }
+        }
+        this.touching[slot] = null;
+        this.touchingCount[slot] = 0;
+    }
+
+    /**
+     * Returns the keys which currently have their own state.
+     *
+     * @return The monitored keys.
+     */
+    public Iterable<String> getMonitoredKeys() {
+        return this.slots.keySet();
+    }
+
+    /**
+     * Returns the number of distinct transitions of the model.
+     *
+     * @return The number of transitions.
+     */
+    public int getTransitionsCount() {
+        return this.transitions.size();
+    }
+
+    private String stateName(int id) {
+        if (id == END_ID) {
+            return Bigram.END_STATE_ID;
+        }
+        return id == this.otherId ? OTHER_STATE_ID : "s" + id;
+    }
+
+    private String action(int target) {
+        if (target == END_ID) {
+            return Action.EPSILON_ACTION;
+        }
+        return target == this.otherId ? OTHER_ACTION : this.keys[target];
+    }
+
+    @Override
+    public UsageModel getModel() {
+        BigramUsageModelFactory factory = new BigramUsageModelFactory(Bigram.START_STATE_ID);
+        factory.addState(Bigram.END_STATE_ID);
+        factory.addTransition(Bigram.END_STATE_ID, Action.EPSILON_ACTION, Bigram.START_STATE_ID);
+        for (int slot = 0; slot < this.transitions.capacity(); slot++) {
+            long transition = this.transitions.keyAt(slot);
+            if (transition != LongIntHashMap.FREE) {
+                int source = (int) (transition >>> 32);
+                int target = (int) transition;
+                factory.addTransition(stateName(source), action(target), stateName(target),
+                        this.transitions.valueAt(slot));
+            }
+        }
+        return factory.build();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+}
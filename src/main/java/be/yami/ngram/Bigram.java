@@ -21,8 +21,16 @@ package be.yami.ngram;
  */
 import be.vibes.ts.Action;
 import be.vibes.ts.UsageModel;
+import be.yami.Checkpointable;
 import be.yami.Sequence;
 import be.yami.SequenceEntry;
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -47,7 +55,7 @@ import org.slf4j.LoggerFactory;
  * @param <T> The object type passed to the ObjectKeyGenerator provided at
  * construction time of Bigram object.
  */
-public class Bigram<T extends SequenceEntry> implements NGram<T>{
+public class Bigram<T extends SequenceEntry> implements NGram<T>, Checkpointable {
 
     public static final String START_STATE_ID = "s0";
     public static final String END_STATE_ID = "sX";
@@ -122,4 +130,102 @@ public class Bigram<T extends SequenceEntry> implements NGram<T>{
         return this.name;
     }
     
+    /**
+     * Adds the traces of the given bigram to this bigram, e.g., to combine
+     * models inferred from different logs, possibly on different machines
+     * (see {@link #saveState(DataOutput)} and
+     * {@link #restoreState(DataInput)}). The states of both bigrams are
+     * matched using their keys, as they are numbered independently. The
+     * resulting model is the same as the one inferred by a single bigram from
+     * the traces of both bigrams, up to the names of the states. Both bigrams
+     * should use the same key generator.
+     *
+     * @param other The bigram to merge into this one.
+     */
+    public void merge(Bigram<T> other) {
+        Preconditions.checkArgument(other != this, "A bigram may not be merged with itself!");
+        final Map<String, String> otherKeys = new HashMap<>();
+        other.statesIds.forEach((key, state) -> otherKeys.put(state, key));
+        other.factory.forEachCount((source, action, target, occurrences) -> {
+            // The transition from the end state to the start state is already there
+            if (!source.equals(END_STATE_ID)) {
+                factory.addTransition(mergedState(otherKeys, source), action,
+                        mergedState(otherKeys, target), occurrences);
+            }
+        });
+        this.nbrTraces += other.nbrTraces;
+        this.nbrEntries += other.nbrEntries;
+    }
+
+    private String mergedState(Map<String, String> otherKeys, String state) {
+        String key = otherKeys.get(state);
+        return key == null ? state : getState(key);
+    }
+
+    /**
+     * Saves the state of this bigram to the given file, in a compact binary
+     * format (see {@link #loadSnapshot(Path)}). Adding traces to a bigram
+     * loaded from a snapshot gives the same model as adding all the traces to
+     * the same bigram, so that new logs may be processed without processing
+     * the previous ones again.
+     *
+     * @param file The snapshot file.
+     * @throws IOException If the file may not be written.
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        snapshot().write(file);
+    }
+
+    /**
+     * Replaces the state of this bigram by the one saved in the given snapshot
+     * file (see {@link #saveSnapshot(Path)}). The file is mapped in memory
+     * while it is read. The bigram should use the same key generator as the
+     * one which saved the snapshot.
+     *
+     * @param file The snapshot file.
+     * @throws IOException If the file may not be read.
+     */
+    public void loadSnapshot(Path file) throws IOException {
+        BigramSnapshot snapshot = new BigramSnapshot(statesIds, factory);
+        snapshot.read(file);
+        restoreCounters(snapshot);
+    }
+
+    private BigramSnapshot snapshot() {
+        BigramSnapshot snapshot = new BigramSnapshot(statesIds, factory);
+        snapshot.nbrTraces = nbrTraces;
+        snapshot.nbrEntries = nbrEntries;
+        snapshot.count = count;
+        return snapshot;
+    }
+
+    private void restoreCounters(BigramSnapshot snapshot) {
+        nbrTraces = snapshot.nbrTraces;
+        nbrEntries = snapshot.nbrEntries;
+        count = snapshot.count;
+    }
+
+    /**
+     * {@inheritDoc} The state is a snapshot (see {@link #saveSnapshot(Path)})
+     * prefixed by its length. It contains the raw number of occurrences of the
+     * transitions, and may be used to merge bigrams inferred in different
+     * processes (see {@link #merge(Bigram)}).
+     */
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot().write(bytes);
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    @Override
+    public void restoreState(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        BigramSnapshot snapshot = new BigramSnapshot(statesIds, factory);
+        snapshot.read(ByteBuffer.wrap(bytes), "state");
+        restoreCounters(snapshot);
+    }
+
 }
@@ -0,0 +1,240 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static be.yami.io.VarInts.readVarInt;
+import static be.yami.io.VarInts.writeVarInt;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary snapshot of the state of a {@link Bigram}: its counters,
+ * the mapping from keys to states and the number of occurrences of the
+ * transitions. Keys and actions are written once, in a dictionary, and the
+ * transitions refer to them by index. States are written as their number (the
+ * N in s&lt;N&gt;) and all the integers are written as variable-length
+ * integers (7 bits per byte), so that most values take one or two bytes.
+ * Snapshot files are read from memory-mapped files, and snapshots are also
+ * used as the state of the checkpoints of a bigram (see
+ * {@link Bigram#saveState(java.io.DataOutput)}).
+ * <p>
+ * The layout of a snapshot is: magic number, version, counters, dictionary
+ * (size, then length and UTF-8 bytes of each string), states of the keys of
+ * the dictionary (count, then state number of each key in dictionary order),
+ * transitions (count, then source state, action index, target state and
+ * number of occurrences of each transition).
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+final class BigramSnapshot {
+
+    private static final int MAGIC = 0x59424753;
+    private static final int VERSION = 1;
+
+    // The end state is written as 0 and the state s<N> as N + 1
+    private static final int END_STATE_CODE = 0;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Map<String, String> statesIds;
+    private final BigramUsageModelFactory factory;
+    int nbrTraces;
+    int nbrEntries;
+    int count;
+
+    /**
+     * Creates a new snapshot of the given parts of a bigram.
+     *
+     * @param statesIds The states of the keys.
+     * @param factory The factory counting the transitions.
+     */
+    BigramSnapshot(Map<String, String> statesIds, BigramUsageModelFactory factory) {
+        this.statesIds = statesIds;
+        this.factory = factory;
+    }
+
+    /**
+     * Writes this snapshot to the given file. The snapshot is written to a
+     * temporary file first, which then replaces the given file.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file may not be written.
+     */
+    void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp.toFile()),
+                BUFFER_SIZE)) {
+            write(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes this snapshot to the given output.
+     *
+     * @param out The output.
+     * @throws IOException If the snapshot may not be written.
+     */
+    void write(OutputStream out) throws IOException {
+        final Map<String, Integer> dictionary = new LinkedHashMap<>();
+        statesIds.keySet().forEach((key) -> dictionary.put(key, dictionary.size()));
+        factory.forEachCount((source, action, target, occurrences)
+                -> dictionary.putIfAbsent(action, dictionary.size()));
+        writeInt(out, MAGIC);
+        writeVarInt(out, VERSION);
+        writeVarInt(out, nbrTraces);
+        writeVarInt(out, nbrEntries);
+        writeVarInt(out, count);
+        writeVarInt(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+        writeVarInt(out, statesIds.size());
+        for (String state : statesIds.values()) {
+            writeVarInt(out, stateCode(state));
+        }
+        writeVarInt(out, factory.transitionsCount());
+        factory.forEachCount((source, action, target, occurrences) -> {
+            writeVarInt(out, stateCode(source));
+            writeVarInt(out, dictionary.get(action));
+            writeVarInt(out, stateCode(target));
+            writeVarInt(out, occurrences);
+        });
+    }
+
+    /**
+     * Replaces the states of the keys and the counts of the transitions by the
+     * ones of the given snapshot file, and reads the counters.
+     *
+     * @param file The file to read.
+     * @throws IOException If the file may not be read or is not a snapshot.
+     */
+    void read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file);
+        }
+    }
+
+    /**
+     * Replaces the states of the keys and the counts of the transitions by the
+     * ones of the snapshot in the given buffer, and reads the counters. The
+     * whole snapshot is decoded before anything is replaced, so that nothing
+     * is changed if the buffer is invalid.
+     *
+     * @param in The buffer to read.
+     * @param origin The origin of the buffer, for the error messages.
+     * @throws IOException If the buffer does not contain a snapshot.
+     */
+    void read(ByteBuffer in, Object origin) throws IOException {
+        try {
+            if (in.remaining() < 4 || in.getInt() != MAGIC || readVarInt(in) != VERSION) {
+                throw new IOException("Invalid snapshot " + origin + "!");
+            }
+            int readTraces = readVarInt(in);
+            int readEntries = readVarInt(in);
+            int readCount = readVarInt(in);
+            int size = readSize(in, 1, origin);
+            List<String> dictionary = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                byte[] bytes = new byte[readVarInt(in)];
+                in.get(bytes);
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            size = readSize(in, 1, origin);
+            if (size > dictionary.size()) {
+                throw new IOException("Invalid snapshot " + origin + "!");
+            }
+            String[] states = new String[size];
+            for (int i = 0; i < size; i++) {
+                states[i] = stateName(readVarInt(in));
+            }
+            size = readSize(in, 4, origin);
+            // INV: source state code, action index, target state code and count of each transition
+            int[] transitions = new int[size * 4];
+            for (int i = 0; i < transitions.length; i++) {
+                transitions[i] = readVarInt(in);
+                if (i % 4 == 1 && transitions[i] >= dictionary.size()) {
+                    throw new IOException("Invalid snapshot " + origin + "!");
+                }
+            }
+            // Commit the decoded snapshot
+            statesIds.clear();
+            for (int i = 0; i < states.length; i++) {
+                statesIds.put(dictionary.get(i), states[i]);
+            }
+            factory.clearCounts();
+            for (int i = 0; i < transitions.length; i += 4) {
+                factory.addTransition(stateName(transitions[i]), dictionary.get(transitions[i + 1]),
+                        stateName(transitions[i + 2]), transitions[i + 3]);
+            }
+            nbrTraces = readTraces;
+            nbrEntries = readEntries;
+            count = readCount;
+        } catch (RuntimeException ex) {
+            // Buffer underflow, index out of bounds
+            throw new IOException("Invalid snapshot " + origin + "!", ex);
+        }
+    }
+
+    /**
+     * Reads a number of elements, each taking at least the given number of
+     * bytes of the buffer.
+     */
+    private static int readSize(ByteBuffer in, int minBytes, Object origin) throws IOException {
+        int size = readVarInt(in);
+        if (size < 0 || size > in.remaining() / minBytes) {
+            throw new IOException("Invalid snapshot " + origin + "!");
+        }
+        return size;
+    }
+
+    private static int stateCode(String state) {
+        return state.equals(Bigram.END_STATE_ID) ? END_STATE_CODE
+                : Integer.parseInt(state.substring(1)) + 1;
+    }
+
+    private static String stateName(int code) {
+        return code == END_STATE_CODE ? Bigram.END_STATE_ID : "s" + (code - 1);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+}
@@ -3,27 +3,28 @@ package be.yami.ngram;
 import be.vibes.ts.DefaultUsageModel;
 import be.vibes.ts.UsageModelFactory;
 import com.google.common.base.Preconditions;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * A usage model factory to be used by the {@link Bigram} class. This implementation
  * retains the number of occurrences of the transitions to define their
- * probabilities.
+ * probabilities. The occurrences are counted using primitive maps indexed by
+ * the ids of the states and actions (see {@link TransitionCounts}), without
+ * boxing an integer for each added transition.
  *
  * @author Xavier Devroey - xavier.devroey@gmail.com
  */
 public class BigramUsageModelFactory extends UsageModelFactory {
 
-    // INV: <source, target, action, count>
-    private final Map<String, Map<String, Map<String, Integer>>> transitions;
-
-    private final Map<String, Integer> outgoingCount;
+    private final String initialState;
+    private final TransitionCounts counts;
+    // The factory of the model, replaced when the counts are cleared
+    private UsageModelFactory modelFactory;
 
     public BigramUsageModelFactory(String initialState) {
         super(initialState);
-        this.transitions = new HashMap<>();
-        this.outgoingCount = new HashMap<>();
+        this.initialState = initialState;
+        this.counts = new TransitionCounts();
+        this.modelFactory = this;
     }
 
     @Override
@@ -31,50 +32,69 @@ public class BigramUsageModelFactory extends UsageModelFactory {
         Preconditions.checkNotNull(source, "Source may not be null!");
         Preconditions.checkNotNull(action, "Action may not be null!");
         Preconditions.checkNotNull(target, "Target may not be null!");
-        // Increment outgoing count
-        Integer count = outgoingCount.get(source);
-        if (count == null) {
-            count = 0;
-        }
-        count++;
-        outgoingCount.put(source, count);
-        // get source state transitions
-        Map<String, Map<String, Integer>> targetMap = transitions.get(source);
-        if (targetMap == null) {
-            targetMap = new HashMap<>();
-            transitions.put(source, targetMap);
-        }
-        // get transitions that goes to target
-        Map<String, Integer> actionMap = targetMap.get(target);
-        if (actionMap == null) {
-            actionMap = new HashMap<>();
-            targetMap.put(target, actionMap);
-        }
-        // get count for the given action
-        count = actionMap.get(action);
-        if (count == null) {
-            count = 0;
-        }
-        // increment count
-        count++;
-        actionMap.put(action, count);
+        counts.add(source, action, target, 1);
+    }
+
+    /**
+     * Adds the given number of occurrences of a transition at once.
+     *
+     * @param source The source state of the transition.
+     * @param action The action of the transition.
+     * @param target The target state of the transition.
+     * @param count The number of occurrences of the transition.
+     */
+    void addTransition(String source, String action, String target, int count) {
+        counts.add(source, action, target, count);
     }
 
+    /**
+     * {@inheritDoc} The model is updated incrementally: only the probabilities
+     * of the transitions leaving the states whose outgoing transitions changed
+     * since the previous call are computed and set in the model, so that
+     * calling this method periodically (e.g., to publish a live model) costs
+     * in proportion to the changes instead of the size of the model. As
+     * transitions are never removed from a model, the model is built from
+     * scratch (by a new factory, without the states added using
+     * {@link #addState(String)}) after the counts have been cleared.
+     */
     @Override
     public DefaultUsageModel build() {
-        transitions.entrySet().forEach((tr) -> { // For each starting state
-            String source = tr.getKey();
-            int sourceCount = outgoingCount.get(source);
-            tr.getValue().entrySet().forEach((dest) -> { // for each target state
-                String target = dest.getKey();
-                dest.getValue().entrySet().forEach((act) -> { // for each action
-                    String action = act.getKey();
-                    int count = act.getValue();
-                    addTransition(source, action, (1.0 * count) / (1.0 * sourceCount), target);
-                });
-            });
+        UsageModelFactory factory = this.modelFactory;
+        counts.forEachChanged((source, action, target, count) -> {
+            int sourceCount = counts.outgoingCount(source);
+            factory.addTransition(source, action, (1.0 * count) / (1.0 * sourceCount), target);
         });
-        return super.build();
+        return factory == this ? super.build() : factory.build();
+    }
+
+    /**
+     * Gives each transition and its number of occurrences to the given
+     * visitor.
+     *
+     * @param <X> The type of exception thrown by the visitor.
+     * @param visitor The visitor.
+     * @throws X If the visitor throws an exception.
+     */
+    <X extends Exception> void forEachCount(TransitionCounts.Visitor<X> visitor) throws X {
+        counts.forEach(visitor);
+    }
+
+    /**
+     * Returns the number of distinct transitions counted by this factory.
+     *
+     * @return The number of transitions.
+     */
+    int transitionsCount() {
+        return counts.size();
+    }
+
+    /**
+     * Removes the counts of all the transitions. The next model will be built
+     * from scratch.
+     */
+    void clearCounts() {
+        counts.clear();
+        this.modelFactory = new UsageModelFactory(this.initialState);
     }
 
 }
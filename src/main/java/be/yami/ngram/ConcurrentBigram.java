@@ -0,0 +1,148 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import be.vibes.ts.Action;
+import be.vibes.ts.UsageModel;
+import be.yami.Sequence;
+import be.yami.SequenceEntry;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A thread-safe version of {@link Bigram}: traces may be added concurrently
+ * from several threads (e.g., the listeners of sharded session builders). State
+ * ids are assigned without locking using a concurrent map, and transitions are
+ * counted using {@link LongAdder}s indexed by the ids of their source and
+ * target states, so that threads adding traces rarely contend. As in a bigram,
+ * the action of a transition is the key of its target state, except for the
+ * transitions to the end state.
+ * <p>
+ * State ids depend on the order in which keys are first seen, which is not
+ * deterministic when traces are added concurrently: the inferred model is the
+ * same as the one inferred by a {@link Bigram} from the same traces, up to the
+ * names of the states.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ * @param <T> The object type passed to the ObjectKeyGenerator provided at
+ * construction time of ConcurrentBigram object.
+ */
+public class ConcurrentBigram<T extends SequenceEntry> implements NGram<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrentBigram.class);
+
+    private static final int START_ID = 0;
+    private static final int END_ID = -1;
+
+    private final String name;
+    private final ObjectKeyGenerator<T> keyGen;
+    private final ConcurrentMap<String, Integer> statesIds;
+    private final ConcurrentMap<Integer, String> keys;
+    private final AtomicInteger count;
+    // INV: <(source << 32) | target, count>
+    private final ConcurrentMap<Long, LongAdder> transitions;
+
+    /**
+     * Create a new {@link ConcurrentBigram} object.
+     *
+     * @param name The name of the ngram.
+     * @param keyGen The key generator used to generate the key corresponding to
+     * each trace entry. It has to be thread-safe.
+     */
+    public ConcurrentBigram(String name, ObjectKeyGenerator<T> keyGen) {
+        this.name = name;
+        this.keyGen = keyGen;
+        this.statesIds = new ConcurrentHashMap<>();
+        this.keys = new ConcurrentHashMap<>();
+        this.count = new AtomicInteger(1);
+        this.transitions = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void addTrace(Sequence<T> seq) {
+        LOG.debug("Adding trace {} to model", seq);
+        int state = START_ID;
+        int next;
+        Iterator<T> trace = seq.iterator();
+        while (trace.hasNext()) {
+            next = getState(this.keyGen.generateKey(trace.next()));
+            increment(state, next);
+            state = next;
+        }
+        // Final state has a transition to end state
+        increment(state, END_ID);
+    }
+
+    private int getState(String key) {
+        Integer id = statesIds.get(key);
+        if (id == null) {
+            id = statesIds.computeIfAbsent(key, (k) -> {
+                int newId = count.getAndIncrement();
+                keys.put(newId, k);
+                return newId;
+            });
+        }
+        return id;
+    }
+
+    private void increment(int source, int target) {
+        Long transition = ((long) source << 32) | (target & 0xFFFFFFFFL);
+        LongAdder adder = transitions.get(transition);
+        if (adder == null) {
+            adder = transitions.computeIfAbsent(transition, (t) -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    private static String stateName(int id) {
+        return id == END_ID ? Bigram.END_STATE_ID : "s" + id;
+    }
+
+    /**
+     * {@inheritDoc} This method should be called once all the traces have been
+     * added: traces added concurrently may be partially taken into account.
+     */
+    @Override
+    public UsageModel getModel() {
+        BigramUsageModelFactory factory = new BigramUsageModelFactory(Bigram.START_STATE_ID);
+        factory.addState(Bigram.END_STATE_ID);
+        factory.addTransition(Bigram.END_STATE_ID, Action.EPSILON_ACTION, Bigram.START_STATE_ID);
+        transitions.forEach((transition, occurrences) -> {
+            int source = (int) (transition >> 32);
+            int target = transition.intValue();
+            String action = target == END_ID ? Action.EPSILON_ACTION : keys.get(target);
+            factory.addTransition(stateName(source), action, stateName(target), occurrences.intValue());
+        });
+        return factory.build();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+}
@@ -0,0 +1,281 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import be.vibes.ts.Action;
+import be.vibes.ts.UsageModel;
+import be.yami.Sequence;
+import be.yami.SequenceEntry;
+import com.google.common.base.Preconditions;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Bigram} counting only the transitions of a sliding time window, for
+ * long-running inference processes whose model should follow the recent usage
+ * instead of growing forever. The time of a transition is the time of its
+ * target entry (or of the last entry for the transitions to the end state),
+ * given by a function of the entries, e.g., {@code (r) -> r.getTime().getTime()}
+ * for {@link be.yami.web.UserRequest}s. Transitions are counted in buckets of
+ * time, kept in a ring buffer: when an entry falls in a new bucket, the
+ * buckets leaving the window are removed from the counts of the window, so
+ * that each count is added and removed once (O(1) amortized per entry).
+ * Entries older than the window are ignored: a trace starts at its first
+ * entry in the window, and goes from the previous entry in the window to the
+ * next one around the ignored entries. Unlike {@link Bigram}, traces without
+ * entries in the window, including empty traces, are not counted (they have
+ * no time).
+ * <p>
+ * The states are only kept while they have transitions in the window: the id
+ * and key of a state are removed when its last transition leaves the window.
+ * States are named after a counter, so that a state keeps the same name while
+ * it stays in the window, but a key coming back in the window gets a new
+ * state.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ * @param <T> The object type passed to the ObjectKeyGenerator provided at
+ * construction time of DecayingBigram object.
+ */
+public class DecayingBigram<T extends SequenceEntry> implements NGram<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DecayingBigram.class);
+
+    private static final int START_ID = 0;
+    private static final int END_ID = -1;
+
+    private final String name;
+    private final ObjectKeyGenerator<T> keyGen;
+    private final ToLongFunction<T> timeOf;
+    private final long bucketDuration;
+    private final Map<String, Integer> statesIds;
+    private final Map<Integer, String> keys;
+    // INV: <state id, number of transitions of the window and traces being added using the state>
+    private final LongIntHashMap references;
+    private int nextId;
+    // INV: <(source << 32) | target, count> for each bucket, and for the window
+    private final LongIntHashMap[] buckets;
+    private final LongIntHashMap window;
+    // Index of the most recent bucket, Long.MIN_VALUE if none
+    private long current;
+
+    /**
+     * Create a new {@link DecayingBigram} object.
+     *
+     * @param name The name of the ngram.
+     * @param keyGen The key generator used to generate the key corresponding to
+     * each trace entry.
+     * @param timeOf The function giving the time of an entry (in
+     * milliseconds).
+     * @param bucketDuration The duration of a bucket (in milliseconds).
+     * @param bucketsCount The number of buckets in the window: the window
+     * lasts bucketsCount * bucketDuration.
+     */
+    public DecayingBigram(String name, ObjectKeyGenerator<T> keyGen, ToLongFunction<T> timeOf,
+            long bucketDuration, int bucketsCount) {
+        Preconditions.checkArgument(bucketDuration > 0, "Bucket duration must be greater than 0!");
+        Preconditions.checkArgument(bucketsCount > 0, "Number of buckets must be greater than 0!");
+        this.name = name;
+        this.keyGen = keyGen;
+        this.timeOf = timeOf;
+        this.bucketDuration = bucketDuration;
+        this.statesIds = new HashMap<>();
+        this.keys = new HashMap<>();
+        this.references = new LongIntHashMap();
+        this.nextId = START_ID + 1;
+        this.buckets = new LongIntHashMap[bucketsCount];
+        for (int i = 0; i < bucketsCount; i++) {
+            this.buckets[i] = new LongIntHashMap();
+        }
+        this.window = new LongIntHashMap();
+        this.current = Long.MIN_VALUE;
+    }
+
+    @Override
+    public void addTrace(Sequence<T> seq) {
+        LOG.debug("Adding trace {} to model", seq);
+        int state = START_ID;
+        long bucket = Long.MIN_VALUE;
+        Iterator<T> trace = seq.iterator();
+        while (trace.hasNext()) {
+            T entry = trace.next();
+            long entryBucket = bucket(this.timeOf.applyAsLong(entry));
+            if (entryBucket == Long.MIN_VALUE) {
+                LOG.trace("Ignoring entry older than the window");
+                continue;
+            }
+            bucket = entryBucket;
+            int next = getState(this.keyGen.generateKey(entry));
+            increment(state, next, bucket);
+            // All the transitions of the state in the trace have been counted
+            release(state);
+            state = next;
+        }
+        if (state != START_ID) {
+            // Final state has a transition to end state (in the bucket of the last counted entry)
+            increment(state, END_ID, bucket);
+            release(state);
+        }
+    }
+
+    /**
+     * Returns the id of the state of the given key, retained until it is
+     * released.
+     */
+    private int getState(String key) {
+        Integer id = this.statesIds.get(key);
+        if (id == null) {
+            id = this.nextId++;
+            this.statesIds.put(key, id);
+            this.keys.put(id, key);
+        }
+        retain(id);
+        return id;
+    }
+
+    private void retain(int id) {
+        if (id != START_ID && id != END_ID) {
+            this.references.addTo(id, 1);
+        }
+    }
+
+    /**
+     * Releases the given state, removing it if it is not used anymore.
+     */
+    private void release(int id) {
+        if (id != START_ID && id != END_ID && this.references.addTo(id, -1) == 0) {
+            this.references.remove(id);
+            this.statesIds.remove(this.keys.remove(id));
+        }
+    }
+
+    /**
+     * Returns the bucket of the given time, moving the window forward if
+     * needed, or Long.MIN_VALUE if the time is older than the window.
+     */
+    private long bucket(long time) {
+        long bucket = Math.floorDiv(time, this.bucketDuration);
+        if (this.current == Long.MIN_VALUE || bucket > this.current) {
+            advance(bucket);
+        } else if (bucket <= this.current - this.buckets.length) {
+            return Long.MIN_VALUE;
+        }
+        return bucket;
+    }
+
+    private void increment(int source, int target, long bucket) {
+        if (bucket <= this.current - this.buckets.length) {
+            LOG.trace("Ignoring transition older than the window");
+            return;
+        }
+        long transition = ((long) source << 32) | (target & 0xFFFFFFFFL);
+        this.buckets[(int) Math.floorMod(bucket, (long) this.buckets.length)].addTo(transition, 1);
+        if (this.window.addTo(transition, 1) == 1) {
+            retain(source);
+            retain(target);
+        }
+    }
+
+    /**
+     * Makes the given bucket the most recent one, removing the buckets leaving
+     * the window from the counts of the window.
+     */
+    private void advance(long bucket) {
+        if (this.current != Long.MIN_VALUE) {
+            // The slots of the buckets up to bucket - length are reused
+            long last = Math.min(bucket - this.buckets.length, this.current);
+            for (long b = this.current - this.buckets.length + 1; b <= last; b++) {
+                expire(this.buckets[(int) Math.floorMod(b, (long) this.buckets.length)]);
+            }
+        }
+        this.current = bucket;
+    }
+
+    private void expire(LongIntHashMap bucket) {
+        if (bucket.size() == 0) {
+            return;
+        }
+        for (int slot = 0; slot < bucket.capacity(); slot++) {
+            long transition = bucket.keyAt(slot);
+            if (transition != LongIntHashMap.FREE
+                    && this.window.addTo(transition, -bucket.valueAt(slot)) == 0) {
+                this.window.remove(transition);
+                release((int) (transition >>> 32));
+                release((int) transition);
+            }
+        }
+        bucket.clear();
+    }
+
+    /**
+     * Returns the number of distinct transitions in the window.
+     *
+     * @return The number of transitions in the window.
+     */
+    public int getTransitionsCount() {
+        return this.window.size();
+    }
+
+    /**
+     * Returns the number of states with transitions in the window (without
+     * the start and end states).
+     *
+     * @return The number of states.
+     */
+    public int getStatesCount() {
+        return this.keys.size();
+    }
+
+    private static String stateName(int id) {
+        return id == END_ID ? Bigram.END_STATE_ID : "s" + id;
+    }
+
+    /**
+     * {@inheritDoc} The model contains the transitions of the current window.
+     */
+    @Override
+    public UsageModel getModel() {
+        BigramUsageModelFactory factory = new BigramUsageModelFactory(Bigram.START_STATE_ID);
+        factory.addState(Bigram.END_STATE_ID);
+        factory.addTransition(Bigram.END_STATE_ID, Action.EPSILON_ACTION, Bigram.START_STATE_ID);
+        for (int slot = 0; slot < this.window.capacity(); slot++) {
+            long transition = this.window.keyAt(slot);
+            if (transition != LongIntHashMap.FREE) {
+                int source = (int) (transition >>> 32);
+                int target = (int) transition;
+                String action = target == END_ID ? Action.EPSILON_ACTION : this.keys.get(target);
+                factory.addTransition(stateName(source), action, stateName(target),
+                        this.window.valueAt(slot));
+            }
+        }
+        return factory.build();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+}
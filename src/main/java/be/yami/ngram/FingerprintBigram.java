@@ -0,0 +1,174 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import be.vibes.ts.Action;
+import be.vibes.ts.UsageModel;
+import be.yami.Sequence;
+import be.yami.SequenceEntry;
+import be.yami.exception.ModelGenerationException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A version of {@link Bigram} identifying the states using the 64-bit
+ * fingerprints of their keys (see
+ * {@link ObjectKeyGenerator#generateFingerprint(Object)}) instead of the keys
+ * themselves: states and transitions are counted in primitive hash maps
+ * indexed by fingerprints and state ids, and the key of a state is only
+ * generated the first time the state is reached, to name the actions of the
+ * final model. The inferred model is the same as the one inferred by a
+ * {@link Bigram}, unless two different keys have the same fingerprint: their
+ * states are then merged. The collision check mode generates the key of each
+ * entry and compares it with the key of its state, to validate a key
+ * generator on a set of traces.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ * @param <T> The object type passed to the ObjectKeyGenerator provided at
+ * construction time of FingerprintBigram object.
+ */
+public class FingerprintBigram<T extends SequenceEntry> implements NGram<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FingerprintBigram.class);
+
+    private static final int START_ID = 0;
+    private static final int END_ID = -1;
+
+    private final String name;
+    private final ObjectKeyGenerator<T> keyGen;
+    private final boolean checkCollisions;
+    // INV: <fingerprint, state id>
+    private final LongIntHashMap statesIds;
+    // INV: keys.get(id - 1) is the key of state id
+    private final List<String> keys;
+    // INV: <(source << 32) | target, count>
+    private final LongIntHashMap transitions;
+
+    /**
+     * Create a new {@link FingerprintBigram} object, without collision check.
+     *
+     * @param name The name of the ngram.
+     * @param keyGen The key generator used to generate the fingerprint and the
+     * key corresponding to each trace entry.
+     */
+    public FingerprintBigram(String name, ObjectKeyGenerator<T> keyGen) {
+        this(name, keyGen, false);
+    }
+
+    /**
+     * Create a new {@link FingerprintBigram} object.
+     *
+     * @param name The name of the ngram.
+     * @param keyGen The key generator used to generate the fingerprint and the
+     * key corresponding to each trace entry.
+     * @param checkCollisions If true, the key of each trace entry is generated
+     * and compared with the key of its state, and a
+     * {@link ModelGenerationException} is thrown if they differ.
+     */
+    public FingerprintBigram(String name, ObjectKeyGenerator<T> keyGen, boolean checkCollisions) {
+        this.name = name;
+        this.keyGen = keyGen;
+        this.checkCollisions = checkCollisions;
+        this.statesIds = new LongIntHashMap();
+        this.keys = new ArrayList<>();
+        this.transitions = new LongIntHashMap();
+    }
+
+    @Override
+    public void addTrace(Sequence<T> seq) throws ModelGenerationException {
+        LOG.debug("Adding trace {} to model", seq);
+        int state = START_ID;
+        int next;
+        T entry;
+        Iterator<T> trace = seq.iterator();
+        while (trace.hasNext()) {
+            entry = trace.next();
+            next = getState(entry);
+            this.transitions.addTo(transition(state, next), 1);
+            state = next;
+        }
+        // Final state has a transition to end state
+        this.transitions.addTo(transition(state, END_ID), 1);
+    }
+
+    private int getState(T entry) throws ModelGenerationException {
+        // Fingerprints are not negative, as the keys of the map
+        long fingerprint = this.keyGen.generateFingerprint(entry) & Long.MAX_VALUE;
+        int id = this.statesIds.putIfAbsent(fingerprint, this.keys.size() + 1);
+        if (id > this.keys.size()) {
+            this.keys.add(this.keyGen.generateKey(entry));
+        } else if (this.checkCollisions) {
+            String key = this.keyGen.generateKey(entry);
+            if (!key.equals(this.keys.get(id - 1))) {
+                throw new ModelGenerationException(String.format(
+                        "Keys %s and %s have the same fingerprint %x!", this.keys.get(id - 1),
+                        key, fingerprint));
+            }
+        }
+        return id;
+    }
+
+    private static long transition(int source, int target) {
+        return ((long) source << 32) | (target & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the number of states reached by the traces, without the initial
+     * and final states.
+     *
+     * @return The number of distinct keys.
+     */
+    public int getKeysCount() {
+        return this.keys.size();
+    }
+
+    private static String stateName(int id) {
+        return id == END_ID ? Bigram.END_STATE_ID : "s" + id;
+    }
+
+    @Override
+    public UsageModel getModel() {
+        BigramUsageModelFactory factory = new BigramUsageModelFactory(Bigram.START_STATE_ID);
+        factory.addState(Bigram.END_STATE_ID);
+        factory.addTransition(Bigram.END_STATE_ID, Action.EPSILON_ACTION, Bigram.START_STATE_ID);
+        for (int slot = 0; slot < this.transitions.capacity(); slot++) {
+            long transition = this.transitions.keyAt(slot);
+            if (transition != LongIntHashMap.FREE) {
+                int source = (int) (transition >>> 32);
+                int target = (int) transition;
+                String action = target == END_ID ? Action.EPSILON_ACTION : this.keys.get(target - 1);
+                factory.addTransition(stateName(source), action, stateName(target),
+                        this.transitions.valueAt(slot));
+            }
+        }
+        return factory.build();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+}
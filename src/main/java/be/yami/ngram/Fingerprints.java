@@ -0,0 +1,101 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * Computes 64-bit fingerprints of keys (see
+ * {@link ObjectKeyGenerator#generateFingerprint(Object)}). The fingerprint of
+ * a key may be computed incrementally over the parts of the key, without
+ * building the key: appending the parts of a key gives the same fingerprint
+ * as appending the whole key. Fingerprints are computed using 64-bit FNV-1a
+ * over the chars of the key, followed by a final mix of the bits.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public final class Fingerprints {
+
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Returns the initial state of a fingerprint.
+     *
+     * @return The fingerprint of an empty key, before {@link #finish(long)}.
+     */
+    public static long start() {
+        return OFFSET;
+    }
+
+    /**
+     * Appends the given char to a fingerprint.
+     *
+     * @param fingerprint The fingerprint.
+     * @param c The char to append.
+     * @return The updated fingerprint.
+     */
+    public static long append(long fingerprint, char c) {
+        return (fingerprint ^ c) * PRIME;
+    }
+
+    /**
+     * Appends the chars of the given value to a fingerprint. A null value is
+     * appended as "null", as done by string concatenation.
+     *
+     * @param fingerprint The fingerprint.
+     * @param value The value to append.
+     * @return The updated fingerprint.
+     */
+    public static long append(long fingerprint, String value) {
+        String s = value == null ? "null" : value;
+        for (int i = 0; i < s.length(); i++) {
+            fingerprint = (fingerprint ^ s.charAt(i)) * PRIME;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the final fingerprint, mixing the bits of the given state.
+     *
+     * @param fingerprint The fingerprint.
+     * @return The final fingerprint.
+     */
+    public static long finish(long fingerprint) {
+        fingerprint ^= fingerprint >>> 33;
+        fingerprint *= 0xff51afd7ed558ccdL;
+        fingerprint ^= fingerprint >>> 33;
+        fingerprint *= 0xc4ceb9fe1a85ec53L;
+        fingerprint ^= fingerprint >>> 33;
+        return fingerprint;
+    }
+
+    /**
+     * Returns the fingerprint of the given key.
+     *
+     * @param key The key.
+     * @return The fingerprint of the key.
+     */
+    public static long of(String key) {
+        return finish(append(start(), key));
+    }
+
+}
@@ -0,0 +1,169 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import com.google.common.base.Preconditions;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded cache of the keys generated by an {@link ObjectKeyGenerator}. The
+ * set of distinct keys is usually tiny compared to the number of entries in
+ * the sequences: the key of an entry is looked up using a hash of the inputs
+ * of the key (e.g., the class and the name of the called method) computed
+ * without allocation, and the key is only generated if the cached entry with
+ * the same hash has different inputs. The cache is direct-mapped: an entry is
+ * replaced by the last entry with the same slot.
+ * <p>
+ * The cache may be used concurrently: slots are written without
+ * synchronization, but the cached entries are immutable.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ * @param <T> The type of objects identified by the keys.
+ */
+public final class KeyCache<T> {
+
+    /**
+     * The default number of cached keys.
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private static final class Entry<T> {
+
+        private final int hash;
+        private final T object;
+        private final String key;
+
+        Entry(int hash, T object, String key) {
+            this.hash = hash;
+            this.object = object;
+            this.key = key;
+        }
+
+    }
+
+    private final Entry<T>[] entries;
+    private final int mask;
+    private final ToIntFunction<T> hash;
+    private final BiPredicate<T, T> sameKey;
+    private final Function<T, String> keyGen;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param size The number of cached keys (rounded up to a power of 2).
+     * @param hash The hash of the inputs of the key of an object.
+     * @param sameKey Returns true if two objects have the same inputs, and
+     * therefore the same key.
+     * @param keyGen Generates the key of an object.
+     */
+    @SuppressWarnings("unchecked")
+    public KeyCache(int size, ToIntFunction<T> hash, BiPredicate<T, T> sameKey,
+            Function<T, String> keyGen) {
+        Preconditions.checkArgument(size > 0, "Size must be greater than 0!");
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.entries = (Entry<T>[]) new Entry[capacity];
+        this.mask = capacity - 1;
+        this.hash = hash;
+        this.sameKey = sameKey;
+        this.keyGen = keyGen;
+    }
+
+    /**
+     * Returns the key of the given object, generating it only if it is not
+     * cached.
+     *
+     * @param object The object to identify.
+     * @return The key of the object.
+     */
+    public String get(T object) {
+        int h = this.hash.applyAsInt(object);
+        h ^= h >>> 16;
+        int slot = h & this.mask;
+        Entry<T> entry = this.entries[slot];
+        if (entry != null && entry.hash == h && this.sameKey.test(entry.object, object)) {
+            return entry.key;
+        }
+        String key = this.keyGen.apply(object);
+        this.entries[slot] = new Entry<>(h, object, key);
+        return key;
+    }
+
+    /**
+     * Combines the given hash with the hash of the given value.
+     *
+     * @param hash The hash to update.
+     * @param value The value to add to the hash (may be null).
+     * @return The combined hash.
+     */
+    public static int hash(int hash, String value) {
+        return 31 * hash + (value == null ? 0 : value.hashCode());
+    }
+
+    /**
+     * Combines the given hash with the hashes of the given values.
+     *
+     * @param hash The hash to update.
+     * @param values The values to add to the hash.
+     * @return The combined hash.
+     */
+    public static int hash(int hash, String[] values) {
+        for (String value : values) {
+            hash = hash(hash, value);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns true if the given values are equal (or both null).
+     *
+     * @param a The first value.
+     * @param b The second value.
+     * @return True if the values are equal.
+     */
+    public static boolean same(String a, String b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    /**
+     * Returns true if the given arrays have equal values, in the same order.
+     *
+     * @param a The first array.
+     * @param b The second array.
+     * @return True if the arrays have the same values.
+     */
+    public static boolean same(String[] a, String[] b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (!same(a[i], b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,225 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from non-negative long keys to int values,
+ * without boxing. Collisions are resolved using linear probing and the table
+ * is doubled when it is half full, and removed entries are filled by shifting
+ * back the following entries of their cluster (the table never shrinks). The
+ * entries are iterated through the slots of the table (see
+ * {@link #capacity()}, {@link #keyAt(int)} and {@link #valueAt(int)}); as
+ * removing an entry may move other entries, the map may not be modified while
+ * it is iterated.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+final class LongIntHashMap {
+
+    /**
+     * The key of free slots.
+     */
+    static final long FREE = -1L;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates a new empty map.
+     */
+    LongIntHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        Arrays.fill(this.keys, FREE);
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the slot of the given key, or the free slot where it would be
+     * inserted.
+     */
+    private int slot(long key) {
+        int slot = hash(key) & this.mask;
+        while (this.keys[slot] != key && this.keys[slot] != FREE) {
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the value of the given key.
+     *
+     * @param key The key, not negative.
+     * @param missing The value to return if the key is not in the map.
+     * @return The value of the key or missing.
+     */
+    int get(long key, int missing) {
+        int slot = slot(key);
+        return this.keys[slot] == FREE ? missing : this.values[slot];
+    }
+
+    /**
+     * Returns the value of the given key, associating the key with the given
+     * value if it is not in the map yet.
+     *
+     * @param key The key, not negative.
+     * @param value The value to associate with a new key.
+     * @return The current value of the key.
+     */
+    int putIfAbsent(long key, int value) {
+        int slot = slot(key);
+        if (this.keys[slot] == FREE) {
+            insert(slot, key, value);
+            return value;
+        }
+        return this.values[slot];
+    }
+
+    /**
+     * Adds the given delta to the value of the given key. The value of a key
+     * not in the map is 0.
+     *
+     * @param key The key, not negative.
+     * @param delta The delta to add.
+     * @return The new value of the key.
+     */
+    int addTo(long key, int delta) {
+        int slot = slot(key);
+        if (this.keys[slot] == FREE) {
+            insert(slot, key, delta);
+            return delta;
+        }
+        this.values[slot] += delta;
+        return this.values[slot];
+    }
+
+    private void insert(int slot, long key, int value) {
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+        if (this.size > (this.mask + 1) >> 1) {
+            rehash();
+        }
+    }
+
+    /**
+     * Removes the given key from the map.
+     *
+     * @param key The key, not negative.
+     */
+    void remove(long key) {
+        int gap = slot(key);
+        if (this.keys[gap] == FREE) {
+            return;
+        }
+        this.size--;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & this.mask;
+            if (this.keys[slot] == FREE) {
+                break;
+            }
+            int home = hash(this.keys[slot]) & this.mask;
+            // Move the entry to the gap if its home slot is not between the gap and the entry
+            if (((slot - home) & this.mask) >= ((slot - gap) & this.mask)) {
+                this.keys[gap] = this.keys[slot];
+                this.values[gap] = this.values[slot];
+                gap = slot;
+            }
+        }
+        this.keys[gap] = FREE;
+    }
+
+    private void rehash() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+                this.size++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in this map.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of slots of the table.
+     *
+     * @return The number of slots.
+     */
+    int capacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Returns the key in the given slot.
+     *
+     * @param slot The slot, between 0 and the capacity.
+     * @return The key or {@link #FREE} if the slot is free.
+     */
+    long keyAt(int slot) {
+        return this.keys[slot];
+    }
+
+    /**
+     * Returns the value in the given slot.
+     *
+     * @param slot The slot of a key, between 0 and the capacity.
+     * @return The value.
+     */
+    int valueAt(int slot) {
+        return this.values[slot];
+    }
+
+    /**
+     * Removes all the entries of this map.
+     */
+    void clear() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+}
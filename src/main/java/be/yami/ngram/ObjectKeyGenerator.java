@@ -36,4 +36,18 @@ public interface ObjectKeyGenerator<T> {
      */
     public String generateKey(T object);
 
+    /**
+     * Generates a 64-bit fingerprint of the key of the given T object (see
+     * {@link Fingerprints}). Equal keys have equal fingerprints, and different
+     * keys have different fingerprints with a high probability. By default,
+     * the fingerprint is computed from the generated key: key generators may
+     * compute it directly from the object, without building the key.
+     *
+     * @param object The T object to identify.
+     * @return The fingerprint of the key of the given object.
+     */
+    public default long generateFingerprint(T object) {
+        return Fingerprints.of(generateKey(object));
+    }
+
 }
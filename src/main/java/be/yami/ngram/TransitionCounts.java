@@ -0,0 +1,265 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the occurrences of the transitions of a usage model. States and
+ * actions are interned to dense int ids, and the counts are kept in primitive
+ * long-keyed maps instead of nested maps of boxed integers: a (source, target)
+ * pair of states is packed in a long and mapped to a dense pair id, and the
+ * count of a transition is mapped from its pair id packed with its action id.
+ * The source states whose outgoing transitions changed since the last call to
+ * {@link #forEachChanged(Visitor)} are tracked, so that the probabilities of
+ * a model may be updated incrementally.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+final class TransitionCounts {
+
+    /**
+     * Visits the transitions of the counts.
+     *
+     * @param <X> The type of exception thrown by the visitor.
+     */
+    @FunctionalInterface
+    interface Visitor<X extends Exception> {
+
+        void visit(String source, String action, String target, int count) throws X;
+
+    }
+
+    private static final int INITIAL_SIZE = 64;
+
+    private final Map<String, Integer> stateIds;
+    private final List<String> states;
+    private final Map<String, Integer> actionIds;
+    private final List<String> actions;
+    // INV: <(source << 32) | target, pair id>
+    private final LongIntHashMap pairs;
+    private int[] pairSources;
+    private int[] pairTargets;
+    // INV: <(pair id << 32) | action, count>
+    private final LongIntHashMap counts;
+    private int[] outgoing;
+    // Keys of the counts of the transitions leaving each source state
+    private long[][] bySource;
+    private int[] bySourceCount;
+    private final BitSet changed;
+
+    /**
+     * Creates new empty counts.
+     */
+    TransitionCounts() {
+        this.stateIds = new HashMap<>();
+        this.states = new ArrayList<>();
+        this.actionIds = new HashMap<>();
+        this.actions = new ArrayList<>();
+        this.pairs = new LongIntHashMap();
+        this.counts = new LongIntHashMap();
+        this.changed = new BitSet();
+        init();
+    }
+
+    private void init() {
+        this.pairSources = new int[INITIAL_SIZE];
+        this.pairTargets = new int[INITIAL_SIZE];
+        this.outgoing = new int[INITIAL_SIZE];
+        this.bySource = new long[INITIAL_SIZE][];
+        this.bySourceCount = new int[INITIAL_SIZE];
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<String> values) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * Adds the given number of occurrences to the given transition.
+     *
+     * @param source The source state of the transition.
+     * @param action The action of the transition.
+     * @param target The target state of the transition.
+     * @param count The number of occurrences to add.
+     */
+    void add(String source, String action, String target, int count) {
+        int sourceId = intern(source, this.stateIds, this.states);
+        int targetId = intern(target, this.stateIds, this.states);
+        int actionId = intern(action, this.actionIds, this.actions);
+        if (sourceId >= this.outgoing.length) {
+            int capacity = Math.max(sourceId + 1, this.outgoing.length * 2);
+            this.outgoing = Arrays.copyOf(this.outgoing, capacity);
+            this.bySource = Arrays.copyOf(this.bySource, capacity);
+            this.bySourceCount = Arrays.copyOf(this.bySourceCount, capacity);
+        }
+        this.outgoing[sourceId] += count;
+        this.changed.set(sourceId);
+        int pairId = this.pairs.putIfAbsent(((long) sourceId << 32) | targetId, this.pairs.size());
+        if (pairId >= this.pairSources.length) {
+            this.pairSources = Arrays.copyOf(this.pairSources, this.pairSources.length * 2);
+            this.pairTargets = Arrays.copyOf(this.pairTargets, this.pairTargets.length * 2);
+        }
+        this.pairSources[pairId] = sourceId;
+        this.pairTargets[pairId] = targetId;
+        long key = ((long) pairId << 32) | actionId;
+        int size = this.counts.size();
+        this.counts.addTo(key, count);
+        if (this.counts.size() > size) {
+            addBySource(sourceId, key);
+        }
+    }
+
+    private void addBySource(int sourceId, long key) {
+        long[] keys = this.bySource[sourceId];
+        int size = this.bySourceCount[sourceId];
+        if (keys == null) {
+            keys = new long[2];
+        } else if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = key;
+        this.bySource[sourceId] = keys;
+        this.bySourceCount[sourceId] = size + 1;
+    }
+
+    /**
+     * Returns the number of occurrences of the given transition.
+     *
+     * @param source The source state of the transition.
+     * @param action The action of the transition.
+     * @param target The target state of the transition.
+     * @return The number of occurrences of the transition.
+     */
+    int count(String source, String action, String target) {
+        Integer sourceId = this.stateIds.get(source);
+        Integer targetId = this.stateIds.get(target);
+        Integer actionId = this.actionIds.get(action);
+        if (sourceId == null || targetId == null || actionId == null) {
+            return 0;
+        }
+        int pairId = this.pairs.get(((long) sourceId << 32) | targetId, -1);
+        return pairId < 0 ? 0 : this.counts.get(((long) pairId << 32) | actionId, 0);
+    }
+
+    /**
+     * Returns the number of occurrences of the transitions leaving the given
+     * state.
+     *
+     * @param source The source state.
+     * @return The number of occurrences of the outgoing transitions.
+     */
+    int outgoingCount(String source) {
+        Integer sourceId = this.stateIds.get(source);
+        return sourceId == null ? 0 : this.outgoing[sourceId];
+    }
+
+    /**
+     * Returns the number of distinct transitions.
+     *
+     * @return The number of transitions.
+     */
+    int size() {
+        return this.counts.size();
+    }
+
+    /**
+     * Gives each transition and its number of occurrences to the given
+     * visitor.
+     *
+     * @param <X> The type of exception thrown by the visitor.
+     * @param visitor The visitor.
+     * @throws X If the visitor throws an exception.
+     */
+    <X extends Exception> void forEach(Visitor<X> visitor) throws X {
+        for (int slot = 0; slot < this.counts.capacity(); slot++) {
+            long key = this.counts.keyAt(slot);
+            if (key != LongIntHashMap.FREE) {
+                int pairId = (int) (key >>> 32);
+                visitor.visit(this.states.get(this.pairSources[pairId]),
+                        this.actions.get((int) key),
+                        this.states.get(this.pairTargets[pairId]),
+                        this.counts.valueAt(slot));
+            }
+        }
+    }
+
+    /**
+     * Gives the transitions leaving the source states whose outgoing
+     * transitions changed since the last call to this method (all the
+     * states for the first call) to the given visitor. As the probabilities
+     * of the outgoing transitions of a state depend on each other, all the
+     * outgoing transitions of a changed state are visited. Transitions are
+     * visited by source state, in the order in which the states were first
+     * seen.
+     *
+     * @param <X> The type of exception thrown by the visitor.
+     * @param visitor The visitor.
+     * @throws X If the visitor throws an exception.
+     */
+    <X extends Exception> void forEachChanged(Visitor<X> visitor) throws X {
+        for (int sourceId = this.changed.nextSetBit(0); sourceId >= 0;
+                sourceId = this.changed.nextSetBit(sourceId + 1)) {
+            String source = this.states.get(sourceId);
+            long[] keys = this.bySource[sourceId];
+            for (int i = 0; i < this.bySourceCount[sourceId]; i++) {
+                int pairId = (int) (keys[i] >>> 32);
+                visitor.visit(source, this.actions.get((int) keys[i]),
+                        this.states.get(this.pairTargets[pairId]), this.counts.get(keys[i], 0));
+            }
+        }
+        this.changed.clear();
+    }
+
+    /**
+     * Returns the number of source states whose outgoing transitions changed
+     * since the last call to {@link #forEachChanged(Visitor)}.
+     *
+     * @return The number of changed states.
+     */
+    int changedCount() {
+        return this.changed.cardinality();
+    }
+
+    /**
+     * Removes all the transitions.
+     */
+    void clear() {
+        this.stateIds.clear();
+        this.states.clear();
+        this.actionIds.clear();
+        this.actions.clear();
+        this.pairs.clear();
+        this.counts.clear();
+        this.changed.clear();
+        init();
+    }
+
+}
@@ -0,0 +1,253 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import be.vibes.ts.Action;
+import be.vibes.ts.UsageModel;
+import be.yami.Sequence;
+import be.yami.SequenceEntry;
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements methods to generate a {@link UsageModel} from a set of
+ * sequences using an ngram of a given order k, meaning that the probability for
+ * each next state depends on the k - 1 previous states. Each state of the model
+ * corresponds to a context, i.e., to the keys of the k - 1 last entries of a
+ * trace (or less at the beginning of a trace), and the action of a transition
+ * is the key of the entry added to the context. With an order of 2, the
+ * inferred model is the same as the one inferred by a {@link Bigram}.
+ * <p>
+ * Keys are coded as ints and contexts are stored in a prefix trie (from the
+ * oldest key of the context to the newest one) whose nodes keep their children
+ * in sorted arrays, so that the memory needed for a context does not depend on
+ * the length of its keys. Transitions are counted in primitive maps indexed by
+ * the node of their source context and the code of their key.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ * @param <T> The object type passed to the ObjectKeyGenerator provided at
+ * construction time of TrieNGram object.
+ */
+public class TrieNGram<T extends SequenceEntry> implements NGram<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrieNGram.class);
+
+    private static final int ROOT = 0;
+    private static final int END = -1;
+    private static final int INITIAL_NODES = 64;
+
+    private final String name;
+    private final int order;
+    private final ObjectKeyGenerator<T> keyGen;
+    private final Map<String, Integer> keyIds;
+    private final List<String> keys;
+    // Children of the nodes of the trie, sorted by key
+    private int[][] childKeys;
+    private int[][] childNodes;
+    private int[] childCount;
+    private int nodeCount;
+    // INV: <(source << 32) | key, count> and <(source << 32) | key, target>
+    private final LongIntHashMap counts;
+    private final LongIntHashMap targets;
+    // Visible states (i.e., contexts reached by a trace), numbered when first seen
+    private int[] states;
+    private int stateCount;
+
+    /**
+     * Create a new {@link TrieNGram} object.
+     *
+     * @param name The name of the ngram.
+     * @param order The order of the ngram, i.e., the number of entries
+     * considered to compute the probability of the next entry (the current
+     * one included).
+     * @param keyGen The key generator used to generate the key corresponding to
+     * each trace entry.
+     */
+    public TrieNGram(String name, int order, ObjectKeyGenerator<T> keyGen) {
+        Preconditions.checkArgument(order > 0, "Order must be greater than 0!");
+        this.name = name;
+        this.order = order;
+        this.keyGen = keyGen;
+        this.keyIds = new HashMap<>();
+        this.keys = new ArrayList<>();
+        this.childKeys = new int[INITIAL_NODES][];
+        this.childNodes = new int[INITIAL_NODES][];
+        this.childCount = new int[INITIAL_NODES];
+        this.nodeCount = 1;
+        this.counts = new LongIntHashMap();
+        this.targets = new LongIntHashMap();
+        this.states = new int[INITIAL_NODES];
+        Arrays.fill(this.states, -1);
+        this.states[ROOT] = 0;
+        this.stateCount = 1;
+    }
+
+    /**
+     * Returns the order of this ngram.
+     *
+     * @return The order of this ngram.
+     */
+    public int getOrder() {
+        return this.order;
+    }
+
+    @Override
+    public void addTrace(Sequence<T> seq) {
+        LOG.debug("Adding trace {} to model", seq);
+        // The keys of the current context, as a ring buffer
+        int[] context = new int[Math.max(1, this.order - 1)];
+        int length = 0;
+        int first = 0;
+        int state = ROOT;
+        Iterator<T> trace = seq.iterator();
+        while (trace.hasNext()) {
+            int key = keyId(this.keyGen.generateKey(trace.next()));
+            if (this.order > 1) {
+                if (length < context.length) {
+                    context[(first + length++) % context.length] = key;
+                } else {
+                    context[first] = key;
+                    first = (first + 1) % context.length;
+                }
+            }
+            state = addTransition(state, key, context, first, length);
+        }
+        // Final state has a transition to end state
+        this.counts.addTo(((long) state << 32) | (END & 0xFFFFFFFFL), 1);
+    }
+
+    private int keyId(String key) {
+        Integer id = this.keyIds.get(key);
+        if (id == null) {
+            id = this.keys.size();
+            this.keyIds.put(key, id);
+            this.keys.add(key);
+        }
+        return id;
+    }
+
+    private int addTransition(int source, int key, int[] context, int first, int length) {
+        long transition = ((long) source << 32) | key;
+        int target = this.targets.get(transition, -1);
+        if (target < 0) {
+            target = ROOT;
+            for (int i = 0; i < length; i++) {
+                target = child(target, context[(first + i) % context.length]);
+            }
+            this.targets.putIfAbsent(transition, target);
+            if (this.states[target] < 0) {
+                this.states[target] = this.stateCount++;
+            }
+        }
+        this.counts.addTo(transition, 1);
+        return target;
+    }
+
+    /**
+     * Returns the child of the given node for the given key, creating it if
+     * needed.
+     */
+    private int child(int node, int key) {
+        int[] nodeKeys = this.childKeys[node];
+        int count = this.childCount[node];
+        int index = nodeKeys == null ? -1 : Arrays.binarySearch(nodeKeys, 0, count, key);
+        if (index >= 0) {
+            return this.childNodes[node][index];
+        }
+        int child = newNode();
+        index = -index - 1;
+        if (nodeKeys == null) {
+            this.childKeys[node] = new int[2];
+            this.childNodes[node] = new int[2];
+        } else if (count == nodeKeys.length) {
+            this.childKeys[node] = Arrays.copyOf(nodeKeys, count * 2);
+            this.childNodes[node] = Arrays.copyOf(this.childNodes[node], count * 2);
+        }
+        System.arraycopy(this.childKeys[node], index, this.childKeys[node], index + 1, count - index);
+        System.arraycopy(this.childNodes[node], index, this.childNodes[node], index + 1, count - index);
+        this.childKeys[node][index] = key;
+        this.childNodes[node][index] = child;
+        this.childCount[node]++;
+        return child;
+    }
+
+    private int newNode() {
+        if (this.nodeCount == this.childCount.length) {
+            int capacity = this.nodeCount * 2;
+            this.childKeys = Arrays.copyOf(this.childKeys, capacity);
+            this.childNodes = Arrays.copyOf(this.childNodes, capacity);
+            this.childCount = Arrays.copyOf(this.childCount, capacity);
+            this.states = Arrays.copyOf(this.states, capacity);
+            Arrays.fill(this.states, this.nodeCount, capacity, -1);
+        }
+        return this.nodeCount++;
+    }
+
+    /**
+     * Returns the number of contexts stored in the trie, including the
+     * contexts only used as prefixes of longer contexts.
+     *
+     * @return The number of nodes of the trie.
+     */
+    public int getContextsCount() {
+        return this.nodeCount;
+    }
+
+    private String stateName(int node) {
+        return node == END ? Bigram.END_STATE_ID : "s" + this.states[node];
+    }
+
+    @Override
+    public UsageModel getModel() {
+        BigramUsageModelFactory factory = new BigramUsageModelFactory(Bigram.START_STATE_ID);
+        factory.addState(Bigram.END_STATE_ID);
+        factory.addTransition(Bigram.END_STATE_ID, Action.EPSILON_ACTION, Bigram.START_STATE_ID);
+        for (int slot = 0; slot < this.counts.capacity(); slot++) {
+            long transition = this.counts.keyAt(slot);
+            if (transition != LongIntHashMap.FREE) {
+                int source = (int) (transition >>> 32);
+                int key = (int) transition;
+                if (key == END) {
+                    factory.addTransition(stateName(source), Action.EPSILON_ACTION,
+                            Bigram.END_STATE_ID, this.counts.valueAt(slot));
+                } else {
+                    factory.addTransition(stateName(source), this.keys.get(key),
+                            stateName(this.targets.get(transition, END)), this.counts.valueAt(slot));
+                }
+            }
+        }
+        return factory.build();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+}
@@ -0,0 +1,184 @@
+package be.yami.web;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import be.yami.exception.ModelGenerationException;
+import be.yami.ngram.NGram;
+
+/**
+ * A session processor feeding each session to several NGrams in one pass over
+ * the input (e.g., {@link be.yami.ngram.Bigram}s using different key
+ * generators to compare abstraction levels). Each NGram has its own thread and
+ * its own bounded queue of sessions, so that the NGrams are updated
+ * concurrently but each of them by a single thread. The {@link #close()}
+ * method must be called once all the sessions have been processed, before
+ * getting the models from the NGrams.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ *
+ * @param <E> The type of requests in the sessions.
+ * @param <S> The type of sessions processed.
+ */
+public class FanOutSessionProcessor<E extends UserRequest, S extends UserSession<E>>
+        implements UserSessionProcessor<S>, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FanOutSessionProcessor.class);
+
+    /**
+     * The default maximal number of sessions waiting to be added to each
+     * NGram.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Object END = new Object();
+
+    private final List<NGram<E>> ngrams;
+    private final List<BlockingQueue<Object>> queues;
+    private final ExecutorService executor;
+    private final AtomicReference<Exception> error;
+    private boolean closed;
+
+    /**
+     * Creates a new processor feeding the given NGrams.
+     *
+     * @param ngrams The NGrams to feed.
+     */
+    public FanOutSessionProcessor(List<? extends NGram<E>> ngrams) {
+        this(ngrams, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new processor feeding the given NGrams.
+     *
+     * @param ngrams The NGrams to feed.
+     * @param capacity The maximal number of sessions waiting to be added to
+     * each NGram. The processing blocks while the queue of one of the NGrams is
+     * full.
+     */
+    public FanOutSessionProcessor(List<? extends NGram<E>> ngrams, int capacity) {
+        Preconditions.checkArgument(!ngrams.isEmpty(), "NGrams may not be empty!");
+        Preconditions.checkArgument(capacity > 0, "Capacity must be greater than 0!");
+        this.ngrams = Collections.unmodifiableList(new ArrayList<>(ngrams));
+        this.queues = new ArrayList<>();
+        this.executor = Executors.newFixedThreadPool(ngrams.size(),
+                new ThreadFactoryBuilder().setNameFormat("yami-model-%d").setDaemon(true).build());
+        this.error = new AtomicReference<>();
+        this.closed = false;
+        for (NGram<E> ngram : this.ngrams) {
+            BlockingQueue<Object> queue = new ArrayBlockingQueue<>(capacity);
+            this.queues.add(queue);
+            this.executor.execute(() -> addTraces(ngram, queue));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addTraces(NGram<E> ngram, BlockingQueue<Object> queue) {
+        try {
+            Object session;
+            while ((session = queue.take()) != END) {
+                try {
+                    ngram.addTrace((S) session);
+                } catch (ModelGenerationException | RuntimeException ex) {
+                    LOG.error("Error while processing sequence using NGram({})!", ngram.getName(), ex);
+                    this.error.compareAndSet(null, ex);
+                } catch (Error err) {
+                    // Keeps taking the sessions of the queue, so that process and close do not block
+                    LOG.error("Error while processing sequence using NGram({})!", ngram.getName(), err);
+                    this.error.compareAndSet(null, new ExecutionException("Error while processing session!", err));
+                }
+            }
+        } catch (InterruptedException ex) {
+            LOG.debug("NGram {} interrupted", ngram.getName());
+        }
+    }
+
+    @Override
+    public void process(S session) {
+        Preconditions.checkState(!this.closed, "Processor is closed!");
+        try {
+            for (BlockingQueue<Object> queue : this.queues) {
+                queue.put(session);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while processing session {}!", session);
+            // The session is lost for some NGrams: reported by close
+            this.error.compareAndSet(null,
+                    new ModelGenerationException("Interrupted while processing session " + session + "!", ex));
+        }
+    }
+
+    /**
+     * Returns the NGrams fed by this processor.
+     *
+     * @return The NGrams fed by this processor.
+     */
+    public List<NGram<E>> getNGrams() {
+        return this.ngrams;
+    }
+
+    /**
+     * Waits until all the processed sessions have been added to the NGrams and
+     * stops the threads of this processor.
+     *
+     * @throws ModelGenerationException If a session could not be added to one
+     * of the NGrams, or if interrupted while waiting.
+     */
+    @Override
+    public void close() throws ModelGenerationException {
+        if (!this.closed) {
+            this.closed = true;
+            this.executor.shutdown();
+            try {
+                for (BlockingQueue<Object> queue : this.queues) {
+                    queue.put(END);
+                }
+                while (!this.executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    LOG.debug("Waiting for the NGrams");
+                }
+            } catch (InterruptedException ex) {
+                this.executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new ModelGenerationException("Interrupted while updating models!", ex);
+            }
+        }
+        if (this.error.get() != null) {
+            throw new ModelGenerationException("Exception while updating models!", this.error.get());
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package be.yami.web;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import be.yami.SequenceProcessor;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps track of the open user sessions and of their expiration. Sessions are
+ * indexed by user id and by end time using a min-heap, so that checking for
+ * sessions in timeout only touches the sessions that actually expired instead
+ * of all the open sessions. Heap entries are invalidated lazily: when a session
+ * is extended, its entry stays in the heap and is rescheduled with the new end
+ * time of the session when it reaches the top of the heap.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ * @param <S> The type of sessions.
+ */
+public class SessionTimeoutIndex<S extends UserSession<?>> {
+
+    private static class Deadline<S> implements Comparable<Deadline<S>> {
+
+        private final long endTime;
+        private final S session;
+
+        Deadline(long endTime, S session) {
+            this.endTime = endTime;
+            this.session = session;
+        }
+
+        @Override
+        public int compareTo(Deadline<S> o) {
+            return Long.compare(endTime, o.endTime);
+        }
+
+    }
+
+    private final long timeout;
+    private final Map<String, S> sessions;
+    private final PriorityQueue<Deadline<S>> deadlines;
+
+    /**
+     * Creates a new index for sessions expiring after the given timeout.
+     *
+     * @param timeout The maximal time (in milliseconds) between the end of a
+     * session and the current time before the session is considered as
+     * completed.
+     */
+    public SessionTimeoutIndex(long timeout) {
+        this.timeout = timeout;
+        this.sessions = new HashMap<>();
+        this.deadlines = new PriorityQueue<>();
+    }
+
+    /**
+     * Returns the open session of the given user.
+     *
+     * @param userId The id of the user.
+     * @return The open session of the user or null if there is none.
+     */
+    public S get(String userId) {
+        return sessions.get(userId);
+    }
+
+    /**
+     * Adds a new open session to this index. The session must contain at
+     * least one request.
+     *
+     * @param session The session to add.
+     */
+    public void add(S session) {
+        sessions.put(session.getUserId(), session);
+        deadlines.add(new Deadline<>(session.getEndTime().getTime(), session));
+    }
+
+    /**
+     * Notifies this index that a request has been added to the given session.
+     *
+     * @param session The updated session.
+     * @param previousEndTime The end time of the session before the request has
+     * been added.
+     */
+    public void updated(S session, Date previousEndTime) {
+        long endTime = session.getEndTime().getTime();
+        if (endTime < previousEndTime.getTime()) {
+            // Requests are not in chronological order, the session may expire
+            // sooner than scheduled
+            deadlines.add(new Deadline<>(endTime, session));
+        }
+    }
+
+    /**
+     * Removes the sessions in timeout at the given time from this index and
+     * gives them to the given processor.
+     *
+     * @param time The current time (in milliseconds).
+     * @param processor The processor receiving the completed sessions.
+     */
+    public void expire(long time, SequenceProcessor<S> processor) {
+        Deadline<S> deadline = deadlines.peek();
+        while (deadline != null && time - deadline.endTime > timeout) {
+            deadlines.poll();
+            S session = deadline.session;
+            long endTime = session.getEndTime().getTime();
+            if (sessions.get(session.getUserId()) != session) {
+                // Session already completed
+            } else if (endTime > deadline.endTime) {
+                // Session extended since scheduled
+                deadlines.add(new Deadline<>(endTime, session));
+            } else if (endTime == deadline.endTime) {
+                sessions.remove(session.getUserId());
+                processor.process(session);
+            }
+            // else: an earlier deadline has been scheduled for the session
+            deadline = deadlines.peek();
+        }
+    }
+
+    /**
+     * Removes all the sessions from this index and gives them to the given
+     * processor.
+     *
+     * @param processor The processor receiving the completed sessions.
+     */
+    public void flush(SequenceProcessor<S> processor) {
+        for (S session : sessions.values()) {
+            processor.process(session);
+        }
+        sessions.clear();
+        deadlines.clear();
+    }
+
+    /**
+     * Returns the number of open sessions.
+     *
+     * @return The number of open sessions.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the open sessions.
+     *
+     * @return An unmodifiable view of the open sessions.
+     */
+    public Collection<S> sessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+}
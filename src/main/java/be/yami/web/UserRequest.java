@@ -62,6 +62,11 @@ public class UserRequest implements SequenceEntry{
      */
     private final String[] parametersValues;
 
+    /**
+     * The request type and the requested resource, computed once.
+     */
+    private String typeAndResource;
+
     /**
      * Creates a new request based on the given values.
      *
@@ -140,6 +145,23 @@ public class UserRequest implements SequenceEntry{
         return parametersValues;
     }
 
+    /**
+     * Returns the request type and the requested resource, separated by a
+     * space (e.g., "GET /index.php"). This is the common prefix of the keys of
+     * the web key generators, computed once and shared by all of them.
+     *
+     * @return The request type and the requested resource.
+     */
+    public String getTypeAndResource() {
+        // Racy but idempotent initialization (as for String.hashCode())
+        String result = typeAndResource;
+        if (result == null) {
+            result = requestType + " " + resource;
+            typeAndResource = result;
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         return "UserRequest [client=" + client + ", time=" + time + ", requestType="
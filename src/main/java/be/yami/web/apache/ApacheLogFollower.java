@@ -0,0 +1,419 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.yami.Checkpointable;
+
+/**
+ * Follows an Apache web log while it grows, as <code>tail -F</code> does. The
+ * lines appended to the log are parsed and processed into sessions as soon as
+ * they are complete. Rotations of the log are detected when the file key (e.g.,
+ * the inode) of the file changes, once the old file has been read entirely, or
+ * when the file is truncated. When no line is appended, sessions expire using
+ * the wall clock: the log time is considered as advancing with the time
+ * elapsed since the last line has been read.
+ * <p>
+ * If a checkpoint file is given, the position in the log, the open sessions
+ * and the state of the given objects (e.g., a {@link be.yami.ngram.Bigram}) are
+ * periodically saved to this file, and when the follower stops. A follower
+ * started with an existing checkpoint file resumes from the saved position
+ * instead of reading the log from the beginning. If the log has been rotated
+ * or truncated in the meantime, the new log is read from the beginning.
+ * <p>
+ * All the lines are processed on the thread calling {@link #run()}, so that
+ * the checkpoints are consistent with the processed lines.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheLogFollower {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheLogFollower.class);
+
+    private static final int MAGIC = 0x59414D49;
+    private static final int VERSION = 1;
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Function<CharSequence, ApacheUserRequest> parser;
+    private final Predicate<ApacheUserRequest> filter;
+    private final ApacheSessionizer sessionizer;
+    private final long pollInterval;
+
+    private Path checkpointFile;
+    private long checkpointInterval;
+    private List<Checkpointable> states;
+
+    private volatile boolean stopped;
+
+    private RandomAccessFile input;
+    private String fileKey;
+    /**
+     * The position of the first byte not processed yet (i.e., of the
+     * incomplete last line of the log, if any).
+     */
+    private long offset;
+    /**
+     * The bytes read after the offset.
+     */
+    private byte[] buffer;
+    private int pending;
+    private long logTime;
+    private long lastReadTime;
+    private long lastCheckpointTime;
+
+    /**
+     * Creates a new follower.
+     *
+     * @param file The log file to follow.
+     * @param parser The parser of the lines of the log, returning null for
+     * lines that may not be parsed.
+     * @param filter The filter accepting the requests to add to the sessions.
+     * @param sessionizer The sessionizer building the sessions.
+     * @param pollInterval The time (in milliseconds) to wait for new lines
+     * when the end of the log is reached.
+     */
+    ApacheLogFollower(Path file, Function<CharSequence, ApacheUserRequest> parser,
+            Predicate<ApacheUserRequest> filter, ApacheSessionizer sessionizer,
+            long pollInterval) {
+        this.file = file;
+        this.parser = parser;
+        this.filter = filter;
+        this.sessionizer = sessionizer;
+        this.pollInterval = pollInterval;
+        this.buffer = new byte[READ_SIZE];
+        this.pending = 0;
+        this.stopped = false;
+    }
+
+    /**
+     * Periodically saves the state of this follower and of the given objects
+     * to the given file.
+     *
+     * @param checkpointFile The checkpoint file.
+     * @param checkpointInterval The time (in milliseconds) between two
+     * checkpoints.
+     * @param states The objects to save with the state of this follower.
+     */
+    void checkpoint(Path checkpointFile, long checkpointInterval, List<Checkpointable> states) {
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+        this.states = states;
+    }
+
+    /**
+     * Follows the log until {@link #stop()} is called or the calling thread is
+     * interrupted. The interrupted status of the thread is kept. When the
+     * follower stops, the state is saved to the checkpoint file if there is
+     * one. Otherwise, the remaining open sessions are completed.
+     *
+     * @throws IOException If the log or the checkpoint may not be read or
+     * written.
+     */
+    void run() throws IOException {
+        boolean interrupted = false;
+        try {
+            resume();
+            this.lastReadTime = System.currentTimeMillis();
+            this.lastCheckpointTime = this.lastReadTime;
+            while (!this.stopped) {
+                boolean read = poll();
+                long now = System.currentTimeMillis();
+                if (read) {
+                    this.lastReadTime = now;
+                } else {
+                    // Nothing happened in the log, let the time flow
+                    this.sessionizer.expire(this.logTime + now - this.lastReadTime);
+                }
+                if (this.checkpointFile != null && now - this.lastCheckpointTime >= this.checkpointInterval) {
+                    save();
+                    this.lastCheckpointTime = now;
+                }
+                if (!read) {
+                    Thread.sleep(this.pollInterval);
+                }
+            }
+        } catch (InterruptedException ex) {
+            LOG.debug("Following of {} interrupted", this.file);
+            interrupted = true;
+        } finally {
+            if (this.input != null) {
+                this.input.close();
+                this.input = null;
+            }
+        }
+        if (this.checkpointFile != null) {
+            save();
+        } else {
+            this.sessionizer.flush();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks this follower to stop. May be called from any thread.
+     */
+    void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Reads the next lines appended to the log.
+     *
+     * @return True if at least one byte has been read.
+     */
+    private boolean poll() throws IOException {
+        if (this.input == null) {
+            if (!Files.exists(this.file)) {
+                return false;
+            }
+            open(this.offset);
+        }
+        if (this.input.length() < this.offset + this.pending) {
+            LOG.info("Log file {} truncated, reading from the beginning", this.file);
+            this.offset = 0;
+            this.pending = 0;
+        }
+        boolean read = readAvailable();
+        if (!read && Files.exists(this.file) && !fileKey(this.file).equals(this.fileKey)) {
+            // The old file has been read entirely, its last line is complete
+            LOG.info("Log file {} rotated, reading the new file", this.file);
+            processLines(true);
+            this.input.close();
+            this.input = null;
+            open(0);
+            read = true;
+        }
+        return read;
+    }
+
+    private void open(long position) throws IOException {
+        this.input = new RandomAccessFile(this.file.toFile(), "r");
+        this.fileKey = fileKey(this.file);
+        this.offset = position;
+        this.pending = 0;
+    }
+
+    /**
+     * Reads and processes the next bytes of the log, at most one buffer at a
+     * time so that checkpoints are saved and stop requests are honored while
+     * catching up with a large log.
+     */
+    private boolean readAvailable() throws IOException {
+        if (this.pending == this.buffer.length) {
+            // Line longer than the buffer
+            this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+        }
+        this.input.seek(this.offset + this.pending);
+        int n = this.input.read(this.buffer, this.pending, this.buffer.length - this.pending);
+        if (n <= 0) {
+            return false;
+        }
+        this.pending += n;
+        processLines(false);
+        return true;
+    }
+
+    /**
+     * Processes the complete lines in the buffer and moves the remaining bytes
+     * at the beginning of the buffer.
+     *
+     * @param last True if the incomplete last line has to be processed too.
+     */
+    private void processLines(boolean last) {
+        ByteBuffer bytes = ByteBuffer.wrap(this.buffer, 0, this.pending);
+        ByteBufferLine line = new ByteBufferLine(bytes);
+        int start = 0;
+        int end = MappedLogFile.lineEnd(bytes, start);
+        while (end < this.pending || (last && start < end)) {
+            processLine(line.set(start, MappedLogFile.contentEnd(bytes, start, end)));
+            start = Math.min(end + 1, this.pending);
+            end = MappedLogFile.lineEnd(bytes, start);
+        }
+        System.arraycopy(this.buffer, start, this.buffer, 0, this.pending - start);
+        this.pending -= start;
+        this.offset += start;
+    }
+
+    private void processLine(CharSequence line) {
+        ApacheUserRequest request = this.parser.apply(line);
+        if (request != null) {
+            this.logTime = Math.max(this.logTime, request.getTime().getTime());
+            this.sessionizer.process(request, this.filter.test(request));
+        }
+    }
+
+    private static String fileKey(Path file) throws IOException {
+        // The file key may be null if not supported, only truncation is detected then
+        return String.valueOf(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+    }
+
+    /**
+     * Restores the state saved in the checkpoint file, if any.
+     */
+    private void resume() throws IOException {
+        this.offset = 0;
+        this.logTime = 0;
+        if (this.checkpointFile == null || !Files.exists(this.checkpointFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(this.checkpointFile.toFile())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Invalid checkpoint file " + this.checkpointFile + "!");
+            }
+            String key = in.readUTF();
+            long position = in.readLong();
+            this.logTime = in.readLong();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                this.sessionizer.restore(readSession(in));
+            }
+            for (Checkpointable state : this.states) {
+                state.restoreState(in);
+            }
+            if (Files.exists(this.file) && key.equals(fileKey(this.file))
+                    && Files.size(this.file) >= position) {
+                LOG.info("Resuming {} at offset {}", this.file, position);
+                this.offset = position;
+            } else {
+                LOG.warn("Log file {} changed since the checkpoint, reading from the beginning",
+                        this.file);
+            }
+        }
+    }
+
+    /**
+     * Saves the state to the checkpoint file. The state is written to a
+     * temporary file first, which then replaces the checkpoint file, so that
+     * the checkpoint file is never left half written.
+     */
+    private void save() throws IOException {
+        Path tmp = this.checkpointFile.resolveSibling(this.checkpointFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(this.fileKey == null ? "" : this.fileKey);
+            out.writeLong(this.offset);
+            out.writeLong(this.logTime);
+            out.writeInt(this.sessionizer.sessions().size());
+            for (ApacheUserSession session : this.sessionizer.sessions()) {
+                writeSession(out, session);
+            }
+            for (Checkpointable state : this.states) {
+                state.saveState(out);
+            }
+        }
+        Files.move(tmp, this.checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("Checkpoint of {} saved at offset {}", this.file, this.offset);
+    }
+
+    private static void writeSession(DataOutputStream out, ApacheUserSession session)
+            throws IOException {
+        writeString(out, session.getUserId());
+        out.writeInt(session.size());
+        for (ApacheUserRequest request : session) {
+            writeString(out, request.getClient());
+            out.writeLong(request.getTime().getTime());
+            writeString(out, request.getRequestType());
+            writeString(out, request.getResource());
+            out.writeInt(request.getParameters().length);
+            for (int i = 0; i < request.getParameters().length; i++) {
+                writeString(out, request.getParameters()[i]);
+                writeString(out, request.getParametersValues()[i]);
+            }
+            out.writeInt(request.getStatusCode());
+            out.writeInt(request.getObjSize());
+            writeString(out, request.getReferrer());
+            writeString(out, request.getUserAgent());
+        }
+    }
+
+    private static ApacheUserSession readSession(DataInputStream in) throws IOException {
+        ApacheUserSession session = new ApacheUserSession(readString(in));
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String client = readString(in);
+            Date time = new Date(in.readLong());
+            String requestType = readString(in);
+            String resource = readString(in);
+            String[] parameters = new String[in.readInt()];
+            String[] parametersValues = new String[parameters.length];
+            for (int j = 0; j < parameters.length; j++) {
+                parameters[j] = readString(in);
+                parametersValues[j] = readString(in);
+            }
+            int statusCode = in.readInt();
+            int objSize = in.readInt();
+            session.enqueue(new ApacheUserRequest(client, time, requestType, resource,
+                    parameters, parametersValues, statusCode, objSize, readString(in),
+                    readString(in)));
+        }
+        return session;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -135,7 +135,7 @@ public class ApacheLogFormatPatternBuilder {
     /**
      * Date format used in Apache logs.
      */
-    public static final String DATE_FORMAT = "dd/MMM/yyyy:hh:mm:ss Z";
+    public static final String DATE_FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
 
     /**
      * The {@link Locale} value used in the dates of the log. This value has to
@@ -0,0 +1,230 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.code.regexp.Matcher;
+import com.google.code.regexp.Pattern;
+
+import static be.yami.web.apache.ApacheLogFormatPatternBuilder.*;
+
+/**
+ * Parses the lines of an Apache web log into {@link ApacheUserRequest}s. Lines
+ * are scanned using an {@link ApacheLogLineTokenizer} when the log format
+ * allows it, and using the regular expressions built by
+ * {@link ApacheLogFormatPatternBuilder} otherwise. A parser may not be shared
+ * between threads.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheLogLineParser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheLogLineParser.class);
+
+    /**
+     * The tokenizer used to scan the lines, null if the log format is not
+     * supported by the tokenizer.
+     */
+    private final ApacheLogLineTokenizer tokenizer;
+
+    /**
+     * The pattern used to match the lines when the tokenizer may not be used.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The Apache request format used to extract the different fields from the
+     * request part of the log entry.
+     */
+    private final Pattern requestPattern;
+
+    private final ApacheTimestampParser timestampParser;
+
+    /**
+     * Creates a new parser for the given log format.
+     *
+     * @param logFormat The log format of the lines to parse.
+     */
+    ApacheLogLineParser(String logFormat) {
+        this(logFormat, true);
+    }
+
+    /**
+     * Creates a new parser for the given log format.
+     *
+     * @param logFormat The log format of the lines to parse.
+     * @param tokenize If false, regular expressions are used even if the log
+     * format is supported by {@link ApacheLogLineTokenizer}.
+     */
+    ApacheLogLineParser(String logFormat, boolean tokenize) {
+        this.tokenizer = tokenize ? ApacheLogLineTokenizer.compile(logFormat) : null;
+        if (this.tokenizer == null) {
+            LOG.debug("Using regular expressions to parse log format {}", logFormat);
+            this.pattern = ApacheLogFormatPatternBuilder.getInstance().buildPattern(logFormat);
+            this.requestPattern = ApacheLogFormatPatternBuilder.getInstance()
+                    .buildPattern(ApacheLogFormatPatternBuilder.REQUEST_FORMAT);
+        } else {
+            this.pattern = null;
+            this.requestPattern = null;
+        }
+        this.timestampParser = new ApacheTimestampParser();
+    }
+
+    /**
+     * Returns true if the lines are scanned without regular expressions.
+     *
+     * @return True if the log format is supported by
+     * {@link ApacheLogLineTokenizer}.
+     */
+    boolean isTokenized() {
+        return tokenizer != null;
+    }
+
+    /**
+     * Parses the given line.
+     *
+     * @param line The line to parse.
+     * @return The request corresponding to the line or null if the line does
+     * not match the log format.
+     */
+    ApacheUserRequest parse(CharSequence line) {
+        return tokenizer == null ? parseWithPattern(line.toString())
+                : parseWithTokenizer(line);
+    }
+
+    private ApacheUserRequest parseWithTokenizer(CharSequence line) {
+        if (!tokenizer.tokenize(line)) {
+            return null;
+        }
+        String method = null, path = null, params = null;
+        if (tokenizer.hasDirective(REQUEST_DIRECTIVE)) {
+            if (tokenizer.tokenizeRequest()) {
+                method = tokenizer.method();
+                path = tokenizer.path();
+                params = tokenizer.parameters();
+            } else {
+                LOG.debug("Request {} did not match pattern!", tokenizer.raw(REQUEST_DIRECTIVE));
+            }
+        }
+        Date time;
+        try {
+            if (!tokenizer.hasDirective(TIME_DIRECTIVE)) {
+                throw new ParseException("No time in log entry!", 0);
+            }
+            time = new Date(timestampParser.parse(tokenizer.line(),
+                    tokenizer.start(TIME_DIRECTIVE), tokenizer.end(TIME_DIRECTIVE)));
+        } catch (ParseException e) {
+            LOG.error("Error while parsing date {}!", tokenizer.value(TIME_DIRECTIVE), e);
+            return null;
+        }
+        return buildRequest(tokenizer.value(HOST_DIRECTIVE),
+                time, method, path, params,
+                tokenizer.value(STATUS_CODE_DIRECTIVE), tokenizer.value(SIZE_DIRECTIVE),
+                tokenizer.raw(REFERRER_DIRECTIVE), tokenizer.raw(USER_AGENT_DIRECTIVE));
+    }
+
+    private ApacheUserRequest parseWithPattern(String line) {
+        line = line.replace("\\\"", "''");
+        Matcher match = pattern.matcher(line);
+        if (!match.matches()) {
+            return null;
+        }
+        Map<String, String> groups = match.namedGroups();
+        String req = groups.get(REQUEST_DIRECTIVE);
+        if (req == null) {
+            LOG.error("Request part is null in {}!", groups);
+        } else {
+            Matcher reqMatch = requestPattern.matcher(req.substring(1, req.length() - 1));
+            if (reqMatch.matches()) {
+                groups.putAll(reqMatch.namedGroups());
+            } else {
+                LOG.debug("Request {} did not match pattern!", req);
+            }
+        }
+        String time = groups.get(TIME_DIRECTIVE);
+        Date date;
+        try {
+            if (time == null) {
+                throw new ParseException("No time in log entry!", 0);
+            }
+            date = new Date(timestampParser.parse(time, 1, time.length() - 1));
+        } catch (ParseException e) {
+            LOG.error("Error while parsing date {}!", time, e);
+            return null;
+        }
+        return buildRequest(groups.get(HOST_DIRECTIVE), date,
+                groups.get(REQUEST_METHOD_DIRECTIVE),
+                groups.get(REQUEST_QUERY_PATH_DIRECTIVE),
+                groups.get(REQUEST_QUERY_PARAMETERS_DIRECTIVE),
+                groups.get(STATUS_CODE_DIRECTIVE), groups.get(SIZE_DIRECTIVE),
+                groups.get(REFERRER_DIRECTIVE), groups.get(USER_AGENT_DIRECTIVE));
+    }
+
+    /**
+     * Builds an {@link ApacheUserRequest} from the given fields.
+     *
+     * @see ApacheLogFormatPatternBuilder
+     */
+    private ApacheUserRequest buildRequest(String host, Date time, String method,
+            String path, String params, String status, String size, String referrer,
+            String userAgent) {
+        String[] paramNames, paramValues;
+        if (params != null) {
+            String[] couples = params.split("\\&");
+            paramNames = new String[couples.length];
+            paramValues = new String[couples.length];
+            String[] param;
+            for (int i = 0; i < couples.length; i++) {
+                param = couples[i].split("=");
+                paramNames[i] = param.length > 0 ? param[0] : null;
+                paramValues[i] = param.length > 1 ? param[1] : null;
+            }
+        } else {
+            paramNames = new String[0];
+            paramValues = new String[0];
+        }
+        ApacheUserRequest request = new ApacheUserRequest(host, time, method, path,
+                paramNames, paramValues);
+        if (status != null) {
+            try {
+                request.setStatusCode(Integer.parseInt(status));
+            } catch (NumberFormatException e) {
+                LOG.trace("Unable to parse status code {}!", status, e);
+            }
+        }
+        if (size != null) {
+            try {
+                request.setObjSize(Integer.parseInt(size));
+            } catch (NumberFormatException e) {
+                LOG.trace("Unable to parse object size {}!", size, e);
+            }
+        }
+        request.setReferrer(referrer);
+        request.setUserAgent(userAgent);
+        return request;
+    }
+
+}
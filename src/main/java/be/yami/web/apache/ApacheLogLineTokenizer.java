@@ -0,0 +1,495 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Arrays;
+
+import static be.yami.web.apache.ApacheLogFormatPatternBuilder.*;
+
+/**
+ * Hand-written tokenizer for Apache web log lines. A tokenizer is compiled from
+ * a log format using {@link #compile(String)} and scans each line once,
+ * recording the bounds of every directive instead of building regular
+ * expression groups. Escaped quotes (\") inside quoted fields are handled in
+ * place and replaced by '' when the field is extracted, like the regular
+ * expression path of {@link ApacheUserSessionBuilder} does.
+ *
+ * Only formats made of the directives defined in
+ * {@link ApacheLogFormatPatternBuilder} (%h %l %u %t %r %s %b %i %a) separated
+ * by single spaces are supported (e.g., COMMON_LOG_FORMAT and
+ * COMBINED_LOG_FORMAT). A tokenizer holds the state of the last scanned line
+ * and may not be shared between threads.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheLogLineTokenizer {
+
+    private static final String SUPPORTED_DIRECTIVES = HOST_DIRECTIVE
+            + IDENTITY_DIRECTIVE + USER_DIRECTIVE + TIME_DIRECTIVE
+            + REQUEST_DIRECTIVE + STATUS_CODE_DIRECTIVE + SIZE_DIRECTIVE
+            + REFERRER_DIRECTIVE + USER_AGENT_DIRECTIVE;
+
+    /**
+     * Length of the time directive content: dd/MMM/yyyy:HH:mm:ss +zzzz.
+     */
+    private static final int TIME_LENGTH = 26;
+
+    private static final String[] REQUEST_METHODS = {"GET", "POST", "HEAD"};
+
+    /**
+     * The directives of the log format, in order of appearance.
+     */
+    private final char[] directives;
+
+    /**
+     * Index of each directive in the start/end arrays, -1 if absent.
+     */
+    private final int[] slots;
+
+    // Bounds of the content of each directive (without quotes or brackets)
+    private final int[] starts;
+    private final int[] ends;
+    private final boolean[] escaped;
+
+    // Bounds of the parts of the request directive
+    private int methodStart, methodEnd, pathStart, pathEnd, paramsStart,
+            paramsEnd;
+    private boolean requestMatched;
+    private CharSequence request;
+
+    private CharSequence line;
+
+    private ApacheLogLineTokenizer(char[] directives) {
+        this.directives = directives;
+        this.slots = new int[128];
+        Arrays.fill(this.slots, -1);
+        for (int i = 0; i < directives.length; i++) {
+            this.slots[directives[i]] = i;
+        }
+        this.starts = new int[directives.length];
+        this.ends = new int[directives.length];
+        this.escaped = new boolean[directives.length];
+    }
+
+    /**
+     * Compiles a tokenizer for the given log format.
+     *
+     * @param logFormat The log format (e.g.,
+     * {@link ApacheLogFormatPatternBuilder}.COMBINED_LOG_FORMAT).
+     * @return A tokenizer for the given format or null if the format can not
+     * be handled without regular expressions.
+     */
+    static ApacheLogLineTokenizer compile(String logFormat) {
+        if (logFormat == null || !logFormat.startsWith("%")) {
+            return null;
+        }
+        String[] parts = logFormat.substring(1).split("%", -1);
+        char[] directives = new char[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.isEmpty()) {
+                return null;
+            }
+            char directive = part.charAt(0);
+            String separator = part.substring(1);
+            if (SUPPORTED_DIRECTIVES.indexOf(directive) < 0) {
+                return null;
+            }
+            for (int j = 0; j < i; j++) {
+                if (directives[j] == directive) {
+                    return null;
+                }
+            }
+            boolean last = i == parts.length - 1;
+            if (last ? !separator.isEmpty()
+                    : !(separator.equals(" ") || separator.equals("\\ "))) {
+                return null;
+            }
+            directives[i] = directive;
+        }
+        return new ApacheLogLineTokenizer(directives);
+    }
+
+    /**
+     * Scans the given line and records the bounds of the different directives.
+     *
+     * @param line The line to scan.
+     * @return True if the line matches the log format of this tokenizer.
+     */
+    boolean tokenize(CharSequence line) {
+        this.line = line;
+        this.request = null;
+        this.requestMatched = false;
+        int length = line.length();
+        int pos = 0;
+        for (int i = 0; i < directives.length; i++) {
+            if (i > 0) {
+                if (pos >= length || line.charAt(pos) != ' ') {
+                    return false;
+                }
+                pos++;
+            }
+            escaped[i] = false;
+            switch (directives[i]) {
+                case 't':
+                    pos = scanTime(line, pos, i);
+                    break;
+                case 'r':
+                case 'i':
+                case 'a':
+                    pos = scanQuoted(line, pos, i);
+                    break;
+                default:
+                    pos = scanToken(line, pos, i);
+                    break;
+            }
+            if (pos < 0) {
+                return false;
+            }
+        }
+        return pos == length;
+    }
+
+    private int scanToken(CharSequence line, int pos, int slot) {
+        int length = line.length();
+        int end = pos;
+        while (end < length && line.charAt(end) != ' ') {
+            end++;
+        }
+        if (end == pos || !isValidToken(directives[slot], line, pos, end)) {
+            return -1;
+        }
+        starts[slot] = pos;
+        ends[slot] = end;
+        return end;
+    }
+
+    private int scanQuoted(CharSequence line, int pos, int slot) {
+        int length = line.length();
+        if (pos >= length || line.charAt(pos) != '"') {
+            return -1;
+        }
+        int end = pos + 1;
+        char c;
+        while (end < length && (c = line.charAt(end)) != '"') {
+            if (c == '\\' && end + 1 < length && line.charAt(end + 1) == '"') {
+                escaped[slot] = true;
+                end++;
+            }
+            end++;
+        }
+        if (end >= length) {
+            return -1;
+        }
+        starts[slot] = pos + 1;
+        ends[slot] = end;
+        return end + 1;
+    }
+
+    private int scanTime(CharSequence line, int pos, int slot) {
+        int end = pos + TIME_LENGTH + 1;
+        if (end >= line.length() || line.charAt(pos) != '['
+                || line.charAt(end) != ']') {
+            return -1;
+        }
+        int s = pos + 1;
+        if (!(isDigits(line, s, s + 2) && line.charAt(s + 2) == '/'
+                && isLetters(line, s + 3, s + 6) && line.charAt(s + 6) == '/'
+                && isDigits(line, s + 7, s + 11) && line.charAt(s + 11) == ':'
+                && isDigits(line, s + 12, s + 14) && line.charAt(s + 14) == ':'
+                && isDigits(line, s + 15, s + 17) && line.charAt(s + 17) == ':'
+                && isDigits(line, s + 18, s + 20) && line.charAt(s + 20) == ' '
+                && (line.charAt(s + 21) == '+' || line.charAt(s + 21) == '-')
+                && isDigits(line, s + 22, s + 26))) {
+            return -1;
+        }
+        starts[slot] = s;
+        ends[slot] = end;
+        return end + 1;
+    }
+
+    private static boolean isValidToken(char directive, CharSequence line, int start,
+            int end) {
+        switch (directive) {
+            case 'h':
+                return isHostChar(line.charAt(start)) && isHostChar(line.charAt(end - 1));
+            case 'l':
+                return isIdentity(line, start, end);
+            case 'u':
+                return isIdentity(line, start, end) || (end - start == 2
+                        && line.charAt(start) == '"' && line.charAt(start + 1) == '"');
+            case 's':
+                return end - start == 3 && isDigits(line, start, end);
+            case 'b':
+                return isDigits(line, start, end)
+                        || (end - start == 1 && line.charAt(start) == '-');
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isHostChar(char c) {
+        return isLetterOrDigit(c) || c == '-';
+    }
+
+    private static boolean isIdentity(CharSequence line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (!(isLetterOrDigit(c) || c == '-' || c == '_' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isDigits(CharSequence line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetters(CharSequence line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the format of this tokenizer contains the given
+     * directive.
+     *
+     * @param directive The directive (see the _DIRECTIVE constants of
+     * {@link ApacheLogFormatPatternBuilder}).
+     * @return True if the directive is part of the format.
+     */
+    boolean hasDirective(String directive) {
+        return slot(directive) >= 0;
+    }
+
+    /**
+     * Returns the content of the given directive for the last scanned line,
+     * without the surrounding quotes or brackets.
+     *
+     * @param directive The directive (see the _DIRECTIVE constants of
+     * {@link ApacheLogFormatPatternBuilder}).
+     * @return The content of the directive or null if the directive is not
+     * part of the format.
+     */
+    String value(String directive) {
+        int slot = slot(directive);
+        if (slot < 0) {
+            return null;
+        }
+        String value = line.subSequence(starts[slot], ends[slot]).toString();
+        return escaped[slot] ? value.replace("\\\"", "''") : value;
+    }
+
+    /**
+     * Returns the content of the given directive for the last scanned line, as
+     * it appears in the line (i.e., with the surrounding quotes or brackets).
+     *
+     * @param directive The directive (see the _DIRECTIVE constants of
+     * {@link ApacheLogFormatPatternBuilder}).
+     * @return The content of the directive or null if the directive is not
+     * part of the format.
+     */
+    String raw(String directive) {
+        int slot = slot(directive);
+        if (slot < 0) {
+            return null;
+        }
+        switch (directives[slot]) {
+            case 't':
+                return line.subSequence(starts[slot] - 1, ends[slot] + 1).toString();
+            case 'r':
+            case 'i':
+            case 'a':
+                return '"' + value(directive) + '"';
+            default:
+                return value(directive);
+        }
+    }
+
+    /**
+     * Returns the line being tokenized.
+     *
+     * @return The last scanned line.
+     */
+    CharSequence line() {
+        return line;
+    }
+
+    /**
+     * Returns the start index of the content of the given directive in the
+     * last scanned line.
+     *
+     * @param directive The directive.
+     * @return The start index, or -1 if the directive is not in the format.
+     */
+    int start(String directive) {
+        int slot = slot(directive);
+        return slot < 0 ? -1 : starts[slot];
+    }
+
+    /**
+     * Returns the end index (exclusive) of the content of the given directive
+     * in the last scanned line.
+     *
+     * @param directive The directive.
+     * @return The end index, or -1 if the directive is not in the format.
+     */
+    int end(String directive) {
+        int slot = slot(directive);
+        return slot < 0 ? -1 : ends[slot];
+    }
+
+    /**
+     * Splits the request directive of the last scanned line according to
+     * {@link ApacheLogFormatPatternBuilder}.REQUEST_FORMAT. The parts are
+     * available using {@link #method()}, {@link #path()} and
+     * {@link #parameters()}.
+     *
+     * @return True if the request matches the request format.
+     */
+    boolean tokenizeRequest() {
+        int slot = slot(REQUEST_DIRECTIVE);
+        if (slot < 0) {
+            return false;
+        }
+        CharSequence req;
+        int pos, end;
+        if (escaped[slot]) {
+            req = value(REQUEST_DIRECTIVE);
+            pos = 0;
+            end = req.length();
+        } else {
+            req = line;
+            pos = starts[slot];
+            end = ends[slot];
+        }
+        this.request = req;
+        this.requestMatched = false;
+        // Method
+        methodStart = pos;
+        while (pos < end && req.charAt(pos) != ' ') {
+            pos++;
+        }
+        methodEnd = pos;
+        if (pos >= end || !isRequestMethod(req, methodStart, methodEnd)) {
+            return false;
+        }
+        // Path
+        pathStart = ++pos;
+        char c = 0;
+        while (pos < end && (c = req.charAt(pos)) != ' ' && c != '?' && c != '\t') {
+            pos++;
+        }
+        pathEnd = pos;
+        if (pos >= end || pathEnd == pathStart || c == '\t') {
+            return false;
+        }
+        // Parameters
+        if (c == '?') {
+            paramsStart = ++pos;
+            while (pos < end && (c = req.charAt(pos)) != ' ' && c != '\t') {
+                pos++;
+            }
+            paramsEnd = pos;
+            if (pos >= end || c == '\t') {
+                return false;
+            }
+        } else {
+            paramsStart = -1;
+            paramsEnd = -1;
+        }
+        // Protocol
+        int protocolStart = ++pos;
+        while (pos < end && (c = req.charAt(pos)) != ' ' && c != '\t') {
+            pos++;
+        }
+        this.requestMatched = pos == end && pos > protocolStart;
+        return this.requestMatched;
+    }
+
+    private static boolean isRequestMethod(CharSequence req, int start, int end) {
+        for (String method : REQUEST_METHODS) {
+            if (method.length() == end - start) {
+                int i = 0;
+                while (i < method.length() && method.charAt(i) == req.charAt(start + i)) {
+                    i++;
+                }
+                if (i == method.length()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the method of the last tokenized request.
+     *
+     * @return The method or null if the request did not match.
+     */
+    String method() {
+        return requestMatched ? request.subSequence(methodStart, methodEnd).toString()
+                : null;
+    }
+
+    /**
+     * Returns the query path of the last tokenized request.
+     *
+     * @return The query path or null if the request did not match.
+     */
+    String path() {
+        return requestMatched ? request.subSequence(pathStart, pathEnd).toString()
+                : null;
+    }
+
+    /**
+     * Returns the query parameters of the last tokenized request.
+     *
+     * @return The query parameters or null if the request did not match or has
+     * no parameters.
+     */
+    String parameters() {
+        return requestMatched && paramsStart >= 0
+                ? request.subSequence(paramsStart, paramsEnd).toString() : null;
+    }
+
+    private int slot(String directive) {
+        char c = directive.charAt(0);
+        return c < slots.length ? slots[c] : -1;
+    }
+
+}
@@ -0,0 +1,199 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import be.yami.exception.SessionBuildException;
+import be.yami.web.apache.ApacheLogPipeline.BatchConsumer;
+import be.yami.web.apache.ApacheLogPipeline.ParsedBatch;
+import be.yami.web.apache.ApacheLogPipeline.TaskProducer;
+
+/**
+ * Merges several Apache web logs (e.g., the logs of the different nodes behind
+ * a load balancer) by request time. Each log is read and parsed on its own
+ * thread, and the parsed requests are merged on the calling thread using a
+ * heap of cursors over the logs (a k-way merge). Requests with the same time
+ * are taken from the logs in the order of the list of logs. The merged requests
+ * are given to the consumer in batches.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheLogMerger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheLogMerger.class);
+
+    private static final ParsedBatch END = new ParsedBatch(0);
+
+    private static final int QUEUE_CAPACITY = 4;
+
+    /**
+     * The position in the parsed requests of one of the logs.
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        private final int index;
+        private final BlockingQueue<ParsedBatch> queue;
+        private ParsedBatch batch;
+        private int position;
+        private long time;
+
+        Cursor(int index) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            this.batch = null;
+            this.position = 0;
+        }
+
+        /**
+         * Moves to the next request of the log, waiting for the next batch if
+         * needed.
+         *
+         * @return False if the end of the log has been reached.
+         */
+        boolean next() throws InterruptedException {
+            position++;
+            while (batch == null || position >= batch.size) {
+                batch = queue.take();
+                position = 0;
+                if (batch == END) {
+                    return false;
+                }
+            }
+            time = batch.requests[position].getTime().getTime();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            int result = Long.compare(time, o.time);
+            return result != 0 ? result : Integer.compare(index, o.index);
+        }
+
+    }
+
+    private final int batchSize;
+
+    /**
+     * Creates a new merger.
+     *
+     * @param batchSize The number of requests in the batches given to the
+     * consumer.
+     */
+    ApacheLogMerger(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Merges the logs parsed by the given producers. The tasks submitted by
+     * each producer are executed on the thread of the producer.
+     *
+     * @param producers The producers of parsing tasks, one for each log.
+     * @param consumer The consumer of merged batches, executed on the calling
+     * thread.
+     * @throws SessionBuildException If an exception occurs while reading,
+     * parsing or consuming the logs.
+     */
+    void run(List<TaskProducer> producers, BatchConsumer consumer) throws SessionBuildException {
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final Cursor[] cursors = new Cursor[producers.size()];
+        final ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, cursors.length),
+                new ThreadFactoryBuilder().setNameFormat("yami-input-%d").setDaemon(true).build());
+        try {
+            for (int i = 0; i < cursors.length; i++) {
+                final Cursor cursor = new Cursor(i);
+                final TaskProducer producer = producers.get(i);
+                cursors[i] = cursor;
+                readers.execute(() -> {
+                    try {
+                        producer.produce((task) -> cursor.queue.put(task.call()));
+                    } catch (InterruptedException ex) {
+                        LOG.debug("Input {} interrupted", cursor.index);
+                        return;
+                    } catch (Exception ex) {
+                        error.compareAndSet(null, ex);
+                    }
+                    try {
+                        cursor.queue.put(END);
+                    } catch (InterruptedException ex) {
+                        LOG.debug("Input {} interrupted", cursor.index);
+                    }
+                });
+            }
+            merge(cursors, consumer, error);
+            if (error.get() != null) {
+                throw new SessionBuildException("Exception while reading input!", error.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SessionBuildException("Interrupted while building sessions!", ex);
+        } catch (SessionBuildException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new SessionBuildException("Exception while building sessions!", ex);
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    private void merge(Cursor[] cursors, BatchConsumer consumer,
+            AtomicReference<Exception> error) throws Exception {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, cursors.length));
+        for (Cursor cursor : cursors) {
+            if (cursor.next()) {
+                heap.add(cursor);
+            }
+        }
+        ParsedBatch merged = new ParsedBatch(batchSize);
+        while (!heap.isEmpty() && error.get() == null) {
+            Cursor cursor = heap.poll();
+            boolean more;
+            do {
+                merged.add(cursor.batch.requests[cursor.position],
+                        cursor.batch.accepted[cursor.position],
+                        cursor.batch.shards[cursor.position]);
+                if (merged.size == batchSize) {
+                    consumer.consume(merged);
+                    merged = new ParsedBatch(batchSize);
+                }
+                more = cursor.next();
+                // Keep on reading the same log while it is ahead of the others
+            } while (more && (heap.isEmpty() || cursor.compareTo(heap.peek()) <= 0));
+            if (more) {
+                heap.add(cursor);
+            }
+        }
+        if (merged.size > 0 && error.get() == null) {
+            consumer.consume(merged);
+        }
+    }
+
+}
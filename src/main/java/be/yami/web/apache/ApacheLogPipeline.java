@@ -0,0 +1,205 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import be.yami.exception.SessionBuildException;
+
+/**
+ * Pipeline used to parse Apache web logs on several threads. A reader thread
+ * splits the input into batches and submits a parsing task for each batch to a
+ * pool of workers. The parsed batches are given to the consumer on the calling
+ * thread, in the order in which the tasks have been submitted.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheLogPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheLogPipeline.class);
+
+    /**
+     * A batch of parsed log lines. Lines that could not be parsed are not part
+     * of the batch. The shard of each accepted request is computed by the
+     * parsing threads when sessions are built by several shards.
+     */
+    static class ParsedBatch {
+
+        ApacheUserRequest[] requests;
+        boolean[] accepted;
+        int[] shards;
+        int size;
+
+        ParsedBatch(int capacity) {
+            this.requests = new ApacheUserRequest[capacity];
+            this.accepted = new boolean[capacity];
+            this.shards = new int[capacity];
+            this.size = 0;
+        }
+
+        void add(ApacheUserRequest request, boolean isAccepted, int shard) {
+            if (size == requests.length) {
+                int capacity = Math.max(16, size * 2);
+                requests = Arrays.copyOf(requests, capacity);
+                accepted = Arrays.copyOf(accepted, capacity);
+                shards = Arrays.copyOf(shards, capacity);
+            }
+            requests[size] = request;
+            accepted[size] = isAccepted;
+            shards[size] = shard;
+            size++;
+        }
+
+    }
+
+    /**
+     * Produces the parsing tasks of the pipeline.
+     */
+    interface TaskProducer {
+
+        /**
+         * Submits the parsing tasks to the given sink, in input order.
+         *
+         * @param sink The sink receiving the tasks.
+         * @throws Exception If an error occurs while reading the input.
+         */
+        void produce(TaskSink sink) throws Exception;
+
+    }
+
+    /**
+     * Receives the parsing tasks of the pipeline.
+     */
+    interface TaskSink {
+
+        /**
+         * Submits a parsing task.
+         *
+         * @param task The task to submit.
+         * @throws Exception If the pipeline has been stopped or, if the sink
+         * executes the task, if the task failed.
+         */
+        void submit(Callable<ParsedBatch> task) throws Exception;
+
+    }
+
+    /**
+     * Consumes the parsed batches of the pipeline.
+     */
+    interface BatchConsumer {
+
+        /**
+         * Consumes the given batch.
+         *
+         * @param batch The parsed batch.
+         * @throws Exception If an error occurs while processing the batch.
+         */
+        void consume(ParsedBatch batch) throws Exception;
+
+    }
+
+    private static final Future<ParsedBatch> END = CompletableFuture.completedFuture(null);
+
+    private final int parallelism;
+
+    /**
+     * Creates a new pipeline.
+     *
+     * @param parallelism The number of worker threads used to execute the
+     * parsing tasks.
+     */
+    ApacheLogPipeline(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs the pipeline until all the tasks of the producer have been executed
+     * and their results consumed.
+     *
+     * @param producer The producer of parsing tasks, executed on a dedicated
+     * reader thread.
+     * @param consumer The consumer of parsed batches, executed on the calling
+     * thread.
+     * @throws SessionBuildException If an exception occurs in one of the
+     * stages of the pipeline.
+     */
+    void run(TaskProducer producer, BatchConsumer consumer) throws SessionBuildException {
+        // Bounded queue to keep the reader at most a few batches ahead
+        final BlockingQueue<Future<ParsedBatch>> ordered = new ArrayBlockingQueue<>(parallelism * 4);
+        final ExecutorService workers = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("yami-parser-%d").setDaemon(true).build());
+        final Exception[] readError = new Exception[1];
+        Thread reader = new Thread(() -> {
+            try {
+                producer.produce((task) -> ordered.put(workers.submit(task)));
+            } catch (InterruptedException ex) {
+                LOG.debug("Reader thread interrupted");
+                return;
+            } catch (Exception ex) {
+                readError[0] = ex;
+            }
+            try {
+                ordered.put(END);
+            } catch (InterruptedException ex) {
+                LOG.debug("Reader thread interrupted");
+            }
+        }, "yami-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            Future<ParsedBatch> next = ordered.take();
+            while (next != END) {
+                consumer.consume(next.get());
+                next = ordered.take();
+            }
+            reader.join();
+            if (readError[0] != null) {
+                throw new SessionBuildException("Exception while reading input!", readError[0]);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SessionBuildException("Interrupted while building sessions!", ex);
+        } catch (ExecutionException ex) {
+            throw new SessionBuildException("Exception while parsing input!",
+                    ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+        } catch (SessionBuildException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new SessionBuildException("Exception while building sessions!", ex);
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+}
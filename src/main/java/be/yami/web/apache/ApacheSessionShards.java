@@ -0,0 +1,220 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.yami.SequenceProcessor;
+import be.yami.exception.SessionBuildException;
+import be.yami.web.apache.ApacheLogPipeline.ParsedBatch;
+
+/**
+ * Builds user sessions on several threads. Clients are partitioned into shards
+ * using a hash of their id, and each shard has its own
+ * {@link ApacheSessionizer} running on a dedicated thread. Every parsed batch is
+ * given to all the shards: a shard adds the requests of its own clients to its
+ * sessions and uses the time of the other requests to expire its sessions, so
+ * that each shard completes exactly the sessions a single sessionizer would
+ * complete. Completed sessions are given to the listener one at a time, but the
+ * order in which sessions of different shards are completed is not
+ * deterministic.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheSessionShards {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheSessionShards.class);
+
+    private static final ParsedBatch END = new ParsedBatch(0);
+
+    private static final int QUEUE_CAPACITY = 4;
+
+    private class Shard implements Runnable {
+
+        private final int index;
+        private final ApacheSessionizer sessionizer;
+        private final BlockingQueue<ParsedBatch> queue;
+
+        Shard(int index, long timeout) {
+            this.index = index;
+            this.sessionizer = new ApacheSessionizer(timeout, ApacheSessionShards.this::completed);
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        }
+
+        @Override
+        public void run() {
+            try {
+                ParsedBatch batch = queue.take();
+                while (batch != END) {
+                    if (error == null) {
+                        process(batch);
+                    }
+                    // else: keep on draining the queue to not block the dispatcher
+                    batch = queue.take();
+                }
+                if (error == null) {
+                    sessionizer.flush();
+                }
+            } catch (InterruptedException ex) {
+                LOG.debug("Shard {} interrupted", index);
+            } catch (Throwable t) {
+                LOG.error("Exception in shard {}", index, t);
+                error = t;
+                // Drain until the end of the input
+                try {
+                    ParsedBatch batch = queue.take();
+                    while (batch != END) {
+                        batch = queue.take();
+                    }
+                } catch (InterruptedException ex) {
+                    LOG.debug("Shard {} interrupted", index);
+                }
+            }
+        }
+
+        private void process(ParsedBatch batch) {
+            long clock = Long.MIN_VALUE;
+            for (int i = 0; i < batch.size; i++) {
+                ApacheUserRequest request = batch.requests[i];
+                if (batch.accepted[i] && batch.shards[i] == index) {
+                    if (clock != Long.MIN_VALUE) {
+                        // Expire as the other requests since the previous one would have
+                        sessionizer.expire(clock);
+                        clock = Long.MIN_VALUE;
+                    }
+                    sessionizer.process(request, true);
+                } else {
+                    // No session is added to this shard before the next own request,
+                    // expiring once with the greatest time is enough
+                    clock = Math.max(clock, request.getTime().getTime());
+                }
+            }
+            if (clock != Long.MIN_VALUE) {
+                sessionizer.expire(clock);
+            }
+        }
+
+    }
+
+    private final SequenceProcessor<ApacheUserSession> listener;
+    private final Shard[] shards;
+    private final Thread[] threads;
+    private volatile Throwable error;
+
+    /**
+     * Creates and starts the threads of the given number of shards.
+     *
+     * @param count The number of shards.
+     * @param timeout The timeout of the sessions.
+     * @param listener The listener receiving the completed sessions.
+     */
+    ApacheSessionShards(int count, long timeout, SequenceProcessor<ApacheUserSession> listener) {
+        this.listener = listener;
+        this.shards = new Shard[count];
+        this.threads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, timeout);
+            threads[i] = new Thread(shards[i], "yami-shard-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Returns the shard of the given client.
+     *
+     * @param client The id of the client.
+     * @param count The number of shards.
+     * @return The index of the shard, between 0 and count - 1.
+     */
+    static int shardOf(String client, int count) {
+        int h = client.hashCode();
+        // Spread the bits of the hash, as HashMap does
+        h ^= (h >>> 16);
+        return (h & Integer.MAX_VALUE) % count;
+    }
+
+    private void completed(ApacheUserSession session) {
+        synchronized (listener) {
+            listener.process(session);
+        }
+    }
+
+    /**
+     * Gives the given batch to all the shards. Batches have to be dispatched in
+     * the order of the log.
+     *
+     * @param batch The batch to dispatch.
+     * @throws SessionBuildException If one of the shards failed.
+     * @throws InterruptedException If interrupted while waiting for a shard.
+     */
+    void dispatch(ParsedBatch batch) throws SessionBuildException, InterruptedException {
+        checkError();
+        for (Shard shard : shards) {
+            shard.queue.put(batch);
+        }
+    }
+
+    /**
+     * Waits for the shards to process all the dispatched batches and completes
+     * the remaining sessions.
+     *
+     * @throws SessionBuildException If one of the shards failed or if
+     * interrupted.
+     */
+    void close() throws SessionBuildException {
+        try {
+            for (Shard shard : shards) {
+                shard.queue.put(END);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException ex) {
+            abort();
+            Thread.currentThread().interrupt();
+            throw new SessionBuildException("Interrupted while building sessions!", ex);
+        }
+        checkError();
+    }
+
+    /**
+     * Stops the shards without completing the remaining sessions.
+     */
+    void abort() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    private void checkError() throws SessionBuildException {
+        Throwable t = error;
+        if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new SessionBuildException("Exception while building sessions!", (Exception) t);
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.Collection;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.yami.SequenceProcessor;
+import be.yami.web.SessionTimeoutIndex;
+
+/**
+ * Groups the requests of an Apache web log into user sessions. Requests have to
+ * be given in the order of the log. Completed sessions (i.e., sessions in
+ * timeout or remaining sessions when the sessionizer is flushed) are given to
+ * the listener. A sessionizer may not be shared between threads.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheSessionizer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheSessionizer.class);
+
+    private final SessionTimeoutIndex<ApacheUserSession> sessions;
+    private final SequenceProcessor<ApacheUserSession> listener;
+
+    /**
+     * Creates a new sessionizer.
+     *
+     * @param timeout The timeout of the sessions.
+     * @param listener The listener receiving the completed sessions.
+     */
+    ApacheSessionizer(long timeout, SequenceProcessor<ApacheUserSession> listener) {
+        this.sessions = new SessionTimeoutIndex<>(timeout);
+        this.listener = listener;
+    }
+
+    /**
+     * Processes the given request: the sessions in timeout at the time of the
+     * request are completed and, if the request is accepted, the request is
+     * added to the session of its client.
+     *
+     * @param request The request to process.
+     * @param accepted True if the request satisfies the filters of the
+     * builder.
+     */
+    void process(ApacheUserRequest request, boolean accepted) {
+        expire(request.getTime().getTime());
+        if (accepted) {
+            add(request);
+        }
+    }
+
+    /**
+     * Completes the sessions in timeout at the given time.
+     *
+     * @param time The current time (in milliseconds).
+     */
+    void expire(long time) {
+        this.sessions.expire(time, this.listener);
+    }
+
+    private void add(ApacheUserRequest request) {
+        String host = request.getClient();
+        LOG.trace("Adding request {} for host {}", request, host);
+        ApacheUserSession session = this.sessions.get(host);
+        if (session == null) {
+            LOG.trace("Creating new session for client {}", host);
+            session = new ApacheUserSession(host);
+            session.enqueue(request);
+            this.sessions.add(session);
+        } else {
+            Date previousEndTime = session.getEndTime();
+            session.enqueue(request);
+            this.sessions.updated(session, previousEndTime);
+        }
+    }
+
+    /**
+     * Completes all the remaining sessions.
+     */
+    void flush() {
+        this.sessions.flush(this.listener);
+    }
+
+    /**
+     * Adds an open session saved in a checkpoint (see
+     * {@link ApacheLogFollower}).
+     *
+     * @param session The session to restore, containing at least one request.
+     */
+    void restore(ApacheUserSession session) {
+        this.sessions.add(session);
+    }
+
+    /**
+     * Returns the open sessions.
+     *
+     * @return An unmodifiable view of the open sessions.
+     */
+    Collection<ApacheUserSession> sessions() {
+        return this.sessions.sessions();
+    }
+
+}
@@ -0,0 +1,198 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.text.ParseException;
+
+/**
+ * Parses the time of Apache web log entries (the %t directive, without the
+ * surrounding brackets), using the layout
+ * {@link ApacheLogFormatPatternBuilder}.DATE_FORMAT (e.g., "10/Oct/2000:13:55:36
+ * -0700"). The fields are read by hand instead of using a
+ * {@link java.text.SimpleDateFormat}, and the last parsed second is cached: as
+ * a log contains many entries for the same second, most of the times are parsed
+ * by comparing them with the cached one. Like a lenient
+ * {@link java.text.SimpleDateFormat}, out of range values (e.g., 31/Feb) are
+ * rolled over. Instances of this class are thread-safe.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ApacheTimestampParser {
+
+    /**
+     * The length of a time.
+     */
+    static final int LENGTH = 26;
+
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun",
+        "jul", "aug", "sep", "oct", "nov", "dec"};
+
+    /**
+     * The last parsed second. Immutable, so that it may be replaced
+     * atomically.
+     */
+    private static final class Second {
+
+        private final char[] text;
+        private final long millis;
+
+        Second(char[] text, long millis) {
+            this.text = text;
+            this.millis = millis;
+        }
+
+        boolean matches(CharSequence s, int start) {
+            for (int i = LENGTH - 1; i >= 0; i--) {
+                // Seconds are the most likely to differ
+                if (text[i] != s.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private volatile Second last;
+
+    /**
+     * Parses the given time.
+     *
+     * @param time The time to parse.
+     * @return The number of milliseconds since the epoch.
+     * @throws ParseException If the time does not match the layout.
+     */
+    long parse(CharSequence time) throws ParseException {
+        return parse(time, 0, time.length());
+    }
+
+    /**
+     * Parses the time between the given bounds of the given sequence.
+     *
+     * @param s The sequence containing the time.
+     * @param start The index of the first char of the time.
+     * @param end The index after the last char of the time.
+     * @return The number of milliseconds since the epoch.
+     * @throws ParseException If the time does not match the layout.
+     */
+    long parse(CharSequence s, int start, int end) throws ParseException {
+        if (end - start != LENGTH) {
+            throw new ParseException("Unparseable date: \"" + s.subSequence(start, end) + "\"", 0);
+        }
+        Second cached = last;
+        if (cached != null && cached.matches(s, start)) {
+            return cached.millis;
+        }
+        long millis = parseFields(s, start);
+        char[] text = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            text[i] = s.charAt(start + i);
+        }
+        last = new Second(text, millis);
+        return millis;
+    }
+
+    private static long parseFields(CharSequence s, int start) throws ParseException {
+        int day = digits(s, start, 0, 2);
+        expect(s, start, 2, '/');
+        int month = month(s, start, 3);
+        expect(s, start, 6, '/');
+        int year = digits(s, start, 7, 4);
+        expect(s, start, 11, ':');
+        int hour = digits(s, start, 12, 2);
+        expect(s, start, 14, ':');
+        int minute = digits(s, start, 15, 2);
+        expect(s, start, 17, ':');
+        int second = digits(s, start, 18, 2);
+        expect(s, start, 20, ' ');
+        int sign;
+        switch (s.charAt(start + 21)) {
+            case '+':
+                sign = 1;
+                break;
+            case '-':
+                sign = -1;
+                break;
+            default:
+                throw error(s, start, 21);
+        }
+        int offset = sign * (digits(s, start, 22, 2) * 60 + digits(s, start, 24, 2));
+        long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L
+                + minute * 60L + second - offset * 60L;
+        return seconds * 1000L;
+    }
+
+    /**
+     * Returns the number of days between the epoch and the given date of the
+     * proleptic Gregorian calendar. Days and months out of range are rolled
+     * over.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = year + Math.floorDiv(month - 1, 12);
+        int m = Math.floorMod(month - 1, 12) + 1;
+        if (m <= 2) {
+            y--;
+        }
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468 + day - 1;
+    }
+
+    private static int month(CharSequence s, int start, int offset) throws ParseException {
+        char c0 = Character.toLowerCase(s.charAt(start + offset));
+        char c1 = Character.toLowerCase(s.charAt(start + offset + 1));
+        char c2 = Character.toLowerCase(s.charAt(start + offset + 2));
+        for (int i = 0; i < MONTHS.length; i++) {
+            String m = MONTHS[i];
+            if (m.charAt(0) == c0 && m.charAt(1) == c1 && m.charAt(2) == c2) {
+                return i + 1;
+            }
+        }
+        throw error(s, start, offset);
+    }
+
+    private static int digits(CharSequence s, int start, int offset, int count)
+            throws ParseException {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = s.charAt(start + i);
+            if (c < '0' || c > '9') {
+                throw error(s, start, i);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void expect(CharSequence s, int start, int offset, char expected)
+            throws ParseException {
+        if (s.charAt(start + offset) != expected) {
+            throw error(s, start, offset);
+        }
+    }
+
+    private static ParseException error(CharSequence s, int start, int offset) {
+        return new ParseException("Unparseable date: \""
+                + s.subSequence(start, start + LENGTH) + "\"", offset);
+    }
+
+}
@@ -23,22 +23,28 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.code.regexp.Matcher;
-import com.google.code.regexp.Pattern;
+import com.google.common.base.Preconditions;
 
+import be.yami.Checkpointable;
 import be.yami.SequenceBuilder;
 import be.yami.exception.SessionBuildException;
-import static be.yami.web.apache.ApacheLogFormatPatternBuilder.*;
+import be.yami.io.CompressedInputs;
+import be.yami.io.Compression;
+import be.yami.web.apache.ApacheLogPipeline.ParsedBatch;
 
 /**
  * This class is used to process Apache user sessions from an Apache web log.
@@ -69,25 +75,60 @@ public class ApacheUserSessionBuilder extends
      */
     public static final long DEFAULT_TIMEOUT = 1800000;
 
+    /**
+     * The default number of lines in the batches processed by the parsing
+     * threads.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * The default time (in milliseconds) between two checks for new lines
+     * when following a log.
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 1000;
+
     private static final Logger LOG = LoggerFactory
             .getLogger(ApacheUserSessionBuilder.class);
 
-    private String logFormat;
-    private long sessionTimeout;
-    private final Map<String, ApacheUserSession> sessions;
+    /**
+     * Estimation of the length of a line, used to split mapped files into
+     * batches of approximately batchSize lines.
+     */
+    private static final int ESTIMATED_LINE_LENGTH = 256;
 
     /**
-     * The Apache request format used to extract the different fields from the
-     * request part of the log entry.
+     * A source of parsed batches, given to the consumer in the order of the
+     * log.
      */
-    private final Pattern requestPattern = ApacheLogFormatPatternBuilder.getInstance()
-            .buildPattern(ApacheLogFormatPatternBuilder.REQUEST_FORMAT);
+    private interface BatchSource {
+
+        void run(ApacheLogPipeline.BatchConsumer consumer) throws SessionBuildException;
+
+    }
+
+    private String logFormat;
+    private long sessionTimeout;
+    private int parallelism;
+    private int batchSize;
+    private int shards;
+    private int regionSize;
+    private long pollInterval;
+    private Path checkpointFile;
+    private long checkpointInterval;
+    private List<Checkpointable> checkpointStates;
+    private ApacheSessionizer sessionizer;
+    private volatile ApacheLogFollower follower;
 
     private ApacheUserSessionBuilder() {
         super();
-        this.sessions = new HashMap<>();
         this.logFormat = ApacheLogFormatPatternBuilder.COMMON_LOG_FORMAT;
         this.sessionTimeout = DEFAULT_TIMEOUT;
+        this.parallelism = 1;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.shards = 1;
+        this.regionSize = MappedLogFile.DEFAULT_REGION_SIZE;
+        this.pollInterval = DEFAULT_POLL_INTERVAL;
+        this.checkpointStates = Collections.emptyList();
     }
 
     /**
@@ -123,151 +164,418 @@ public class ApacheUserSessionBuilder extends
         return this;
     }
 
+    /**
+     * Set the number of threads used to parse and filter the log entries.
+     * Default is 1, meaning that the log is read, parsed, filtered and
+     * processed into sessions on the calling thread. With a higher value, a
+     * reader thread splits the input into batches of lines (see
+     * {@link #batchSize(int)}) which are parsed and filtered by a pool of
+     * parsing threads, and the sessions are built on the calling thread using
+     * the batches in their original order. The resulting sessions are the same
+     * in both cases, but the include and exclude filters have to be
+     * thread-safe when more than one thread is used.
+     *
+     * @param parallelism The number of parsing threads.
+     * @return This object.
+     */
+    public ApacheUserSessionBuilder parallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "Parallelism must be greater than 0!");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Set the number of lines in the batches processed by the parsing threads.
+     * Default is {@link ApacheUserSessionBuilder}.DEFAULT_BATCH_SIZE. This value
+     * is only used if the parallelism or the number of shards is greater than
+     * 1, or if the sessions are built from a file (see
+     * {@link #buildSessions(Path)}).
+     *
+     * @param batchSize The number of lines in a batch.
+     * @return This object.
+     */
+    public ApacheUserSessionBuilder batchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be greater than 0!");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Set the number of threads used to build the sessions. Default is 1,
+     * meaning that the sessions are built on the calling thread. With a higher
+     * value, clients are partitioned into the given number of shards using a
+     * hash of the client, and the sessions of each shard are built on their own
+     * thread. The parsed batches of lines (see {@link #parallelism(int)}) are
+     * given to every shard, in their original order. The resulting sessions
+     * are the same in both cases, and the listeners are never called
+     * concurrently, but the order in which the listeners receive the sessions
+     * of clients of different shards is not deterministic.
+     *
+     * @param shards The number of shards.
+     * @return This object.
+     */
+    public ApacheUserSessionBuilder shards(int shards) {
+        Preconditions.checkArgument(shards > 0, "Number of shards must be greater than 0!");
+        this.shards = shards;
+        return this;
+    }
+
+    /**
+     * Set the maximal size of the regions of a file mapped in memory (see
+     * {@link #buildSessions(Path)}).
+     *
+     * @param regionSize The size of the regions, in bytes.
+     * @return This object.
+     */
+    ApacheUserSessionBuilder regionSize(int regionSize) {
+        Preconditions.checkArgument(regionSize > 0, "Region size must be greater than 0!");
+        this.regionSize = regionSize;
+        return this;
+    }
+
+    /**
+     * Set the time to wait for new lines when the end of a followed log is
+     * reached (see {@link #follow(Path)}). Default is
+     * {@link ApacheUserSessionBuilder}.DEFAULT_POLL_INTERVAL.
+     *
+     * @param pollInterval The time to wait, in milliseconds.
+     * @return This object.
+     */
+    public ApacheUserSessionBuilder pollInterval(long pollInterval) {
+        Preconditions.checkArgument(pollInterval > 0, "Poll interval must be greater than 0!");
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    /**
+     * Set the file used to checkpoint the state of a followed log (see
+     * {@link #follow(Path)}): the position in the log, the open sessions and
+     * the state of the given objects (e.g., the {@link be.yami.ngram.Bigram}
+     * enriched by the listeners) are saved in this file every interval and
+     * when the following stops. If the file exists when the following
+     * starts, the state is restored and the log is read from the saved
+     * position.
+     *
+     * @param file The checkpoint file.
+     * @param interval The time between two checkpoints, in milliseconds.
+     * @param states The objects to save and restore with the sessions.
+     * @return This object.
+     */
+    public ApacheUserSessionBuilder checkpoint(Path file, long interval, Checkpointable... states) {
+        Preconditions.checkArgument(interval > 0, "Checkpoint interval must be greater than 0!");
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+        this.checkpointStates = Arrays.asList(states);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc} Compressed inputs (see {@link Compression}) are
+     * decompressed on a background thread while the log is parsed. The given
+     * input is not closed.
+     */
     @Override
     public void buildSessions(InputStream input) throws SessionBuildException {
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-            String line = reader.readLine();
-            Pattern pattern = ApacheLogFormatPatternBuilder.getInstance().buildPattern(
-                    this.logFormat);
-            java.util.regex.Pattern p = pattern.pattern();
-            java.util.regex.Matcher m;
-            Matcher match;
-            Map<String, String> groups;
-            ApacheUserRequest userRequest;
-            while (line != null) {
-                LOG.trace("Processing line: {}", line);
-                line = line.replace("\\\"", "''");
-                m = p.matcher(line);
-                if (m.matches()) {
-                    match = pattern.matcher(line);
-                    if (match.find()) {
-                        LOG.trace("Matching line: {}", line);
-                        groups = match.namedGroups();
-                        userRequest = buildRequest(groups);
-                        checkSessionsTimeout(userRequest.getTime());
-                        if (this.isAcceptedEntry(userRequest)) {
-                            addRequest(groups.get(HOST_DIRECTIVE), userRequest);
-                        }
-                    } else {
-                        LOG.info("Skipping line: {}", line);
-                    }
-                } else {
-                    LOG.info("Skipping line: {}", line);
-                }
-                line = reader.readLine();
-            }
+        try (InputStream in = CompressedInputs.open(input, false)) {
+            buildSessions(new BufferedReader(new InputStreamReader(in)));
         } catch (IOException e) {
             throw new SessionBuildException("Exception while reading input!", e);
         }
-        flushSessions();
     }
 
-    /**
-     * Builds an {@link ApacheUserRequest} from the given groups.
-     *
-     * @see ApacheLogFormatPatternBuilder
-     */
-    private ApacheUserRequest buildRequest(Map<String, String> groups) {
-        String req = groups.get(REQUEST_DIRECTIVE);
-        if (req == null) {
-            LOG.error("Request part is null in {}!", groups);
+    private void buildSessions(BufferedReader reader) throws SessionBuildException {
+        if (this.shards > 1) {
+            buildSessionsSharded((consumer)
+                    -> new ApacheLogPipeline(this.parallelism).run(readerTasks(reader), consumer));
         } else {
-            Matcher match = requestPattern.matcher(req.substring(1, req.length() - 1));
-            if (match.matches()) {
-                groups.putAll(match.namedGroups());
+            this.sessionizer = new ApacheSessionizer(this.sessionTimeout, this::sequenceCompleted);
+            if (this.parallelism > 1) {
+                new ApacheLogPipeline(this.parallelism).run(readerTasks(reader), this::processBatch);
             } else {
-                LOG.debug("Request {} did not match pattern!", req);
+                buildSessionsSequential(reader);
             }
+            this.sessionizer.flush();
+            this.sessionizer = null;
         }
-        String params = groups.get(REQUEST_QUERY_PARAMETERS_DIRECTIVE);
-        String[] paramNames, paramValues;
-        if (params != null) {
-            String[] couples = params.split("\\&");
-            paramNames = new String[couples.length];
-            paramValues = new String[couples.length];
-            String[] param;
-            for (int i = 0; i < couples.length; i++) {
-                param = couples[i].split("=");
-                paramNames[i] = param.length > 0 ? param[0] : null;
-                paramValues[i] = param.length > 1 ? param[1] : null;
+    }
+
+    /**
+     * Build the sessions from the given log file. The file is mapped in
+     * memory, region by region, and the lines are parsed directly from the
+     * mapped bytes: only the values of the fields are decoded (as UTF-8),
+     * instead of whole lines. Regions are split into batches of
+     * approximately batchSize lines (see {@link #batchSize(int)}), parsed in
+     * parallel if the parallelism is greater than 1. The resulting sessions
+     * are the same as the ones built using {@link #buildSessions(InputStream)}
+     * for an UTF-8 (or ASCII) log. Compressed files (see {@link Compression})
+     * may not be mapped and are decompressed on a background thread instead.
+     *
+     * @param file The log file to read.
+     * @throws SessionBuildException If an exception occurs during the building
+     * of the sessions.
+     */
+    @Override
+    public void buildSessions(Path file) throws SessionBuildException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (CompressedInputs.detect(channel) != Compression.NONE) {
+                try (InputStream in = CompressedInputs.open(Channels.newInputStream(channel), false)) {
+                    buildSessions(new BufferedReader(new InputStreamReader(in)));
+                }
+                return;
             }
-        } else {
-            paramNames = new String[0];
-            paramValues = new String[0];
+            MappedLogFile log = new MappedLogFile(channel, this.regionSize);
+            if (this.shards > 1) {
+                buildSessionsSharded((consumer)
+                        -> new ApacheLogPipeline(this.parallelism).run(mappedTasks(log), consumer));
+            } else {
+                this.sessionizer = new ApacheSessionizer(this.sessionTimeout, this::sequenceCompleted);
+                if (this.parallelism > 1) {
+                    new ApacheLogPipeline(this.parallelism).run(mappedTasks(log), this::processBatch);
+                } else {
+                    buildSessionsSequential(log);
+                }
+                this.sessionizer.flush();
+                this.sessionizer = null;
+            }
+        } catch (IOException e) {
+            throw new SessionBuildException("Exception while reading input!", e);
         }
-        SimpleDateFormat dateFormat = new SimpleDateFormat(
-                ApacheLogFormatPatternBuilder.DATE_FORMAT,
-                ApacheLogFormatPatternBuilder.DATE_LOCALE);
-        ApacheUserRequest request = null;
+    }
+
+    /**
+     * Build the sessions from several logs of the same web site, e.g., the
+     * logs of the different nodes behind a load balancer. The requests of the
+     * logs are merged by time, so that the requests of a client served by
+     * different nodes end up in the same session, without sorting and
+     * concatenating the logs beforehand. Each log has to be in chronological
+     * order and is read and parsed on its own thread (the parallelism is not
+     * used). Compressed inputs (see {@link Compression}) are decompressed on
+     * the fly. The given inputs are not closed.
+     *
+     * @param inputs The logs to read.
+     * @throws SessionBuildException If an exception occurs during the building
+     * of the sessions.
+     */
+    public void buildSessions(List<InputStream> inputs) throws SessionBuildException {
+        final List<InputStream> opened = new ArrayList<>();
+        final List<ApacheLogPipeline.TaskProducer> producers = new ArrayList<>();
         try {
-            request = new ApacheUserRequest(groups.get(HOST_DIRECTIVE),
-                    dateFormat.parse(groups.get(TIME_DIRECTIVE).substring(1,
-                            groups.get(TIME_DIRECTIVE).length() - 1)),
-                    groups.get(REQUEST_METHOD_DIRECTIVE),
-                    groups.get(REQUEST_QUERY_PATH_DIRECTIVE), paramNames, paramValues);
-            if (groups.get(STATUS_CODE_DIRECTIVE) != null) {
-                try {
-                    request.setStatusCode(Integer.parseInt(groups
-                            .get(STATUS_CODE_DIRECTIVE)));
-                } catch (NumberFormatException e) {
-                    LOG.trace("Unable to parse status code {}!",
-                            groups.get(STATUS_CODE_DIRECTIVE), e);
-                }
+            for (InputStream input : inputs) {
+                InputStream in = CompressedInputs.open(input, false);
+                opened.add(in);
+                producers.add(readerTasks(new BufferedReader(new InputStreamReader(in))));
+            }
+            final ApacheLogMerger merger = new ApacheLogMerger(this.batchSize);
+            if (this.shards > 1) {
+                buildSessionsSharded((consumer) -> merger.run(producers, consumer));
+            } else {
+                this.sessionizer = new ApacheSessionizer(this.sessionTimeout, this::sequenceCompleted);
+                merger.run(producers, this::processBatch);
+                this.sessionizer.flush();
+                this.sessionizer = null;
             }
-            if (groups.get(SIZE_DIRECTIVE) != null) {
+        } catch (IOException e) {
+            throw new SessionBuildException("Exception while reading input!", e);
+        } finally {
+            for (InputStream in : opened) {
                 try {
-                    request.setObjSize(Integer.parseInt(groups.get(SIZE_DIRECTIVE)));
-                } catch (NumberFormatException e) {
-                    LOG.trace("Unable to parse object size {}!",
-                            groups.get(SIZE_DIRECTIVE), e);
+                    in.close();
+                } catch (IOException e) {
+                    LOG.warn("Exception while closing input!", e);
                 }
             }
-            request.setReferrer(groups.get(REFERRER_DIRECTIVE));
-            request.setUserAgent(groups.get(USER_AGENT_DIRECTIVE));
-        } catch (ParseException e) {
-            LOG.error("Error while parsing date {}!", groups.get(TIME_DIRECTIVE), e);
         }
-        return request;
     }
 
-    private void addRequest(String host, ApacheUserRequest request) {
-        LOG.trace("Adding request {} for host {}", request, host);
-        ApacheUserSession session = this.sessions.get(host);
-        if (session == null) {
-            LOG.trace("Creating new session for client {}", host);
-            session = new ApacheUserSession(host);
-            session.enqueue(request);
-            this.sessions.put(host, session);
-        } else {
-            session.enqueue(request);
+    /**
+     * Follow the given log file while it grows, as <code>tail -F</code> does,
+     * until {@link #stopFollowing()} is called or the calling thread is
+     * interrupted. New lines are checked every poll interval (see
+     * {@link #pollInterval(long)}) and processed on the calling thread.
+     * Rotations of the log (i.e., the file is replaced by a new one or
+     * truncated) are detected and the new file is read from the beginning.
+     * When no line is appended, sessions expire using the wall clock. If a
+     * checkpoint file is set (see {@link #checkpoint(Path, long,
+     * Checkpointable...)}), the open sessions are saved when the following
+     * stops and restored when it resumes. Otherwise, they are completed when
+     * the following stops. The parallelism and the number of shards are not
+     * used.
+     *
+     * @param file The log file to follow.
+     * @throws SessionBuildException If an exception occurs while reading the
+     * log or the checkpoint.
+     */
+    public void follow(Path file) throws SessionBuildException {
+        ApacheLogLineParser parser = new ApacheLogLineParser(this.logFormat);
+        this.sessionizer = new ApacheSessionizer(this.sessionTimeout, this::sequenceCompleted);
+        ApacheLogFollower logFollower = new ApacheLogFollower(file, (line) -> parseLine(parser, line),
+                this::isAcceptedEntry, this.sessionizer, this.pollInterval);
+        if (this.checkpointFile != null) {
+            logFollower.checkpoint(this.checkpointFile, this.checkpointInterval,
+                    this.checkpointStates);
+        }
+        this.follower = logFollower;
+        try {
+            logFollower.run();
+        } catch (IOException e) {
+            throw new SessionBuildException("Exception while following input!", e);
+        } finally {
+            this.follower = null;
+            this.sessionizer = null;
         }
     }
 
     /**
-     * Check if there is no session in timeout. Sessions in timeout are sent to
-     * the listeners.
+     * Stops the following of a log (see {@link #follow(Path)}). May be called
+     * from any thread.
      */
-    private void checkSessionsTimeout(Date date) {
-        Iterator<ApacheUserSession> it = this.sessions.values().iterator();
-        ApacheUserSession session;
-        while (it.hasNext()) {
-            session = it.next();
-            if (date.getTime() - session.getEndTime().getTime() > this.sessionTimeout) {
-                this.sequenceCompleted(session);
-                it.remove();
+    public void stopFollowing() {
+        ApacheLogFollower logFollower = this.follower;
+        if (logFollower != null) {
+            logFollower.stop();
+        }
+    }
+
+    private void buildSessionsSequential(BufferedReader reader) throws SessionBuildException {
+        try {
+            ApacheLogLineParser parser = new ApacheLogLineParser(this.logFormat);
+            String line = reader.readLine();
+            ApacheUserRequest userRequest;
+            while (line != null) {
+                userRequest = parseLine(parser, line);
+                if (userRequest != null) {
+                    this.sessionizer.process(userRequest, this.isAcceptedEntry(userRequest));
+                }
+                line = reader.readLine();
             }
+        } catch (IOException e) {
+            throw new SessionBuildException("Exception while reading input!", e);
         }
     }
 
+    private void buildSessionsSequential(MappedLogFile log) throws IOException {
+        ApacheLogLineParser parser = new ApacheLogLineParser(this.logFormat);
+        int step = mappedBatchLength();
+        ByteBuffer region = log.nextRegion();
+        while (region != null) {
+            for (int from = 0; from < region.limit(); from += step) {
+                processBatch(parseRange(parser, region, from,
+                        (int) Math.min((long) from + step, region.limit())));
+            }
+            region = log.nextRegion();
+        }
+    }
+
+    private void buildSessionsSharded(BatchSource source) throws SessionBuildException {
+        ApacheSessionShards sessionShards = new ApacheSessionShards(this.shards,
+                this.sessionTimeout, this::sequenceCompleted);
+        try {
+            source.run(sessionShards::dispatch);
+        } catch (SessionBuildException | RuntimeException ex) {
+            sessionShards.abort();
+            throw ex;
+        }
+        sessionShards.close();
+    }
+
+    private ApacheLogPipeline.TaskProducer readerTasks(BufferedReader reader) {
+        final ThreadLocal<ApacheLogLineParser> parsers = newParsers();
+        return (sink) -> {
+            String[] lines = new String[this.batchSize];
+            int size = 0;
+            String line = reader.readLine();
+            while (line != null) {
+                lines[size++] = line;
+                if (size == lines.length) {
+                    sink.submit(parseTask(parsers, lines, size));
+                    lines = new String[this.batchSize];
+                    size = 0;
+                }
+                line = reader.readLine();
+            }
+            if (size > 0) {
+                sink.submit(parseTask(parsers, lines, size));
+            }
+        };
+    }
+
+    private ApacheLogPipeline.TaskProducer mappedTasks(MappedLogFile log) {
+        final ThreadLocal<ApacheLogLineParser> parsers = newParsers();
+        final int step = mappedBatchLength();
+        return (sink) -> {
+            ByteBuffer region = log.nextRegion();
+            while (region != null) {
+                final ByteBuffer current = region;
+                for (int from = 0; from < current.limit(); from += step) {
+                    final int start = from;
+                    final int end = (int) Math.min((long) from + step, current.limit());
+                    sink.submit(() -> parseRange(parsers.get(), current, start, end));
+                }
+                region = log.nextRegion();
+            }
+        };
+    }
+
+    private ThreadLocal<ApacheLogLineParser> newParsers() {
+        return ThreadLocal.withInitial(() -> new ApacheLogLineParser(this.logFormat));
+    }
+
+    private int mappedBatchLength() {
+        return (int) Math.min((long) this.batchSize * ESTIMATED_LINE_LENGTH, Integer.MAX_VALUE);
+    }
+
+    private Callable<ParsedBatch> parseTask(ThreadLocal<ApacheLogLineParser> parsers,
+            String[] lines, int size) {
+        return () -> {
+            ApacheLogLineParser parser = parsers.get();
+            ParsedBatch batch = new ParsedBatch(size);
+            for (int i = 0; i < size; i++) {
+                addLine(batch, parser, lines[i]);
+            }
+            return batch;
+        };
+    }
+
     /**
-     * Sends all the remaining sessions to the listeners.
+     * Parses the lines starting in the given range of the given region.
      */
-    private void flushSessions() {
-        for (ApacheUserSession session : this.sessions.values()) {
-            this.sequenceCompleted(session);
+    private ParsedBatch parseRange(ApacheLogLineParser parser, ByteBuffer region, int from, int to) {
+        ParsedBatch batch = new ParsedBatch(this.batchSize);
+        ByteBufferLine line = new ByteBufferLine(region);
+        int start = MappedLogFile.firstLine(region, from);
+        int end;
+        while (start < to) {
+            end = MappedLogFile.lineEnd(region, start);
+            addLine(batch, parser, line.set(start, MappedLogFile.contentEnd(region, start, end)));
+            start = end + 1;
+        }
+        return batch;
+    }
+
+    private void addLine(ParsedBatch batch, ApacheLogLineParser parser, CharSequence line) {
+        ApacheUserRequest userRequest = parseLine(parser, line);
+        if (userRequest != null) {
+            boolean accepted = this.isAcceptedEntry(userRequest);
+            batch.add(userRequest, accepted, accepted && this.shards > 1
+                    ? ApacheSessionShards.shardOf(userRequest.getClient(), this.shards) : 0);
+        }
+    }
+
+    private ApacheUserRequest parseLine(ApacheLogLineParser parser, CharSequence line) {
+        LOG.trace("Processing line: {}", line);
+        ApacheUserRequest userRequest = parser.parse(line);
+        if (userRequest != null) {
+            LOG.trace("Matching line: {}", line);
+        } else {
+            LOG.info("Skipping line: {}", line);
+        }
+        return userRequest;
+    }
+
+    private void processBatch(ParsedBatch batch) {
+        for (int i = 0; i < batch.size; i++) {
+            this.sessionizer.process(batch.requests[i], batch.accepted[i]);
         }
-        this.sessions.clear();
     }
 
 }
@@ -0,0 +1,99 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A line of a log file seen directly in a byte buffer, without decoding it.
+ * Each byte is one char of the sequence: ASCII bytes are seen as they are and
+ * bytes of multi-byte UTF-8 characters are seen as chars above 0x7F, which may
+ * not be mistaken for the delimiters of the log format. Only the strings
+ * extracted from the line (using {@link #subSequence(int, int)} and
+ * {@link #toString()}) are decoded, as UTF-8. Bytes are read using absolute
+ * positions so that several lines may be read concurrently from the same
+ * buffer.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class ByteBufferLine implements CharSequence {
+
+    private final ByteBuffer buffer;
+    private int start;
+    private int end;
+
+    /**
+     * Creates a new empty line over the given buffer.
+     *
+     * @param buffer The buffer containing the line.
+     */
+    ByteBufferLine(ByteBuffer buffer) {
+        this(buffer, 0, 0);
+    }
+
+    private ByteBufferLine(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Moves this line to the given bounds of the buffer.
+     *
+     * @param start The index of the first byte of the line.
+     * @param end The index after the last byte of the line.
+     * @return This object.
+     */
+    ByteBufferLine set(int start, int end) {
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(start + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("Invalid bounds [" + from + ", " + to + "[");
+        }
+        return new ByteBufferLine(buffer, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[end - start];
+        // Bulk read on a duplicate to leave the position of the buffer untouched
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,153 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Maps a log file in memory, region by region. A region is at most a few
+ * hundreds of megabytes long (a mapped buffer may not exceed 2GB) and always
+ * ends at the end of a line, so that the lines of a region may be read
+ * independently of the other regions. Within a region, lines may also be read
+ * by ranges of bytes: the lines of a range are the lines starting in the range
+ * (see {@link #firstLine(ByteBuffer, int)}).
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+class MappedLogFile {
+
+    /**
+     * The default size of the mapped regions.
+     */
+    static final int DEFAULT_REGION_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int regionSize;
+    private long position;
+
+    /**
+     * Creates a new mapped log file reading the given channel.
+     *
+     * @param channel The channel of the log file.
+     * @param regionSize The maximal size of the mapped regions, unless a line
+     * is longer than that size.
+     * @throws IOException If the size of the channel may not be read.
+     */
+    MappedLogFile(FileChannel channel, int regionSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.regionSize = regionSize;
+        this.position = 0;
+    }
+
+    /**
+     * Maps the next region of the file. The limit of the returned buffer is
+     * the index after the last new line character of the region, or the end of
+     * the file.
+     *
+     * @return The next region of the file or null if the end of the file has
+     * been reached.
+     * @throws IOException If the file may not be mapped.
+     */
+    ByteBuffer nextRegion() throws IOException {
+        if (position >= size) {
+            return null;
+        }
+        long length = Math.min(regionSize, size - position);
+        ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        while (position + length < size) {
+            int limit = lastLineEnd(region);
+            if (limit > 0) {
+                region.limit(limit);
+                break;
+            }
+            // Line longer than the region, map a bigger one
+            length = Math.min(Math.min(length * 2, Integer.MAX_VALUE), size - position);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+        position += region.limit();
+        return region;
+    }
+
+    private static int lastLineEnd(ByteBuffer region) {
+        for (int i = region.limit() - 1; i >= 0; i--) {
+            if (region.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the index of the first line starting at or after the given
+     * index.
+     *
+     * @param region The region containing the lines.
+     * @param from The index to start from.
+     * @return The index of the first byte of the line or the limit of the
+     * region if there is no such line.
+     */
+    static int firstLine(ByteBuffer region, int from) {
+        if (from == 0) {
+            return 0;
+        }
+        int pos = from - 1;
+        int limit = region.limit();
+        while (pos < limit && region.get(pos) != '\n') {
+            pos++;
+        }
+        return Math.min(pos + 1, limit);
+    }
+
+    /**
+     * Returns the end of the line starting at the given index, without the
+     * line terminator.
+     *
+     * @param region The region containing the lines.
+     * @param start The index of the first byte of the line.
+     * @return The index of the new line character ending the line or the
+     * limit of the region.
+     */
+    static int lineEnd(ByteBuffer region, int start) {
+        int pos = start;
+        int limit = region.limit();
+        while (pos < limit && region.get(pos) != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the end of the content of the line, i.e., without the carriage
+     * return preceding the new line character, if any.
+     *
+     * @param region The region containing the lines.
+     * @param start The index of the first byte of the line.
+     * @param end The index of the new line character ending the line.
+     * @return The index after the last byte of the content of the line.
+     */
+    static int contentEnd(ByteBuffer region, int start, int end) {
+        return end > start && region.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+}
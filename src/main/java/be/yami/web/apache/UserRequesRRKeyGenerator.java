@@ -19,6 +19,8 @@ package be.yami.web.apache;
  * limitations under the License.
  * #L%
  */
+import be.yami.ngram.Fingerprints;
+import be.yami.ngram.KeyCache;
 import be.yami.ngram.ObjectKeyGenerator;
 
 /**
@@ -32,6 +34,12 @@ public class UserRequesRRKeyGenerator implements ObjectKeyGenerator<ApacheUserRe
 
     private static UserRequesRRKeyGenerator instance = null;
 
+    private final KeyCache<ApacheUserRequest> cache = new KeyCache<>(KeyCache.DEFAULT_SIZE,
+            (request) -> KeyCache.hash(KeyCache.hash(0, request.getRequestType()), request.getResource()),
+            (a, b) -> KeyCache.same(a.getRequestType(), b.getRequestType())
+            && KeyCache.same(a.getResource(), b.getResource()),
+            ApacheUserRequest::getTypeAndResource);
+
     private UserRequesRRKeyGenerator() {
     }
 
@@ -46,7 +54,14 @@ public class UserRequesRRKeyGenerator implements ObjectKeyGenerator<ApacheUserRe
 
     @Override
     public String generateKey(ApacheUserRequest request) {
-        return String.format("%s %s", request.getRequestType(), request.getResource());
+        return cache.get(request);
+    }
+
+    @Override
+    public long generateFingerprint(ApacheUserRequest request) {
+        long fingerprint = Fingerprints.append(Fingerprints.start(), request.getRequestType());
+        fingerprint = Fingerprints.append(fingerprint, ' ');
+        return Fingerprints.finish(Fingerprints.append(fingerprint, request.getResource()));
     }
 
 }
@@ -21,6 +21,7 @@ package be.yami.web.apache;
  */
 import java.util.Arrays;
 
+import be.yami.ngram.KeyCache;
 import be.yami.ngram.ObjectKeyGenerator;
 
 /**
@@ -35,6 +36,14 @@ public class UserRequesRRNKeyGenerator implements ObjectKeyGenerator<ApacheUserR
 
     private static UserRequesRRNKeyGenerator instance = null;
 
+    private final KeyCache<ApacheUserRequest> cache = new KeyCache<>(KeyCache.DEFAULT_SIZE,
+            (request) -> KeyCache.hash(KeyCache.hash(KeyCache.hash(0, request.getRequestType()),
+                    request.getResource()), request.getParameters()),
+            (a, b) -> KeyCache.same(a.getRequestType(), b.getRequestType())
+            && KeyCache.same(a.getResource(), b.getResource())
+            && KeyCache.same(a.getParameters(), b.getParameters()),
+            UserRequesRRNKeyGenerator::buildKey);
+
     private UserRequesRRNKeyGenerator() {
     }
 
@@ -49,8 +58,11 @@ public class UserRequesRRNKeyGenerator implements ObjectKeyGenerator<ApacheUserR
 
     @Override
     public String generateKey(ApacheUserRequest request) {
-        StringBuilder buff = new StringBuilder(String.format("%s %s?",
-                request.getRequestType(), request.getResource()));
+        return cache.get(request);
+    }
+
+    private static String buildKey(ApacheUserRequest request) {
+        StringBuilder buff = new StringBuilder(request.getTypeAndResource()).append('?');
         String[] parameters = Arrays.copyOf(request.getParameters(),
                 request.getParameters().length);
         Arrays.sort(parameters);
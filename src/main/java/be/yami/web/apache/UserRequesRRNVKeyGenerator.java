@@ -21,6 +21,7 @@ package be.yami.web.apache;
  */
 import java.util.Arrays;
 
+import be.yami.ngram.KeyCache;
 import be.yami.ngram.ObjectKeyGenerator;
 
 /**
@@ -35,6 +36,16 @@ public class UserRequesRRNVKeyGenerator implements ObjectKeyGenerator<ApacheUser
 
     private static UserRequesRRNVKeyGenerator instance = null;
 
+    private final KeyCache<ApacheUserRequest> cache = new KeyCache<>(KeyCache.DEFAULT_SIZE,
+            (request) -> KeyCache.hash(KeyCache.hash(KeyCache.hash(KeyCache.hash(0,
+                    request.getRequestType()), request.getResource()), request.getParameters()),
+                    request.getParametersValues()),
+            (a, b) -> KeyCache.same(a.getRequestType(), b.getRequestType())
+            && KeyCache.same(a.getResource(), b.getResource())
+            && KeyCache.same(a.getParameters(), b.getParameters())
+            && KeyCache.same(a.getParametersValues(), b.getParametersValues()),
+            UserRequesRRNVKeyGenerator::buildKey);
+
     private UserRequesRRNVKeyGenerator() {
     }
 
@@ -48,8 +59,11 @@ public class UserRequesRRNVKeyGenerator implements ObjectKeyGenerator<ApacheUser
 
     @Override
     public String generateKey(ApacheUserRequest request) {
-        StringBuffer buff = new StringBuffer(String.format("%s %s?",
-                request.getRequestType(), request.getResource()));
+        return cache.get(request);
+    }
+
+    private static String buildKey(ApacheUserRequest request) {
+        StringBuilder buff = new StringBuilder(request.getTypeAndResource()).append('?');
         String[] parameters = Arrays.copyOf(request.getParameters(),
                 request.getParameters().length);
         String[] values = Arrays.copyOf(request.getParametersValues(),
@@ -70,7 +84,7 @@ public class UserRequesRRNVKeyGenerator implements ObjectKeyGenerator<ApacheUser
         return buff.toString();
     }
 
-    private void insertionSort(String[] parameters, String[] values) {
+    private static void insertionSort(String[] parameters, String[] values) {
         String x, y;
         int j;
         for (int i = 1; i < parameters.length; i++) {
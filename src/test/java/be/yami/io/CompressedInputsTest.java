@@ -0,0 +1,195 @@
+package be.yami.io;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CompressedInputsTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressedInputsTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private interface Compressor {
+
+        OutputStream wrap(OutputStream out) throws IOException;
+
+    }
+
+    @Test
+    public void testOpenPlain() throws Exception {
+        byte[] content = content(1000);
+        assertArrayEquals("Wrong content!", content,
+                readAll(CompressedInputs.open(new ByteArrayInputStream(content))));
+        assertArrayEquals("Wrong content!", new byte[0],
+                readAll(CompressedInputs.open(new ByteArrayInputStream(new byte[0]))));
+        assertArrayEquals("Wrong content!", new byte[]{0x1f},
+                readAll(CompressedInputs.open(new ByteArrayInputStream(new byte[]{0x1f}))));
+    }
+
+    @Test
+    public void testOpenGzip() throws Exception {
+        // Several chunks
+        byte[] content = content(3 * CompressedInputs.CHUNK_SIZE + 17);
+        byte[] compressed = compress(content, GZIPOutputStream::new);
+        assertEquals("Wrong format!", Compression.GZIP, Compression.detect(compressed, compressed.length));
+        assertArrayEquals("Wrong content!", content,
+                readAll(CompressedInputs.open(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testOpenBzip2() throws Exception {
+        byte[] content = content(100000);
+        byte[] compressed = compress(content, BZip2CompressorOutputStream::new);
+        assertEquals("Wrong format!", Compression.BZIP2, Compression.detect(compressed, compressed.length));
+        assertArrayEquals("Wrong content!", content,
+                readAll(CompressedInputs.open(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testOpenZstd() throws Exception {
+        byte[] content = content(100000);
+        byte[] compressed = compress(content, ZstdCompressorOutputStream::new);
+        assertEquals("Wrong format!", Compression.ZSTD, Compression.detect(compressed, compressed.length));
+        assertArrayEquals("Wrong content!", content,
+                readAll(CompressedInputs.open(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testOpenFile() throws Exception {
+        byte[] content = content(10000);
+        Path file = tmp.newFile("access.log.1.gz").toPath();
+        Files.write(file, compress(content, GZIPOutputStream::new));
+        assertEquals("Wrong format!", Compression.GZIP, CompressedInputs.detect(file));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals("Wrong format!", Compression.GZIP, CompressedInputs.detect(channel));
+            assertEquals("Wrong position!", 0, channel.position());
+        }
+        try (InputStream in = CompressedInputs.open(file)) {
+            assertArrayEquals("Wrong content!", content, readAll(in));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenTruncated() throws Exception {
+        byte[] compressed = compress(content(100000), GZIPOutputStream::new);
+        readAll(CompressedInputs.open(new ByteArrayInputStream(
+                Arrays.copyOf(compressed, compressed.length / 2))));
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+        byte[] compressed = compress(content(4 * CompressedInputs.CHUNK_SIZE), GZIPOutputStream::new);
+        InputStream in = CompressedInputs.open(new ByteArrayInputStream(compressed));
+        assertTrue("Content expected!", in.read() >= 0);
+        in.close();
+        try {
+            in.read();
+            fail("Stream should be closed!");
+        } catch (IOException ex) {
+            LOG.debug("Expected exception: {}", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testCloseLeavesInputOpen() throws Exception {
+        byte[] compressed = compress(content(4 * CompressedInputs.CHUNK_SIZE), GZIPOutputStream::new);
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream input = new ByteArrayInputStream(compressed) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+                super.close();
+            }
+        };
+        InputStream in = CompressedInputs.open(input, false);
+        assertTrue("Content expected!", in.read() >= 0);
+        in.close();
+        assertFalse("Input closed!", closed.get());
+        CompressedInputs.open(input, true).close();
+        assertTrue("Input not closed!", closed.get());
+    }
+
+    private static byte[] content(int size) {
+        Random random = new Random(42);
+        StringBuilder buff = new StringBuilder(size);
+        while (buff.length() < size) {
+            buff.append("line ").append(random.nextInt(1000)).append('\n');
+        }
+        return buff.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] compress(byte[] content, Compressor compressor) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compressor.wrap(bytes)) {
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+}
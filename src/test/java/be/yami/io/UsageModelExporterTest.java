@@ -0,0 +1,112 @@
+package be.yami.io;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.vibes.ts.UsageModel;
+import be.yami.exception.ModelGenerationException;
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
+import be.yami.ngram.Bigram;
+
+public class UsageModelExporterTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UsageModelExporterTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testExport() throws Exception {
+        List<Bigram<MethodCall>> ngrams = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Bigram<MethodCall> bigram = new Bigram<>("Class" + i, ClassMethodKeyGenerator.getInstance());
+            MethodCallSequence seq = new MethodCallSequence("Class" + i);
+            for (int j = 0; j <= i % 5; j++) {
+                seq.add(new MethodCall("Class" + i, "m" + j));
+            }
+            bigram.addTrace(seq);
+            ngrams.add(bigram);
+        }
+        Path folder = tmp.getRoot().toPath().resolve("models");
+        List<UsageModelExporter.Export> exports = new UsageModelExporter(4).export(ngrams, folder);
+        assertEquals("Wrong number of exports!", 50, exports.size());
+        for (int i = 0; i < exports.size(); i++) {
+            UsageModelExporter.Export export = exports.get(i);
+            assertEquals("Wrong order!", "Class" + i, export.getName());
+            assertNull("Unexpected error!", export.getError());
+            assertEquals("Wrong file!", folder.resolve("Class" + i + ".xml"), export.getFile());
+            assertTrue("Missing file!", Files.size(export.getFile()) > 0);
+        }
+    }
+
+    @Test
+    public void testExportError() throws Exception {
+        Bigram<MethodCall> failing = new Bigram<MethodCall>("Failing", ClassMethodKeyGenerator.getInstance()) {
+            @Override
+            public UsageModel getModel() {
+                throw new IllegalStateException("No model");
+            }
+        };
+        Bigram<MethodCall> bigram = new Bigram<>("Working", ClassMethodKeyGenerator.getInstance());
+        List<Bigram<MethodCall>> ngrams = new ArrayList<>();
+        ngrams.add(failing);
+        ngrams.add(bigram);
+        List<UsageModelExporter.Export> exports = new UsageModelExporter(2)
+                .export(ngrams, tmp.getRoot().toPath());
+        assertTrue("Missing error!", exports.get(0).getError() instanceof IllegalStateException);
+        assertNull("Unexpected error!", exports.get(1).getError());
+        assertTrue("Missing file!", Files.exists(exports.get(1).getFile()));
+    }
+
+    @Test(expected = ModelGenerationException.class)
+    public void testExportInvalidFolder() throws Exception {
+        Path file = tmp.newFile("file").toPath();
+        new UsageModelExporter(1).export(new ArrayList<Bigram<MethodCall>>(), file.resolve("models"));
+    }
+
+}
@@ -0,0 +1,174 @@
+package be.yami.java;
+
+import be.yami.exception.SessionBuildException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class BinaryMethodCallsSequenceBuilderTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryMethodCallsSequenceBuilderTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testConvertJson() throws Exception {
+        Path json = tmp.getRoot().toPath().resolve("javacalls.json");
+        try (InputStream is = BinaryMethodCallsSequenceBuilderTest.class.getClassLoader()
+                .getResourceAsStream("javacalls.json")) {
+            Files.copy(is, json);
+        }
+        Path binary = tmp.getRoot().toPath().resolve("javacalls" + BinaryMethodCallsWriter.EXTENSION);
+        BinaryMethodCallsWriter.convert(json, binary);
+        assertTrue("Binary file not smaller!", Files.size(binary) < Files.size(json));
+        List<MethodCallSequence> expected = new ArrayList<>();
+        JsonMethodCallsSequenceBuilder.newInstance().addListener(expected::add).buildSessions(json);
+        List<MethodCallSequence> actual = new ArrayList<>();
+        BinaryMethodCallsSequenceBuilder.newInstance().addListener(actual::add).buildSessions(binary);
+        assertEquals("Wrong sequences!", toString(expected), toString(actual));
+    }
+
+    @Test
+    public void testParallelBlocks() throws Exception {
+        List<MethodCallSequence> expected = generateSequences(2000);
+        Path binary = tmp.getRoot().toPath().resolve("random" + BinaryMethodCallsWriter.EXTENSION);
+        try (BinaryMethodCallsWriter writer = new BinaryMethodCallsWriter(binary, 256)) {
+            expected.forEach(writer::process);
+        }
+        for (int parallelism : new int[]{1, 4}) {
+            List<MethodCallSequence> actual = new ArrayList<>();
+            BinaryMethodCallsSequenceBuilder.newInstance().parallelism(parallelism)
+                    .addListener(actual::add).buildSessions(binary);
+            assertEquals("Wrong sequences!", toString(expected), toString(actual));
+        }
+        // Not mapped
+        List<MethodCallSequence> actual = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(binary)) {
+            BinaryMethodCallsSequenceBuilder.newInstance().addListener(actual::add).buildSessions(in);
+        }
+        assertEquals("Wrong sequences!", toString(expected), toString(actual));
+    }
+
+    @Test
+    public void testFiltered() throws Exception {
+        Path binary = tmp.getRoot().toPath().resolve("filtered" + BinaryMethodCallsWriter.EXTENSION);
+        try (BinaryMethodCallsWriter writer = new BinaryMethodCallsWriter(binary)) {
+            MethodCallSequence seq = new MethodCallSequence("Test");
+            seq.add(new MethodCall("Test", "a", "int"));
+            seq.add(new MethodCall("Test", "b"));
+            writer.process(seq);
+            seq = new MethodCallSequence("Test");
+            seq.add(new MethodCall("Test", "b"));
+            writer.process(seq);
+        }
+        List<MethodCallSequence> actual = new ArrayList<>();
+        BinaryMethodCallsSequenceBuilder builder = BinaryMethodCallsSequenceBuilder.newInstance();
+        builder.exclude((call) -> call.getMethodName().equals("b"));
+        builder.addListener(actual::add).buildSessions(binary);
+        assertEquals("Wrong sequences!", "Test:Test.a(int);", toString(actual));
+    }
+
+    @Test
+    public void testOtherClassRejected() throws Exception {
+        Path binary = tmp.getRoot().toPath().resolve("other" + BinaryMethodCallsWriter.EXTENSION);
+        try (BinaryMethodCallsWriter writer = new BinaryMethodCallsWriter(binary)) {
+            MethodCallSequence seq = new MethodCallSequence("Test");
+            seq.add(new MethodCall("Test", "a", "int"));
+            writer.process(seq);
+            seq = new MethodCallSequence("Test");
+            seq.add(new MethodCall("Test", "b"));
+            seq.add(new MethodCall("Other", "c"));
+            try {
+                writer.process(seq);
+                fail("Sequence with a call of another class should be rejected!");
+            } catch (IllegalArgumentException ex) {
+                LOG.debug("Expected exception: {}", ex.getMessage());
+            }
+        }
+        List<MethodCallSequence> actual = new ArrayList<>();
+        BinaryMethodCallsSequenceBuilder.newInstance().addListener(actual::add).buildSessions(binary);
+        assertEquals("Wrong sequences!", "Test:Test.a(int);", toString(actual));
+    }
+
+    @Test(expected = SessionBuildException.class)
+    public void testInvalidFile() throws Exception {
+        Path file = tmp.newFile("invalid" + BinaryMethodCallsWriter.EXTENSION).toPath();
+        Files.write(file, new byte[]{'{', '}', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ', ' ',
+            ' ', ' ', ' ', ' ', ' ', ' ', ' '});
+        BinaryMethodCallsSequenceBuilder.newInstance().buildSessions(file);
+    }
+
+    @Test(expected = SessionBuildException.class)
+    public void testCorruptedFile() throws Exception {
+        Path binary = tmp.getRoot().toPath().resolve("corrupted" + BinaryMethodCallsWriter.EXTENSION);
+        try (BinaryMethodCallsWriter writer = new BinaryMethodCallsWriter(binary, 64)) {
+            generateSequences(100).forEach(writer::process);
+        }
+        // Offset of the dictionary out of the file
+        byte[] bytes = Files.readAllBytes(binary);
+        bytes[bytes.length - 12] = (byte) 0x7F;
+        Files.write(binary, bytes);
+        BinaryMethodCallsSequenceBuilder.newInstance().buildSessions(binary);
+    }
+
+    private static List<MethodCallSequence> generateSequences(int count) {
+        Random random = new Random(42);
+        List<MethodCallSequence> sequences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String className = "Class" + random.nextInt(20);
+            MethodCallSequence seq = new MethodCallSequence(className);
+            int length = 1 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                String[] params = new String[random.nextInt(3)];
+                for (int k = 0; k < params.length; k++) {
+                    params[k] = random.nextInt(10) == 0 ? null : "java.lang.Type" + random.nextInt(5);
+                }
+                seq.add(new MethodCall(className, random.nextInt(20) == 0 ? null : "m" + random.nextInt(8),
+                        params));
+            }
+            sequences.add(seq);
+        }
+        return sequences;
+    }
+
+    private static String toString(List<MethodCallSequence> sequences) {
+        StringBuilder buff = new StringBuilder();
+        for (MethodCallSequence seq : sequences) {
+            buff.append(seq.getClassName()).append(':');
+            for (MethodCall call : seq) {
+                buff.append(ClassMethodParametersKeyGenerator.getInstance().generateKey(call));
+            }
+            buff.append(';');
+        }
+        return buff.toString();
+    }
+
+}
@@ -0,0 +1,190 @@
+package be.yami.java;
+
+import be.vibes.ts.Transition;
+import be.vibes.ts.UsageModel;
+import be.yami.Sequence;
+import be.yami.exception.ModelGenerationException;
+import be.yami.ngram.Bigram;
+import be.yami.ngram.NGram;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class ConcurrentMultipleModelsProcessorTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrentMultipleModelsProcessorTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+        List<MethodCallSequence> sequences = generateSequences(5000, 200);
+        MultipleModelsProcessor expected = new MultipleModelsProcessor() {
+            @Override
+            protected NGram<MethodCall> buildNewNGram(String name) {
+                return new Bigram<>(name, ClassMethodParametersKeyGenerator.getInstance());
+            }
+        };
+        ConcurrentMultipleModelsProcessor actual = newProcessor(4);
+        for (MethodCallSequence seq : sequences) {
+            expected.process(seq);
+            actual.process(seq);
+        }
+        actual.close();
+        Map<String, Set<String>> expectedModels = models(expected.getNGrams());
+        Map<String, Set<String>> actualModels = models(actual.getNGrams());
+        assertEquals("Wrong number of models!", 200, actualModels.size());
+        assertEquals("Wrong models!", expectedModels, actualModels);
+    }
+
+    @Test
+    public void testAwaitCompletion() throws Exception {
+        ConcurrentMultipleModelsProcessor processor = newProcessor(3);
+        try {
+            List<MethodCallSequence> sequences = generateSequences(100, 10);
+            for (MethodCallSequence seq : sequences.subList(0, 50)) {
+                processor.process(seq);
+            }
+            processor.awaitCompletion();
+            int count = processor.getNGrams().size();
+            assertTrue("Missing models!", count > 0);
+            for (MethodCallSequence seq : sequences.subList(50, 100)) {
+                processor.process(seq);
+            }
+            processor.awaitCompletion();
+            assertTrue("Missing models!", processor.getNGrams().size() >= count);
+        } finally {
+            processor.close();
+        }
+    }
+
+    @Test
+    public void testErrorReportedOnClose() throws Exception {
+        ConcurrentMultipleModelsProcessor processor = new ConcurrentMultipleModelsProcessor(2) {
+            @Override
+            protected NGram<MethodCall> buildNewNGram(String name) {
+                throw new IllegalStateException("No NGram for " + name);
+            }
+        };
+        processor.process(generateSequences(1, 1).get(0));
+        try {
+            processor.close();
+            fail("Exception not reported!");
+        } catch (ModelGenerationException ex) {
+            assertTrue("Wrong cause!", ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testErrorDoesNotBlock() throws Exception {
+        ConcurrentMultipleModelsProcessor processor = new ConcurrentMultipleModelsProcessor(1, 1) {
+            @Override
+            protected NGram<MethodCall> buildNewNGram(String name) {
+                return new Bigram<MethodCall>(name, ClassMethodParametersKeyGenerator.getInstance()) {
+                    @Override
+                    public void addTrace(Sequence<MethodCall> seq) {
+                        throw new StackOverflowError("Failing NGram");
+                    }
+                };
+            }
+        };
+        // More sequences than the capacity of the queue
+        for (MethodCallSequence seq : generateSequences(10, 2)) {
+            processor.process(seq);
+        }
+        try {
+            processor.close();
+            fail("Error not reported!");
+        } catch (ModelGenerationException ex) {
+            assertTrue("Wrong cause!", ex.getCause().getCause() instanceof StackOverflowError);
+        }
+    }
+
+    @Test
+    public void testInterruptionReported() throws Exception {
+        ConcurrentMultipleModelsProcessor processor = newProcessor(1);
+        Thread.currentThread().interrupt();
+        processor.process(generateSequences(1, 1).get(0));
+        assertTrue("Interruption not restored!", Thread.interrupted());
+        try {
+            processor.close();
+            fail("Interruption not reported!");
+        } catch (ModelGenerationException ex) {
+            assertTrue("Wrong cause!", ex.getCause() instanceof ModelGenerationException);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testProcessAfterClose() throws Exception {
+        ConcurrentMultipleModelsProcessor processor = newProcessor(1);
+        processor.close();
+        processor.process(generateSequences(1, 1).get(0));
+    }
+
+    private static ConcurrentMultipleModelsProcessor newProcessor(int parallelism) {
+        return new ConcurrentMultipleModelsProcessor(parallelism, 8) {
+            @Override
+            protected NGram<MethodCall> buildNewNGram(String name) {
+                return new Bigram<>(name, ClassMethodParametersKeyGenerator.getInstance());
+            }
+        };
+    }
+
+    private static List<MethodCallSequence> generateSequences(int count, int classes) {
+        Random random = new Random(42);
+        List<MethodCallSequence> sequences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String className = "Class" + random.nextInt(classes);
+            MethodCallSequence seq = new MethodCallSequence(className);
+            int length = 1 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                seq.add(new MethodCall(className, "m" + random.nextInt(5), "int"));
+            }
+            sequences.add(seq);
+        }
+        return sequences;
+    }
+
+    private static Map<String, Set<String>> models(Set<NGram<MethodCall>> ngrams) throws Exception {
+        Map<String, Set<String>> models = new HashMap<>();
+        for (NGram<MethodCall> ngram : ngrams) {
+            UsageModel model = ngram.getModel();
+            Set<String> transitions = new HashSet<>();
+            Iterator<Transition> it = model.transitions();
+            while (it.hasNext()) {
+                Transition tr = it.next();
+                transitions.add(tr.getSource().getName() + " -" + tr.getAction().getName() + "-> "
+                        + tr.getTarget().getName() + " [" + model.getProbability(tr) + "]");
+            }
+            models.put(ngram.getName(), transitions);
+        }
+        return models;
+    }
+
+}
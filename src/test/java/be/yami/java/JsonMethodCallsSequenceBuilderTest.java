@@ -1,6 +1,9 @@
 package be.yami.java;
 
+import be.yami.exception.SessionBuildException;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
@@ -50,4 +53,51 @@ public class JsonMethodCallsSequenceBuilderTest {
         }
     }
 
+    @Test
+    public void testBuildSessionsFiltered() throws Exception {
+        String json = "{\"Test\": [[{\"methodName\": \"a\", \"params\": [\"int\", null], \"line\": 3},"
+                + " {\"methodName\": \"b\"}], [{\"methodName\": \"b\", \"params\": null}]]}";
+        JsonMethodCallsSequenceBuilder builder = JsonMethodCallsSequenceBuilder.newInstance();
+        List<MethodCallSequence> result = new ArrayList<>();
+        builder.addListener(result::add);
+        builder.exclude((call) -> call.getMethodName().equals("b"));
+        builder.buildSessions(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        // The second sequence is empty once filtered
+        assertThat(result, hasSize(1));
+        assertThat(result.get(0).size(), equalTo(1));
+        MethodCall call = result.get(0).iterator().next();
+        assertThat(call.getMethodName(), equalTo("a"));
+        assertThat(call.parametersCount(), equalTo(2));
+        assertThat(call.getParameterType(0), equalTo("int"));
+    }
+
+    @Test
+    public void testBuildSessionsLenient() throws Exception {
+        String json = "{Test: [[{methodName: 'a', params: ['int']}; {methodName: b}]]}";
+        JsonMethodCallsSequenceBuilder builder = JsonMethodCallsSequenceBuilder.newInstance();
+        List<MethodCallSequence> result = new ArrayList<>();
+        builder.addListener(result::add);
+        builder.buildSessions(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertThat(result, hasSize(1));
+        assertThat(result.get(0).getClassName(), equalTo("Test"));
+        assertThat(result.get(0).size(), equalTo(2));
+    }
+
+    @Test
+    public void testBuildSessionsStreamed() throws Exception {
+        // Sequences are given to the listeners before the end of the input
+        String json = "{\"Test\": [[{\"methodName\": \"a\", \"params\": []}], "
+                + "[{\"methodName\": \"b\", \"params\": []}], [{\"methodName\": ";
+        JsonMethodCallsSequenceBuilder builder = JsonMethodCallsSequenceBuilder.newInstance();
+        List<MethodCallSequence> result = new ArrayList<>();
+        builder.addListener(result::add);
+        try {
+            builder.buildSessions(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            fail("Truncated input should not be read!");
+        } catch (SessionBuildException ex) {
+            LOG.debug("Expected exception: {}", ex.getMessage());
+        }
+        assertThat(result, hasSize(2));
+    }
+
 }
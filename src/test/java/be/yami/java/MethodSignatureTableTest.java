@@ -0,0 +1,93 @@
+package be.yami.java;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class MethodSignatureTableTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodSignatureTableTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testSharedCalls() {
+        MethodSignatureTable table = new MethodSignatureTable();
+        MethodCall call = table.get("Test", "m", Arrays.asList("int", "java.lang.String"));
+        assertSame("Call not shared!", call, table.get(new String("Test"), "m",
+                new ArrayList<>(Arrays.asList("int", "java.lang.String"))));
+        assertNotSame("Wrong call!", call, table.get("Test", "m", Arrays.asList("int")));
+        assertNotSame("Wrong call!", call, table.get("Test", "n", Arrays.asList("int", "java.lang.String")));
+        MethodCall nullCall = table.get(null, null, Arrays.asList((String) null));
+        assertSame("Call not shared!", nullCall, table.get(null, null, Arrays.asList((String) null)));
+        assertEquals("Wrong number of signatures!", 4, table.size());
+        // Names are shared
+        assertSame("Name not shared!", call.getMethodClass(),
+                table.get(new String("Test"), "o", Arrays.asList()).getMethodClass());
+    }
+
+    @Test
+    public void testCopiedTypes() {
+        MethodSignatureTable table = new MethodSignatureTable();
+        List<String> types = new ArrayList<>(Arrays.asList("int"));
+        MethodCall call = table.get("Test", "m", types);
+        types.add("long");
+        assertEquals("Wrong number of parameters!", 1, call.parametersCount());
+        assertSame("Call not shared!", call, table.get("Test", "m", Arrays.asList("int")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutableCall() {
+        MethodCall call = new MethodCall("Test", "m", "int");
+        Iterator<String> it = call.parameters();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testKeysCached() {
+        MethodSignatureTable table = new MethodSignatureTable();
+        MethodCall call = table.get("Test", "m", Arrays.asList("int"));
+        String key = ClassMethodParametersKeyGenerator.getInstance().generateKey(call);
+        assertEquals("Wrong key!", "Test.m(int)", key);
+        assertSame("Key not cached!", key,
+                ClassMethodParametersKeyGenerator.getInstance().generateKey(call));
+        key = ClassMethodKeyGenerator.getInstance().generateKey(call);
+        assertEquals("Wrong key!", "Test.m", key);
+        assertSame("Key not cached!", key, ClassMethodKeyGenerator.getInstance().generateKey(
+                table.get("Test", "m", Arrays.asList("long"))));
+    }
+
+    @Test
+    public void testJsonCallsShared() throws Exception {
+        InputStream is = MethodSignatureTableTest.class.getClassLoader().getResourceAsStream("javacalls.json");
+        List<MethodCallSequence> result = new ArrayList<>();
+        JsonMethodCallsSequenceBuilder.newInstance().addListener(result::add).buildSessions(is);
+        // Both sequences of java.lang.IllegalStateException call <init>(java.lang.String)
+        assertSame("Call not shared!", result.get(0).iterator().next(), result.get(1).iterator().next());
+    }
+
+}
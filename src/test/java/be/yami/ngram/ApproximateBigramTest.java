@@ -0,0 +1,155 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.vibes.ts.Transition;
+import be.vibes.ts.UsageModel;
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
+import be.yami.web.apache.ApacheUserRequest;
+import be.yami.web.apache.UserRequesRRKeyGenerator;
+
+public class ApproximateBigramTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApproximateBigramTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testSameAsBigramWithinCapacity() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(300, 10);
+        Bigram<MethodCall> bigram = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        ApproximateBigram<MethodCall> approximate = new ApproximateBigram<>("test",
+                ClassMethodKeyGenerator.getInstance(), 10);
+        for (MethodCallSequence trace : traces) {
+            bigram.addTrace(trace);
+            approximate.addTrace(trace);
+        }
+        UsageModel expected = bigram.getModel();
+        UsageModel actual = approximate.getModel();
+        assertEquals("Wrong number of states!", expected.getStatesCount(), actual.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expected, false),
+                NGramTestUtils.transitions(actual, false));
+    }
+
+    @Test
+    public void testHeavyHitters() throws Exception {
+        ApproximateBigram<ApacheUserRequest> approximate = new ApproximateBigram<>("test",
+                UserRequesRRKeyGenerator.getInstance(), 4);
+        for (int i = 0; i < 5000; i++) {
+            // Unique search terms and a few frequent pages
+            approximate.addTrace(NGramTestUtils.session(i * 60000L, "/home", "/search/" + i, "/cart",
+                    i % 10 == 0 ? "/pay" : "/home"));
+        }
+        Set<String> monitored = new HashSet<>();
+        approximate.getMonitoredKeys().forEach(monitored::add);
+        assertTrue("Wrong number of monitored keys!", monitored.size() <= 4);
+        assertTrue("Missing frequent key!", monitored.contains("GET /home"));
+        assertTrue("Missing frequent key!", monitored.contains("GET /cart"));
+        assertTrue("Missing frequent key!", monitored.contains("GET /pay"));
+        UsageModel model = approximate.getModel();
+        assertTrue("Wrong number of states!", model.getStatesCount() <= 4 + 3);
+        assertTrue("Wrong number of transitions!", approximate.getTransitionsCount() <= 6 * 6);
+        Set<String> transitions = NGramTestUtils.transitions(model, true);
+        LOG.debug("Transitions: {}", transitions);
+        assertTrue("Missing transition to other state!", transitions.stream()
+                .anyMatch((tr) -> tr.startsWith("GET /home -other-> other ")));
+        assertTrue("Missing transition from other state!",
+                transitions.contains("other -GET /cart-> GET /cart [1.0]"));
+    }
+
+    @Test
+    public void testEvictedKeyFolded() throws Exception {
+        ApproximateBigram<ApacheUserRequest> approximate = new ApproximateBigram<>("test",
+                UserRequesRRKeyGenerator.getInstance(), 2);
+        approximate.addTrace(NGramTestUtils.session(0, "/rare", "/a"));
+        for (int i = 0; i < 10; i++) {
+            approximate.addTrace(NGramTestUtils.session(i * 60000L, "/a", "/b"));
+        }
+        Set<String> monitored = new HashSet<>();
+        approximate.getMonitoredKeys().forEach(monitored::add);
+        assertFalse("Rare key monitored!", monitored.contains("GET /rare"));
+        // All the traces are still counted from the initial state
+        int total = 0;
+        Iterator<Transition> it = approximate.getModel().transitions();
+        while (it.hasNext()) {
+            Transition tr = it.next();
+            if (tr.getSource().getName().equals(Bigram.START_STATE_ID)) {
+                total++;
+                if (tr.getAction().getName().equals(ApproximateBigram.OTHER_ACTION)) {
+                    assertEquals("Wrong target state!", ApproximateBigram.OTHER_STATE_ID,
+                            tr.getTarget().getName());
+                }
+            }
+        }
+        assertEquals("Wrong number of transitions from initial state!", 2, total);
+    }
+
+    @Test
+    public void testPreviousKeyEvicted() throws Exception {
+        // A single counter in the sketch: the estimate of b is higher than the count of a
+        ApproximateBigram<ApacheUserRequest> approximate = new ApproximateBigram<>("test",
+                UserRequesRRKeyGenerator.getInstance(), 1, 1, 1);
+        approximate.addTrace(NGramTestUtils.session(0, "/a", "/b"));
+        Set<String> monitored = new HashSet<>();
+        approximate.getMonitoredKeys().forEach(monitored::add);
+        assertEquals("Wrong monitored keys!", Collections.singleton("GET /b"), monitored);
+        Set<String> expected = new HashSet<>(Arrays.asList(
+                "sX -epsilon-> s0 [1.0]",
+                "s0 -other-> sOther [1.0]",
+                "sOther -GET /b-> s1 [1.0]",
+                "s1 -epsilon-> sX [1.0]"));
+        assertEquals("Wrong transitions!", expected,
+                NGramTestUtils.transitions(approximate.getModel(), false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new ApproximateBigram<>("test", ClassMethodKeyGenerator.getInstance(), 0);
+    }
+
+}
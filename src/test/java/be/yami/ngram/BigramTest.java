@@ -22,16 +22,30 @@ package be.yami.ngram;
 import be.yami.ngram.Bigram;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
 import be.yami.web.UserSessionProcessor;
 import be.yami.web.apache.ApacheUserRequest;
 import be.yami.web.apache.ApacheUserSession;
@@ -55,6 +69,9 @@ public class BigramTest {
 
     };
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
 	@Test
     public void testBigramConstruction() throws Exception {
         final Bigram<ApacheUserRequest> bigram = new Bigram<>("test", UserRequesRRNKeyGenerator.getInstance());
@@ -75,4 +92,214 @@ public class BigramTest {
 
     }
 
+    @Test
+    public void testBigramSaveRestoreState() throws Exception {
+        final Bigram<ApacheUserRequest> bigram = new Bigram<>("test", UserRequesRRNKeyGenerator.getInstance());
+        ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance();
+        builder.addListener((UserSessionProcessor<ApacheUserSession>) (ApacheUserSession session) -> {
+            bigram.addTrace(session);
+        });
+        InputStream in = ApacheUserSessionBuilderTest.class.getClassLoader().getResourceAsStream("test.log");
+        assertNotNull("Test file ''test.log'' not found!", in);
+        builder.buildSessions(in);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bigram.saveState(new DataOutputStream(bytes));
+        Bigram<ApacheUserRequest> restored = new Bigram<>("test", UserRequesRRNKeyGenerator.getInstance());
+        restored.restoreState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        UsageModel expected = bigram.getModel();
+        UsageModel model = restored.getModel();
+        assertEquals("Wrong start state!", Bigram.START_STATE_ID, model.getInitialState().getName());
+        assertEquals("Wrong number of states!", expected.getStatesCount(), model.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expected, false),
+                NGramTestUtils.transitions(model, false));
+    }
+
+    @Test
+    public void testBigramMerge() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(3000, 30);
+        Bigram<MethodCall> expected = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces) {
+            expected.addTrace(trace);
+        }
+        // Partial models, e.g., one for each day, saved by other processes
+        Bigram<MethodCall> merged = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (int part = 0; part < 3; part++) {
+            Bigram<MethodCall> partial = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+            for (MethodCallSequence trace : traces.subList(part * 1000, (part + 1) * 1000)) {
+                partial.addTrace(trace);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            partial.saveState(new DataOutputStream(bytes));
+            Bigram<MethodCall> restored = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+            restored.restoreState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            merged.merge(restored);
+        }
+        UsageModel expectedModel = expected.getModel();
+        UsageModel model = merged.getModel();
+        assertEquals("Wrong number of states!", expectedModel.getStatesCount(), model.getStatesCount());
+        assertEquals("Wrong number of transitions!", expectedModel.getTransitionsCount(),
+                model.getTransitionsCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expectedModel, true),
+                NGramTestUtils.transitions(model, true));
+    }
+
+
+    @Test
+    public void testBigramSaveRestoreLongKey() throws Exception {
+        // Longer than the 64 KB of DataOutput.writeUTF
+        char[] name = new char[70000];
+        Arrays.fill(name, 'm');
+        MethodCallSequence trace = new MethodCallSequence("Test");
+        trace.add(new MethodCall("Test", new String(name)));
+        trace.add(new MethodCall("Test", "m"));
+        Bigram<MethodCall> bigram = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        bigram.addTrace(trace);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bigram.saveState(new DataOutputStream(bytes));
+        Bigram<MethodCall> restored = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        restored.restoreState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(bigram.getModel(), false),
+                NGramTestUtils.transitions(restored.getModel(), false));
+    }
+
+    @Test
+    public void testBigramSnapshot() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(3000, 30);
+        Bigram<MethodCall> expected = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces) {
+            expected.addTrace(trace);
+        }
+        // Yesterday's run
+        Bigram<MethodCall> previous = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces.subList(0, 2000)) {
+            previous.addTrace(trace);
+        }
+        Path file = tmp.newFile("test.snapshot").toPath();
+        previous.saveSnapshot(file);
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        previous.saveState(new DataOutputStream(state));
+        assertTrue("Snapshot not compact!", Files.size(file) < state.size());
+        // Today's run
+        Bigram<MethodCall> loaded = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        loaded.loadSnapshot(file);
+        for (MethodCallSequence trace : traces.subList(2000, traces.size())) {
+            loaded.addTrace(trace);
+        }
+        UsageModel expectedModel = expected.getModel();
+        UsageModel model = loaded.getModel();
+        assertEquals("Wrong number of states!", expectedModel.getStatesCount(), model.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expectedModel, false),
+                NGramTestUtils.transitions(model, false));
+    }
+
+    @Test(expected = IOException.class)
+    public void testBigramInvalidSnapshot() throws Exception {
+        Path file = tmp.newFile("invalid.snapshot").toPath();
+        Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+        new Bigram<>("test", ClassMethodKeyGenerator.getInstance()).loadSnapshot(file);
+    }
+
+    @Test
+    public void testBigramTruncatedSnapshot() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(3000, 30);
+        Bigram<MethodCall> bigram = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces.subList(0, 2000)) {
+            bigram.addTrace(trace);
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        bigram.saveState(new DataOutputStream(expected));
+        Bigram<MethodCall> other = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces.subList(2000, traces.size())) {
+            other.addTrace(trace);
+        }
+        Path file = tmp.newFile("test.snapshot").toPath();
+        other.saveSnapshot(file);
+        byte[] snapshot = Files.readAllBytes(file);
+        byte[] truncated = Arrays.copyOf(snapshot, snapshot.length - 3);
+        Files.write(file, truncated);
+        try {
+            bigram.loadSnapshot(file);
+            fail("Truncated snapshot loaded!");
+        } catch (IOException ex) {
+            LOG.debug("Expected exception: {}", ex.getMessage());
+        }
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        bigram.saveState(new DataOutputStream(state));
+        assertArrayEquals("Bigram changed!", expected.toByteArray(), state.toByteArray());
+        // Same for a checkpoint
+        ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(checkpoint);
+        out.writeInt(truncated.length);
+        out.write(truncated);
+        try {
+            bigram.restoreState(new DataInputStream(new ByteArrayInputStream(checkpoint.toByteArray())));
+            fail("Truncated state restored!");
+        } catch (IOException ex) {
+            LOG.debug("Expected exception: {}", ex.getMessage());
+        }
+        state.reset();
+        bigram.saveState(new DataOutputStream(state));
+        assertArrayEquals("Bigram changed!", expected.toByteArray(), state.toByteArray());
+    }
+
+    @Test
+    public void testBigramIncrementalModel() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(3000, 30);
+        Bigram<MethodCall> expected = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces) {
+            expected.addTrace(trace);
+        }
+        Bigram<MethodCall> live = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        UsageModel model = null;
+        for (int i = 0; i < traces.size(); i++) {
+            live.addTrace(traces.get(i));
+            if (i % 500 == 0) {
+                // Published periodically
+                model = live.getModel();
+            }
+        }
+        assertSame("Model not updated in place!", model, live.getModel());
+        UsageModel expectedModel = expected.getModel();
+        assertEquals("Wrong number of states!", expectedModel.getStatesCount(), model.getStatesCount());
+        assertEquals("Wrong number of transitions!", expectedModel.getTransitionsCount(),
+                model.getTransitionsCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expectedModel, false),
+                NGramTestUtils.transitions(model, false));
+    }
+
+    @Test
+    public void testBigramModelAfterRestore() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(3000, 30);
+        Bigram<MethodCall> saved = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces.subList(2000, traces.size())) {
+            saved.addTrace(trace);
+        }
+        UsageModel expectedModel = saved.getModel();
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        saved.saveState(new DataOutputStream(state));
+        Path file = tmp.newFile("test.snapshot").toPath();
+        saved.saveSnapshot(file);
+        Bigram<MethodCall> live = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces.subList(0, 2000)) {
+            live.addTrace(trace);
+        }
+        live.getModel();
+        // Restored state
+        live.restoreState(new DataInputStream(new ByteArrayInputStream(state.toByteArray())));
+        UsageModel model = live.getModel();
+        assertEquals("Wrong number of states!", expectedModel.getStatesCount(), model.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expectedModel, false),
+                NGramTestUtils.transitions(model, false));
+        // Loaded snapshot
+        live.addTrace(traces.get(0));
+        live.getModel();
+        live.loadSnapshot(file);
+        model = live.getModel();
+        assertEquals("Wrong number of states!", expectedModel.getStatesCount(), model.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expectedModel, false),
+                NGramTestUtils.transitions(model, false));
+    }
+
 }
@@ -0,0 +1,118 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.vibes.ts.UsageModel;
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
+
+public class ConcurrentBigramTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrentBigramTest.class);
+
+    private static final int THREADS = 8;
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testSameAsBigram() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(20, 5);
+        Bigram<MethodCall> bigram = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        ConcurrentBigram<MethodCall> concurrent = new ConcurrentBigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces) {
+            bigram.addTrace(trace);
+            concurrent.addTrace(trace);
+        }
+        UsageModel expected = bigram.getModel();
+        UsageModel actual = concurrent.getModel();
+        assertEquals("Wrong start state!", Bigram.START_STATE_ID, actual.getInitialState().getName());
+        assertNotNull("No end state!", actual.getState(Bigram.END_STATE_ID));
+        assertEquals("Wrong number of states!", expected.getStatesCount(), actual.getStatesCount());
+        // Keys are seen in the same order, state names are the same
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expected, false),
+                NGramTestUtils.transitions(actual, false));
+    }
+
+    @Test
+    public void testConcurrentAddTrace() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(20000, 50);
+        Bigram<MethodCall> bigram = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces) {
+            bigram.addTrace(trace);
+        }
+        final ConcurrentBigram<MethodCall> concurrent = new ConcurrentBigram<>("test",
+                ClassMethodKeyGenerator.getInstance());
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int first = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = first; i < traces.size(); i += THREADS) {
+                        concurrent.addTrace(traces.get(i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        UsageModel expected = bigram.getModel();
+        UsageModel actual = concurrent.getModel();
+        assertEquals("Wrong number of states!", expected.getStatesCount(), actual.getStatesCount());
+        assertEquals("Wrong number of transitions!", expected.getTransitionsCount(), actual.getTransitionsCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expected, true),
+                NGramTestUtils.transitions(actual, true));
+    }
+
+}
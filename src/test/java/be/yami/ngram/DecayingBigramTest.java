@@ -0,0 +1,166 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.vibes.ts.Transition;
+import be.vibes.ts.UsageModel;
+import be.yami.web.apache.ApacheUserRequest;
+import be.yami.web.apache.ApacheUserSession;
+import be.yami.web.apache.UserRequesRRKeyGenerator;
+
+public class DecayingBigramTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DecayingBigramTest.class);
+
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testSameAsBigramInWindow() throws Exception {
+        Bigram<ApacheUserRequest> bigram = new Bigram<>("test", UserRequesRRKeyGenerator.getInstance());
+        DecayingBigram<ApacheUserRequest> decaying = newDecayingBigram(7);
+        List<String> pages = Arrays.asList("/a", "/b", "/c", "/d");
+        for (int i = 0; i < 500; i++) {
+            ApacheUserSession session = NGramTestUtils.session(i * 60000L, pages.get(i % 4),
+                    pages.get(i % 3), pages.get(i % 2));
+            bigram.addTrace(session);
+            decaying.addTrace(session);
+        }
+        UsageModel expected = bigram.getModel();
+        UsageModel actual = decaying.getModel();
+        assertEquals("Wrong number of states!", expected.getStatesCount(), actual.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expected, false),
+                NGramTestUtils.transitions(actual, false));
+    }
+
+    @Test
+    public void testSlidingWindow() throws Exception {
+        DecayingBigram<ApacheUserRequest> decaying = newDecayingBigram(7);
+        for (int day = 0; day < 3; day++) {
+            decaying.addTrace(NGramTestUtils.session(day * DAY, "/a", "/old"));
+        }
+        assertTrue("Missing old transition!", actions(decaying.getModel()).contains("GET /old"));
+        for (int day = 7; day < 9; day++) {
+            decaying.addTrace(NGramTestUtils.session(day * DAY, "/a", "/new"));
+        }
+        // Day 2 still in the window
+        String actions = actions(decaying.getModel());
+        assertTrue("Missing old transition!", actions.contains("GET /old"));
+        assertTrue("Missing new transition!", actions.contains("GET /new"));
+        decaying.addTrace(NGramTestUtils.session(9 * DAY, "/a", "/new"));
+        actions = actions(decaying.getModel());
+        assertFalse("Transition not expired!", actions.contains("GET /old"));
+        assertTrue("Missing new transition!", actions.contains("GET /new"));
+        // s0 -> a, a -> new, new -> sX
+        assertEquals("Wrong number of transitions!", 3, decaying.getTransitionsCount());
+        assertEquals("Expired state not removed!", 2, decaying.getStatesCount());
+        // Older than the window
+        decaying.addTrace(NGramTestUtils.session(2 * DAY, "/a", "/old"));
+        assertFalse("Old transition added!", actions(decaying.getModel()).contains("GET /old"));
+        assertEquals("Old state added!", 2, decaying.getStatesCount());
+    }
+
+    @Test
+    public void testTraceStraddlingWindow() throws Exception {
+        DecayingBigram<ApacheUserRequest> decaying = newDecayingBigram(7);
+        decaying.addTrace(NGramTestUtils.session(9 * DAY, "/x"));
+        // Starts before the window (days 3 to 9)
+        ApacheUserSession session = NGramTestUtils.session(2 * DAY, "/old");
+        for (ApacheUserRequest request : NGramTestUtils.session(5 * DAY, "/a", "/b")) {
+            session.enqueue(request);
+        }
+        decaying.addTrace(session);
+        Set<String> transitions = NGramTestUtils.transitions(decaying.getModel(), true);
+        assertEquals("Wrong transitions!", new HashSet<>(Arrays.asList(
+                "sX -epsilon-> s0 [1.0]",
+                "s0 -GET /x-> GET /x [0.5]",
+                "GET /x -epsilon-> sX [1.0]",
+                "s0 -GET /a-> GET /a [0.5]",
+                "GET /a -GET /b-> GET /b [1.0]",
+                "GET /b -epsilon-> sX [1.0]")), transitions);
+        assertEquals("Old state added!", 3, decaying.getStatesCount());
+    }
+
+    @Test
+    public void testAllBucketsExpired() throws Exception {
+        DecayingBigram<ApacheUserRequest> decaying = newDecayingBigram(3);
+        for (int i = 0; i < 100; i++) {
+            decaying.addTrace(NGramTestUtils.session(i * 3600000L, "/a", "/b" + i));
+        }
+        // /a and the /b of days 2 to 4
+        assertEquals("Wrong number of states!", 1 + 52, decaying.getStatesCount());
+        decaying.addTrace(NGramTestUtils.session(100 * DAY, "/c"));
+        assertEquals("Wrong number of transitions!", 2, decaying.getTransitionsCount());
+        assertEquals("Expired states not removed!", 1, decaying.getStatesCount());
+        assertEquals("Wrong model!", "GET /c,epsilon,epsilon,", actions(decaying.getModel()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBuckets() {
+        newDecayingBigram(0);
+    }
+
+    private static DecayingBigram<ApacheUserRequest> newDecayingBigram(int days) {
+        return new DecayingBigram<>("test", UserRequesRRKeyGenerator.getInstance(),
+                (request) -> request.getTime().getTime(), DAY, days);
+    }
+
+    /**
+     * Returns the sorted actions of the transitions of the model.
+     */
+    private static String actions(UsageModel model) {
+        List<String> actions = new ArrayList<>();
+        Iterator<Transition> it = model.transitions();
+        while (it.hasNext()) {
+            actions.add(it.next().getAction().getName());
+        }
+        Collections.sort(actions);
+        return String.join(",", actions) + ",";
+    }
+
+}
@@ -0,0 +1,133 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.vibes.ts.UsageModel;
+import be.yami.exception.ModelGenerationException;
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.ClassMethodParametersKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
+import be.yami.web.apache.ApacheUserRequest;
+import be.yami.web.apache.UserRequesRRKeyGenerator;
+import be.yami.web.apache.UserRequesRRNVKeyGenerator;
+
+public class FingerprintBigramTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FingerprintBigramTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testSameAsBigram() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(500, 30);
+        Bigram<MethodCall> bigram = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        FingerprintBigram<MethodCall> fingerprint = new FingerprintBigram<>("test",
+                ClassMethodKeyGenerator.getInstance(), true);
+        for (MethodCallSequence trace : traces) {
+            bigram.addTrace(trace);
+            fingerprint.addTrace(trace);
+        }
+        UsageModel expected = bigram.getModel();
+        UsageModel actual = fingerprint.getModel();
+        assertEquals("Wrong number of keys!", 30, fingerprint.getKeysCount());
+        assertEquals("Wrong number of states!", expected.getStatesCount(), actual.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expected, false),
+                NGramTestUtils.transitions(actual, false));
+    }
+
+    @Test
+    public void testFingerprintOfKey() {
+        MethodCall[] calls = {new MethodCall("Test", "m"), new MethodCall("Test", "m", "int", "String"),
+            new MethodCall(null, "m", (String) null)};
+        for (MethodCall call : calls) {
+            assertEquals("Wrong fingerprint!",
+                    Fingerprints.of(ClassMethodKeyGenerator.getInstance().generateKey(call)),
+                    ClassMethodKeyGenerator.getInstance().generateFingerprint(call));
+            assertEquals("Wrong fingerprint!",
+                    Fingerprints.of(ClassMethodParametersKeyGenerator.getInstance().generateKey(call)),
+                    ClassMethodParametersKeyGenerator.getInstance().generateFingerprint(call));
+        }
+        ApacheUserRequest request = new ApacheUserRequest("127.0.0.1", new Date(), "GET",
+                "/index.php", new String[]{"q"}, new String[]{"a"});
+        assertEquals("Wrong fingerprint!",
+                Fingerprints.of(UserRequesRRKeyGenerator.getInstance().generateKey(request)),
+                UserRequesRRKeyGenerator.getInstance().generateFingerprint(request));
+        assertEquals("Wrong fingerprint!",
+                Fingerprints.of(UserRequesRRNVKeyGenerator.getInstance().generateKey(request)),
+                UserRequesRRNVKeyGenerator.getInstance().generateFingerprint(request));
+        assertTrue("Same fingerprints!", Fingerprints.of("Test.m") != Fingerprints.of("Test.n"));
+    }
+
+    @Test(expected = ModelGenerationException.class)
+    public void testCollisionDetected() throws Exception {
+        FingerprintBigram<MethodCall> fingerprint = new FingerprintBigram<>("test",
+                new CollidingKeyGenerator(), true);
+        fingerprint.addTrace(NGramTestUtils.trace("a", "b"));
+    }
+
+    @Test
+    public void testCollisionMerged() throws Exception {
+        FingerprintBigram<MethodCall> fingerprint = new FingerprintBigram<>("test",
+                new CollidingKeyGenerator());
+        fingerprint.addTrace(NGramTestUtils.trace("a", "b"));
+        assertEquals("Wrong number of keys!", 1, fingerprint.getKeysCount());
+    }
+
+    /**
+     * Gives the same fingerprint to all the keys.
+     */
+    private static class CollidingKeyGenerator implements ObjectKeyGenerator<MethodCall> {
+
+        @Override
+        public String generateKey(MethodCall call) {
+            return ClassMethodKeyGenerator.getInstance().generateKey(call);
+        }
+
+        @Override
+        public long generateFingerprint(MethodCall call) {
+            return 42;
+        }
+
+    }
+
+}
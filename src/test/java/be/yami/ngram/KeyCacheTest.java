@@ -0,0 +1,109 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.ClassMethodParametersKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.web.apache.ApacheUserRequest;
+import be.yami.web.apache.UserRequesRRNVKeyGenerator;
+
+public class KeyCacheTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyCacheTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testCachedKey() {
+        AtomicInteger generated = new AtomicInteger();
+        KeyCache<String[]> cache = new KeyCache<>(16, (values) -> KeyCache.hash(0, values),
+                KeyCache::same, (values) -> {
+                    generated.incrementAndGet();
+                    return String.join(",", values);
+                });
+        String key = cache.get(new String[]{"a", "b"});
+        assertEquals("Wrong key!", "a,b", key);
+        assertSame("Key not cached!", key, cache.get(new String[]{"a", "b"}));
+        assertEquals("Wrong number of generated keys!", 1, generated.get());
+        assertEquals("Wrong key!", "b,a", cache.get(new String[]{"b", "a"}));
+        assertEquals("Wrong key!", "a,null", cache.get(new String[]{"a", null}));
+    }
+
+    @Test
+    public void testCollisions() {
+        // All the objects have the same slot
+        KeyCache<String> cache = new KeyCache<>(1, (value) -> 0, KeyCache::same,
+                (value) -> "key-" + value);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Wrong key!", "key-" + (i % 3), cache.get(Integer.toString(i % 3)));
+        }
+    }
+
+    @Test
+    public void testKeyGenerators() {
+        MethodCall call = new MethodCall("Test", "m", "int", "String");
+        assertEquals("Wrong key!", "Test.m", ClassMethodKeyGenerator.getInstance().generateKey(call));
+        assertEquals("Wrong key!", "Test.m(int,String)",
+                ClassMethodParametersKeyGenerator.getInstance().generateKey(call));
+        assertEquals("Wrong key!", "Test.m(int)", ClassMethodParametersKeyGenerator.getInstance()
+                .generateKey(new MethodCall("Test", "m", "int")));
+        assertEquals("Wrong key!", "null.m()", ClassMethodParametersKeyGenerator.getInstance()
+                .generateKey(new MethodCall(null, "m")));
+        UserRequesRRNVKeyGenerator gen = UserRequesRRNVKeyGenerator.getInstance();
+        String key = gen.generateKey(request("b", "a"));
+        assertEquals("Wrong key!", "GET /index.php?p=b&q=a", key);
+        assertSame("Key not cached!", key, gen.generateKey(request("b", "a")));
+        assertEquals("Wrong key!", "GET /index.php?p=a&q=b", gen.generateKey(request("a", "b")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new KeyCache<String>(0, String::hashCode, KeyCache::same, (value) -> value);
+    }
+
+    private static ApacheUserRequest request(String p, String q) {
+        return new ApacheUserRequest("127.0.0.1", new Date(), "GET", "/index.php",
+                new String[]{"q", "p"}, new String[]{q, p});
+    }
+
+}
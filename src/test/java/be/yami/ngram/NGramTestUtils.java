@@ -0,0 +1,117 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import be.vibes.ts.Action;
+import be.vibes.ts.Transition;
+import be.vibes.ts.UsageModel;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
+import be.yami.web.apache.ApacheUserRequest;
+import be.yami.web.apache.ApacheUserSession;
+
+/**
+ * Fixtures shared by the tests of the NGrams.
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+final class NGramTestUtils {
+
+    private NGramTestUtils() {
+    }
+
+    /**
+     * Generates traces of calls to the methods of a class.
+     */
+    static List<MethodCallSequence> generateTraces(int count, int methods) {
+        Random random = new Random(42);
+        List<MethodCallSequence> traces = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MethodCallSequence trace = new MethodCallSequence("Test");
+            int length = 1 + random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                trace.add(new MethodCall("Test", "m" + random.nextInt(methods)));
+            }
+            traces.add(trace);
+        }
+        return traces;
+    }
+
+    /**
+     * Returns the transitions of the given model with their probabilities. If
+     * needed, the names of the states are replaced by the action of their
+     * incoming transitions, i.e., the key of the state.
+     */
+    static Set<String> transitions(UsageModel model, boolean byKey) {
+        Map<String, String> keys = new HashMap<>();
+        Iterator<Transition> it = model.transitions();
+        while (byKey && it.hasNext()) {
+            Transition tr = it.next();
+            if (!tr.getAction().getName().equals(Action.EPSILON_ACTION)) {
+                keys.put(tr.getTarget().getName(), tr.getAction().getName());
+            }
+        }
+        Set<String> transitions = new HashSet<>();
+        it = model.transitions();
+        while (it.hasNext()) {
+            Transition tr = it.next();
+            transitions.add(keys.getOrDefault(tr.getSource().getName(), tr.getSource().getName())
+                    + " -" + tr.getAction().getName() + "-> "
+                    + keys.getOrDefault(tr.getTarget().getName(), tr.getTarget().getName())
+                    + " [" + model.getProbability(tr) + "]");
+        }
+        return transitions;
+    }
+
+    /**
+     * Returns a trace of calls to the given methods of a class.
+     */
+    static MethodCallSequence trace(String... methods) {
+        MethodCallSequence trace = new MethodCallSequence("Test");
+        for (String method : methods) {
+            trace.add(new MethodCall("Test", method));
+        }
+        return trace;
+    }
+
+    /**
+     * Returns a session of the given resources, requested one second apart
+     * from the given time.
+     */
+    static ApacheUserSession session(long time, String... resources) {
+        ApacheUserSession session = new ApacheUserSession("1.1.1.1");
+        for (int i = 0; i < resources.length; i++) {
+            session.enqueue(new ApacheUserRequest("1.1.1.1", new Date(time + i * 1000), "GET",
+                    resources[i], new String[0], new String[0]));
+        }
+        return session;
+    }
+
+}
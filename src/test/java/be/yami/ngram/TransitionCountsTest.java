@@ -0,0 +1,157 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TransitionCountsTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransitionCountsTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testAdd() {
+        TransitionCounts counts = new TransitionCounts();
+        counts.add("s0", "a", "s1", 1);
+        counts.add("s0", "a", "s1", 1);
+        counts.add("s0", "b", "s1", 1);
+        counts.add("s1", "a", "s0", 3);
+        assertEquals("Wrong count!", 2, counts.count("s0", "a", "s1"));
+        assertEquals("Wrong count!", 1, counts.count("s0", "b", "s1"));
+        assertEquals("Wrong count!", 3, counts.count("s1", "a", "s0"));
+        assertEquals("Wrong count!", 0, counts.count("s1", "b", "s0"));
+        assertEquals("Wrong count!", 0, counts.count("s2", "a", "s0"));
+        assertEquals("Wrong outgoing count!", 3, counts.outgoingCount("s0"));
+        assertEquals("Wrong outgoing count!", 3, counts.outgoingCount("s1"));
+        assertEquals("Wrong outgoing count!", 0, counts.outgoingCount("s2"));
+        assertEquals("Wrong number of transitions!", 3, counts.size());
+    }
+
+    @Test
+    public void testSameAsMaps() {
+        TransitionCounts counts = new TransitionCounts();
+        Map<String, Integer> expected = new HashMap<>();
+        Map<String, Integer> expectedOutgoing = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            String source = "s" + random.nextInt(500);
+            String target = "s" + random.nextInt(500);
+            String action = "a" + random.nextInt(20);
+            counts.add(source, action, target, 1);
+            expected.merge(source + " " + action + " " + target, 1, Integer::sum);
+            expectedOutgoing.merge(source, 1, Integer::sum);
+        }
+        assertEquals("Wrong number of transitions!", expected.size(), counts.size());
+        Map<String, Integer> actual = new HashMap<>();
+        counts.forEach((source, action, target, count) -> {
+            actual.put(source + " " + action + " " + target, count);
+            assertEquals("Wrong outgoing count!", (int) expectedOutgoing.get(source),
+                    counts.outgoingCount(source));
+        });
+        assertEquals("Wrong transitions!", expected, actual);
+    }
+
+    @Test
+    public void testClear() {
+        TransitionCounts counts = new TransitionCounts();
+        counts.add("s0", "a", "s1", 1);
+        counts.clear();
+        assertEquals("Wrong number of transitions!", 0, counts.size());
+        assertEquals("Wrong outgoing count!", 0, counts.outgoingCount("s0"));
+        counts.add("s1", "b", "s0", 2);
+        assertEquals("Wrong count!", 2, counts.count("s1", "b", "s0"));
+        assertEquals("Wrong count!", 0, counts.count("s0", "a", "s1"));
+    }
+
+    @Test
+    public void testForEachChanged() {
+        TransitionCounts counts = new TransitionCounts();
+        counts.add("s0", "a", "s1", 1);
+        counts.add("s1", "b", "s2", 1);
+        counts.add("s2", "c", "s0", 1);
+        assertEquals("Wrong number of changed states!", 3, counts.changedCount());
+        Map<String, Integer> visited = new HashMap<>();
+        counts.forEachChanged((source, action, target, count)
+                -> visited.put(source + " " + action + " " + target, count));
+        assertEquals("Wrong number of visited transitions!", 3, visited.size());
+        assertEquals("Wrong number of changed states!", 0, counts.changedCount());
+
+        counts.add("s1", "b", "s2", 1);
+        counts.add("s1", "c", "s0", 1);
+        visited.clear();
+        counts.forEachChanged((source, action, target, count)
+                -> visited.put(source + " " + action + " " + target, count));
+        // All the outgoing transitions of s1, and only them
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("s1 b s2", 2);
+        expected.put("s1 c s0", 1);
+        assertEquals("Wrong visited transitions!", expected, visited);
+
+        visited.clear();
+        counts.forEachChanged((source, action, target, count)
+                -> visited.put(source + " " + action + " " + target, count));
+        assertTrue("No transition expected!", visited.isEmpty());
+    }
+
+    @Test
+    public void testLongIntHashMapRemove() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            // Few keys, to remove entries from long clusters
+            long key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.addTo(key, 1);
+                expected.merge(key, 1, Integer::sum);
+            }
+        }
+        assertEquals("Wrong size!", expected.size(), map.size());
+        for (long key = 0; key < 2000; key++) {
+            assertEquals("Wrong value!", (int) expected.getOrDefault(key, -1), map.get(key, -1));
+        }
+    }
+
+}
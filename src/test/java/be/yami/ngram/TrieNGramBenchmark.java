@@ -0,0 +1,103 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
+
+/**
+ * Measures the memory used by a {@link TrieNGram} and the throughput of
+ * {@link TrieNGram#addTrace(be.yami.Sequence)} for orders 2 to 5. Traces mimic
+ * web sessions: their length follows a geometric distribution (10 entries on
+ * average) and the popularity of the keys follows a Zipf-like distribution.
+ * This is not a unit test, run it using:
+ *
+ * <pre>
+ * java -cp ... be.yami.ngram.TrieNGramBenchmark [traces] [keys]
+ * </pre>
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class TrieNGramBenchmark {
+
+    private static final int MEAN_LENGTH = 10;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        List<MethodCallSequence> traces = generateTraces(count, keys);
+        long entries = 0;
+        for (MethodCallSequence trace : traces) {
+            entries += trace.size();
+        }
+        System.out.printf("%d traces, %d entries, %d keys%n", count, entries, keys);
+        System.out.printf("%5s %12s %12s %12s %14s%n", "order", "contexts", "heap (MB)", "time (ms)",
+                "entries/s");
+        for (int order = 2; order <= 5; order++) {
+            // Warm up
+            addTraces(new TrieNGram<>("warmup", order, ClassMethodKeyGenerator.getInstance()),
+                    traces.subList(0, Math.min(count, 10000)));
+            long before = usedMemory();
+            TrieNGram<MethodCall> ngram = new TrieNGram<>("benchmark", order,
+                    ClassMethodKeyGenerator.getInstance());
+            long start = System.nanoTime();
+            addTraces(ngram, traces);
+            long time = System.nanoTime() - start;
+            long memory = usedMemory() - before;
+            System.out.printf("%5d %12d %12.1f %12d %14.0f%n", order, ngram.getContextsCount(),
+                    memory / (1024.0 * 1024.0), time / 1000000, entries / (time / 1e9));
+        }
+    }
+
+    private static void addTraces(TrieNGram<MethodCall> ngram, List<MethodCallSequence> traces) {
+        for (MethodCallSequence trace : traces) {
+            ngram.addTrace(trace);
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<MethodCallSequence> generateTraces(int count, int keys) {
+        Random random = new Random(42);
+        List<MethodCallSequence> traces = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MethodCallSequence trace = new MethodCallSequence("Page");
+            do {
+                // Zipf-like: low indexes are much more frequent
+                int key = (int) Math.floor(Math.pow(keys + 1, random.nextDouble())) - 1;
+                trace.add(new MethodCall("Page", "p" + key));
+            } while (random.nextInt(MEAN_LENGTH) != 0);
+            traces.add(trace);
+        }
+        return traces;
+    }
+
+}
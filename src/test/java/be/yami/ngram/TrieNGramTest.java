@@ -0,0 +1,124 @@
+package be.yami.ngram;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.vibes.ts.UsageModel;
+import be.yami.java.ClassMethodKeyGenerator;
+import be.yami.java.MethodCall;
+import be.yami.java.MethodCallSequence;
+
+public class TrieNGramTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrieNGramTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testOrder2SameAsBigram() throws Exception {
+        List<MethodCallSequence> traces = NGramTestUtils.generateTraces(5000, 30);
+        Bigram<MethodCall> bigram = new Bigram<>("test", ClassMethodKeyGenerator.getInstance());
+        TrieNGram<MethodCall> ngram = new TrieNGram<>("test", 2, ClassMethodKeyGenerator.getInstance());
+        for (MethodCallSequence trace : traces) {
+            bigram.addTrace(trace);
+            ngram.addTrace(trace);
+        }
+        UsageModel expected = bigram.getModel();
+        UsageModel actual = ngram.getModel();
+        assertEquals("Wrong start state!", Bigram.START_STATE_ID, actual.getInitialState().getName());
+        assertEquals("Wrong number of states!", expected.getStatesCount(), actual.getStatesCount());
+        assertEquals("Wrong transitions!", NGramTestUtils.transitions(expected, false),
+                NGramTestUtils.transitions(actual, false));
+    }
+
+    @Test
+    public void testOrder3() throws Exception {
+        TrieNGram<MethodCall> ngram = new TrieNGram<>("test", 3, ClassMethodKeyGenerator.getInstance());
+        ngram.addTrace(NGramTestUtils.trace("a", "b", "c"));
+        ngram.addTrace(NGramTestUtils.trace("d", "b", "e"));
+        ngram.addTrace(NGramTestUtils.trace("a", "b", "c"));
+        UsageModel model = ngram.getModel();
+        assertEquals("Wrong number of states!", 8, model.getStatesCount());
+        // With a bigram, c and e would follow b with the same probability
+        Set<String> expected = new HashSet<>(Arrays.asList(
+                "s0 -Test.a-> s1 [" + (2.0 / 3.0) + "]",
+                "s1 -Test.b-> s2 [1.0]",
+                "s2 -Test.c-> s3 [1.0]",
+                "s3 -epsilon-> sX [1.0]",
+                "s0 -Test.d-> s4 [" + (1.0 / 3.0) + "]",
+                "s4 -Test.b-> s5 [1.0]",
+                "s5 -Test.e-> s6 [1.0]",
+                "s6 -epsilon-> sX [1.0]",
+                "sX -epsilon-> s0 [1.0]"));
+        assertEquals("Wrong transitions!", expected, NGramTestUtils.transitions(model, false));
+    }
+
+    @Test
+    public void testOrder1() throws Exception {
+        TrieNGram<MethodCall> ngram = new TrieNGram<>("test", 1, ClassMethodKeyGenerator.getInstance());
+        ngram.addTrace(NGramTestUtils.trace("a", "b", "a"));
+        UsageModel model = ngram.getModel();
+        assertEquals("Wrong number of states!", 2, model.getStatesCount());
+        Set<String> expected = new HashSet<>(Arrays.asList(
+                "s0 -Test.a-> s0 [0.5]",
+                "s0 -Test.b-> s0 [0.25]",
+                "s0 -epsilon-> sX [0.25]",
+                "sX -epsilon-> s0 [1.0]"));
+        assertEquals("Wrong transitions!", expected, NGramTestUtils.transitions(model, false));
+    }
+
+    @Test
+    public void testContextsShared() throws Exception {
+        TrieNGram<MethodCall> ngram = new TrieNGram<>("test", 4, ClassMethodKeyGenerator.getInstance());
+        ngram.addTrace(NGramTestUtils.trace("a", "b", "c", "d"));
+        ngram.addTrace(NGramTestUtils.trace("a", "b", "c", "e"));
+        // Root, a, ab, abc, b, bc, bcd, bce
+        assertEquals("Wrong number of contexts!", 8, ngram.getContextsCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidOrder() {
+        new TrieNGram<>("test", 0, ClassMethodKeyGenerator.getInstance());
+    }
+
+}
@@ -0,0 +1,212 @@
+package be.yami.web;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.vibes.ts.Transition;
+import be.vibes.ts.UsageModel;
+import be.yami.exception.ModelGenerationException;
+import be.yami.ngram.Bigram;
+import be.yami.ngram.NGram;
+import be.yami.ngram.ObjectKeyGenerator;
+import be.yami.web.apache.ApacheUserRequest;
+import be.yami.web.apache.ApacheUserSession;
+import be.yami.web.apache.UserRequesRRKeyGenerator;
+import be.yami.web.apache.UserRequesRRNKeyGenerator;
+import be.yami.web.apache.UserRequesRRNVKeyGenerator;
+import be.yami.Sequence;
+
+public class FanOutSessionProcessorTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FanOutSessionProcessorTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+        List<ObjectKeyGenerator<ApacheUserRequest>> keyGens = Arrays.asList(
+                UserRequesRRKeyGenerator.getInstance(), UserRequesRRNKeyGenerator.getInstance(),
+                UserRequesRRNVKeyGenerator.getInstance());
+        List<Bigram<ApacheUserRequest>> expected = new ArrayList<>();
+        List<Bigram<ApacheUserRequest>> actual = new ArrayList<>();
+        for (ObjectKeyGenerator<ApacheUserRequest> keyGen : keyGens) {
+            expected.add(new Bigram<>("test", keyGen));
+            actual.add(new Bigram<>("test", keyGen));
+        }
+        List<ApacheUserSession> sessions = generateSessions(2000);
+        try (FanOutSessionProcessor<ApacheUserRequest, ApacheUserSession> processor
+                = new FanOutSessionProcessor<>(actual, 16)) {
+            for (ApacheUserSession session : sessions) {
+                processor.process(session);
+            }
+        }
+        for (ApacheUserSession session : sessions) {
+            for (Bigram<ApacheUserRequest> bigram : expected) {
+                bigram.addTrace(session);
+            }
+        }
+        for (int i = 0; i < keyGens.size(); i++) {
+            UsageModel model = actual.get(i).getModel();
+            assertEquals("Wrong number of states!", expected.get(i).getModel().getStatesCount(),
+                    model.getStatesCount());
+            assertEquals("Wrong transitions!", transitions(expected.get(i).getModel()),
+                    transitions(model));
+        }
+        // Abstraction levels
+        assertTrue("Wrong number of states!", actual.get(0).getModel().getStatesCount()
+                < actual.get(1).getModel().getStatesCount());
+        assertTrue("Wrong number of states!", actual.get(1).getModel().getStatesCount()
+                < actual.get(2).getModel().getStatesCount());
+    }
+
+    @Test
+    public void testErrorReportedOnClose() throws Exception {
+        NGram<ApacheUserRequest> failing = new Bigram<ApacheUserRequest>("test",
+                UserRequesRRKeyGenerator.getInstance()) {
+            @Override
+            public void addTrace(Sequence<ApacheUserRequest> seq) {
+                throw new IllegalStateException("Failing NGram");
+            }
+        };
+        Bigram<ApacheUserRequest> bigram = new Bigram<>("test", UserRequesRRKeyGenerator.getInstance());
+        FanOutSessionProcessor<ApacheUserRequest, ApacheUserSession> processor
+                = new FanOutSessionProcessor<>(Arrays.asList(failing, bigram));
+        for (ApacheUserSession session : generateSessions(10)) {
+            processor.process(session);
+        }
+        try {
+            processor.close();
+            fail("Exception not reported!");
+        } catch (ModelGenerationException ex) {
+            assertTrue("Wrong cause!", ex.getCause() instanceof IllegalStateException);
+        }
+        // Other NGrams are still updated
+        assertTrue("Missing sessions!", bigram.getModel().getStatesCount() > 2);
+    }
+
+    @Test
+    public void testErrorDoesNotBlock() throws Exception {
+        NGram<ApacheUserRequest> failing = new Bigram<ApacheUserRequest>("test",
+                UserRequesRRKeyGenerator.getInstance()) {
+            @Override
+            public void addTrace(Sequence<ApacheUserRequest> seq) {
+                throw new StackOverflowError("Failing NGram");
+            }
+        };
+        Bigram<ApacheUserRequest> bigram = new Bigram<>("test", UserRequesRRKeyGenerator.getInstance());
+        FanOutSessionProcessor<ApacheUserRequest, ApacheUserSession> processor
+                = new FanOutSessionProcessor<>(Arrays.asList(failing, bigram), 1);
+        // More sessions than the capacity of the queues
+        for (ApacheUserSession session : generateSessions(10)) {
+            processor.process(session);
+        }
+        try {
+            processor.close();
+            fail("Error not reported!");
+        } catch (ModelGenerationException ex) {
+            assertTrue("Wrong cause!", ex.getCause().getCause() instanceof StackOverflowError);
+        }
+        assertTrue("Missing sessions!", bigram.getModel().getStatesCount() > 2);
+    }
+
+    @Test
+    public void testInterruptionReported() throws Exception {
+        FanOutSessionProcessor<ApacheUserRequest, ApacheUserSession> processor
+                = new FanOutSessionProcessor<>(Arrays.asList(
+                        new Bigram<>("test", UserRequesRRKeyGenerator.getInstance())));
+        Thread.currentThread().interrupt();
+        processor.process(generateSessions(1).get(0));
+        assertTrue("Interruption not restored!", Thread.interrupted());
+        try {
+            processor.close();
+            fail("Interruption not reported!");
+        } catch (ModelGenerationException ex) {
+            assertTrue("Wrong cause!", ex.getCause() instanceof ModelGenerationException);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testProcessAfterClose() throws Exception {
+        FanOutSessionProcessor<ApacheUserRequest, ApacheUserSession> processor
+                = new FanOutSessionProcessor<>(Arrays.asList(
+                        new Bigram<>("test", UserRequesRRKeyGenerator.getInstance())));
+        processor.close();
+        processor.process(generateSessions(1).get(0));
+    }
+
+    private static List<ApacheUserSession> generateSessions(int count) {
+        Random random = new Random(42);
+        List<ApacheUserSession> sessions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ApacheUserSession session = new ApacheUserSession("10.0.0." + (i % 256));
+            int length = 1 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                String[] parameters = random.nextBoolean() ? new String[]{"q"} : new String[]{"p", "q"};
+                String[] values = new String[parameters.length];
+                for (int k = 0; k < values.length; k++) {
+                    values[k] = Integer.toString(random.nextInt(20));
+                }
+                session.enqueue(new ApacheUserRequest(session.getUserId(), new Date(i * 60000L + j),
+                        "GET", "/page" + random.nextInt(5) + ".php", parameters, values));
+            }
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private static Set<String> transitions(UsageModel model) {
+        Set<String> transitions = new HashSet<>();
+        Iterator<Transition> it = model.transitions();
+        while (it.hasNext()) {
+            Transition tr = it.next();
+            transitions.add(tr.getSource().getName() + " -" + tr.getAction().getName() + "-> "
+                    + tr.getTarget().getName() + " [" + model.getProbability(tr) + "]");
+        }
+        return transitions;
+    }
+
+}
@@ -0,0 +1,135 @@
+package be.yami.web;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SessionTimeoutIndexTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionTimeoutIndexTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    private static final long TIMEOUT = 100;
+
+    private final SessionTimeoutIndex<UserSession<UserRequest>> index = new SessionTimeoutIndex<>(TIMEOUT);
+    private final List<UserSession<UserRequest>> completed = new ArrayList<>();
+
+    @Test
+    public void testExpire() {
+        UserSession<UserRequest> s1 = open("s1", 0);
+        UserSession<UserRequest> s2 = open("s2", 50);
+        index.expire(100, completed::add);
+        assertTrue("No session should be completed!", completed.isEmpty());
+        index.expire(101, completed::add);
+        assertEquals("Wrong number of completed sessions!", 1, completed.size());
+        assertSame("Wrong completed session!", s1, completed.get(0));
+        assertNull("Completed session still open!", index.get("s1"));
+        assertSame("Wrong open session!", s2, index.get("s2"));
+        assertEquals("Wrong number of open sessions!", 1, index.size());
+    }
+
+    @Test
+    public void testExpireExtendedSession() {
+        UserSession<UserRequest> s1 = open("s1", 0);
+        UserSession<UserRequest> s2 = open("s2", 10);
+        enqueue(s1, 80);
+        index.expire(150, completed::add);
+        assertEquals("Wrong number of completed sessions!", 1, completed.size());
+        assertSame("Wrong completed session!", s2, completed.get(0));
+        assertSame("Extended session should still be open!", s1, index.get("s1"));
+        index.expire(181, completed::add);
+        assertEquals("Wrong number of completed sessions!", 2, completed.size());
+        assertSame("Wrong completed session!", s1, completed.get(1));
+        assertEquals("Wrong number of open sessions!", 0, index.size());
+    }
+
+    @Test
+    public void testExpireOutOfOrderRequest() {
+        UserSession<UserRequest> s1 = open("s1", 50);
+        enqueue(s1, 0);
+        index.expire(101, completed::add);
+        assertEquals("Wrong number of completed sessions!", 1, completed.size());
+        assertSame("Wrong completed session!", s1, completed.get(0));
+        index.expire(151, completed::add);
+        assertEquals("Session completed twice!", 1, completed.size());
+    }
+
+    @Test
+    public void testExpireReopenedSession() {
+        UserSession<UserRequest> s1 = open("s1", 0);
+        enqueue(s1, 10);
+        index.expire(111, completed::add);
+        UserSession<UserRequest> s1bis = open("s1", 200);
+        index.expire(250, completed::add);
+        assertEquals("Wrong number of completed sessions!", 1, completed.size());
+        assertSame("Wrong open session!", s1bis, index.get("s1"));
+    }
+
+    @Test
+    public void testFlush() {
+        open("s1", 0);
+        open("s2", 10);
+        index.flush(completed::add);
+        assertEquals("Wrong number of completed sessions!", 2, completed.size());
+        assertEquals("Wrong number of open sessions!", 0, index.size());
+        index.expire(1000, completed::add);
+        assertEquals("Wrong number of completed sessions!", 2, completed.size());
+    }
+
+    private UserSession<UserRequest> open(String userId, long time) {
+        UserSession<UserRequest> session = new UserSession<>(userId);
+        session.enqueue(request(userId, time));
+        index.add(session);
+        return session;
+    }
+
+    private void enqueue(UserSession<UserRequest> session, long time) {
+        Date previous = session.getEndTime();
+        session.enqueue(request(session.getUserId(), time));
+        index.updated(session, previous);
+    }
+
+    private static UserRequest request(String client, long time) {
+        return new UserRequest(client, new Date(time), "GET", "/", new String[0], new String[0]);
+    }
+
+}
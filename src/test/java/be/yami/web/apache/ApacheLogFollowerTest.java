@@ -0,0 +1,273 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.yami.ngram.Bigram;
+
+public class ApacheLogFollowerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheLogFollowerTest.class);
+
+    private static final long TIMEOUT = 10000;
+
+    private static final String LAST_LINE = "9.9.9.9 - - [01/Jan/2020:00:00:00 +0100] \"GET /last HTTP/1.1\" 200 6760\n";
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testFollow() throws Exception {
+        String log = new String(ApacheUserSessionBuilderTest.generateLog(2000, 20), StandardCharsets.UTF_8);
+        Path file = tmp.newFile("access.log").toPath();
+        // Split in the middle of lines
+        append(file, log.substring(0, 1000));
+        AtomicInteger parsed = new AtomicInteger();
+        ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance().pollInterval(10);
+        List<ApacheUserSession> actual = configure(builder, parsed);
+        Future<?> following = follow(builder, file);
+        append(file, log.substring(1000, 50000));
+        waitFor(() -> parsed.get() > 100);
+        append(file, log.substring(50000));
+        waitFor(() -> parsed.get() == countRequests(log));
+        builder.stopFollowing();
+        following.get();
+        List<ApacheUserSession> expected = ApacheUserSessionBuilderTest.buildSessions(
+                ApacheUserSessionBuilder.newInstance(), new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+    }
+
+    @Test
+    public void testFollowResume() throws Exception {
+        String log = new String(ApacheUserSessionBuilderTest.generateLog(2000, 20), StandardCharsets.UTF_8);
+        int split = log.indexOf('\n', log.length() / 2) + 1;
+        String first = log.substring(0, split);
+        String second = log.substring(split) + LAST_LINE;
+        Path file = tmp.newFile("access.log").toPath();
+        Path checkpoint = new File(tmp.getRoot(), "access.ckpt").toPath();
+        append(file, first);
+
+        AtomicInteger parsed = new AtomicInteger();
+        Bigram<ApacheUserRequest> bigram = new Bigram<>("test", UserRequesRRNKeyGenerator.getInstance());
+        ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance().pollInterval(10)
+                .checkpoint(checkpoint, 60000, bigram);
+        List<ApacheUserSession> actual = configure(builder, parsed, bigram);
+        Future<?> following = follow(builder, file);
+        waitFor(() -> parsed.get() == countRequests(first));
+        builder.stopFollowing();
+        following.get();
+        assertTrue("No checkpoint!", Files.exists(checkpoint));
+
+        append(file, second);
+        parsed.set(0);
+        Bigram<ApacheUserRequest> resumed = new Bigram<>("test", UserRequesRRNKeyGenerator.getInstance());
+        builder = ApacheUserSessionBuilder.newInstance().pollInterval(10)
+                .checkpoint(checkpoint, 60000, resumed);
+        List<ApacheUserSession> actualResumed = configure(builder, parsed, resumed);
+        following = follow(builder, file);
+        // Only the new lines are read
+        waitFor(() -> parsed.get() == countRequests(second));
+        builder.stopFollowing();
+        following.get();
+        actual.addAll(actualResumed);
+
+        // All the sessions but the one of the last line have expired
+        Bigram<ApacheUserRequest> expectedBigram = new Bigram<>("test", UserRequesRRNKeyGenerator.getInstance());
+        List<ApacheUserSession> expected = ApacheUserSessionBuilderTest.buildSessions(
+                ApacheUserSessionBuilder.newInstance(), new ByteArrayInputStream((first + second).getBytes(StandardCharsets.UTF_8)));
+        expected.remove(expected.size() - 1);
+        for (ApacheUserSession session : expected) {
+            expectedBigram.addTrace(session);
+        }
+        assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+        assertEquals("Wrong number of states!", expectedBigram.getModel().getStatesCount(),
+                resumed.getModel().getStatesCount());
+    }
+
+    @Test
+    public void testFollowRotated() throws Exception {
+        String log = new String(ApacheUserSessionBuilderTest.generateLog(2000, 20), StandardCharsets.UTF_8);
+        int split = log.indexOf('\n', log.length() / 2) + 1;
+        Path file = tmp.newFile("access.log").toPath();
+        append(file, log.substring(0, 1000));
+        AtomicInteger parsed = new AtomicInteger();
+        ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance().pollInterval(10);
+        List<ApacheUserSession> actual = configure(builder, parsed);
+        Future<?> following = follow(builder, file);
+        waitFor(() -> parsed.get() > 0);
+        // The server keeps on writing in the rotated file until it reopens the log
+        Path rotated = Files.move(file, file.resolveSibling("access.log.1"));
+        append(rotated, log.substring(1000, split));
+        append(file, log.substring(split));
+        waitFor(() -> parsed.get() == countRequests(log));
+        builder.stopFollowing();
+        following.get();
+        List<ApacheUserSession> expected = ApacheUserSessionBuilderTest.buildSessions(
+                ApacheUserSessionBuilder.newInstance(), new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+    }
+
+    @Test
+    public void testFollowTruncated() throws Exception {
+        String log = new String(ApacheUserSessionBuilderTest.generateLog(2000, 20), StandardCharsets.UTF_8);
+        int split = log.indexOf('\n', log.length() * 2 / 3) + 1;
+        String first = log.substring(0, split);
+        String second = log.substring(split);
+        Path file = tmp.newFile("access.log").toPath();
+        append(file, first);
+        AtomicInteger parsed = new AtomicInteger();
+        ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance().pollInterval(10);
+        List<ApacheUserSession> actual = configure(builder, parsed);
+        Future<?> following = follow(builder, file);
+        waitFor(() -> parsed.get() == countRequests(first));
+        Files.write(file, second.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+        waitFor(() -> parsed.get() == countRequests(log));
+        builder.stopFollowing();
+        following.get();
+        List<ApacheUserSession> expected = ApacheUserSessionBuilderTest.buildSessions(
+                ApacheUserSessionBuilder.newInstance(), new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+    }
+
+    @Test
+    public void testFollowWallClockTimeout() throws Exception {
+        Path file = tmp.newFile("access.log").toPath();
+        append(file, "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test1 HTTP/1.1\" 200 6760\n"
+                + "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test2 HTTP/1.1\" 200 6760\n");
+        AtomicInteger parsed = new AtomicInteger();
+        ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance().pollInterval(10)
+                .sessionTimeout(200);
+        List<ApacheUserSession> actual = configure(builder, parsed);
+        Future<?> following = follow(builder, file);
+        try {
+            // The session expires while no line is appended to the log
+            waitFor(() -> !actual.isEmpty());
+            assertEquals("Wrong number of sessions!", 1, actual.size());
+            assertEquals("Wrong session size!", 2, actual.get(0).size());
+        } finally {
+            builder.stopFollowing();
+            following.get();
+        }
+    }
+
+    private Future<?> follow(ApacheUserSessionBuilder builder, Path file) {
+        return executor.submit(() -> {
+            builder.follow(file);
+            return null;
+        });
+    }
+
+    private static List<ApacheUserSession> configure(ApacheUserSessionBuilder builder,
+            AtomicInteger parsed, Bigram<ApacheUserRequest> bigram) {
+        List<ApacheUserSession> sessions = configure(builder, parsed);
+        builder.addListener((ApacheUserSession session) -> bigram.addTrace(session));
+        return sessions;
+    }
+
+    private static List<ApacheUserSession> configure(ApacheUserSessionBuilder builder,
+            AtomicInteger parsed) {
+        builder.include((ApacheUserRequest request) -> {
+            parsed.incrementAndGet();
+            return true;
+        });
+        List<ApacheUserSession> sessions = Collections.synchronizedList(new ArrayList<>());
+        builder.addListener((ApacheUserSession session) -> sessions.add(session));
+        builder.exclude((ApacheUserRequest request) -> request.getClient().equals("0.0.0.0")
+                || request.getResource().endsWith("7"));
+        return sessions;
+    }
+
+    private static void append(Path file, String lines) throws Exception {
+        Files.write(file, lines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static int countRequests(String log) {
+        int count = 0;
+        for (String line : log.split("\n")) {
+            if (!line.startsWith("not")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timeout while following the log!", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<String> sorted(List<ApacheUserSession> sessions) {
+        List<String> list = new ArrayList<>();
+        for (ApacheUserSession session : sessions) {
+            list.add(session.toString());
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+}
@@ -0,0 +1,127 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+import static be.yami.web.apache.ApacheLogFormatPatternBuilder.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ApacheLogLineParserTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheLogLineParserTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    private static final String[] COMMON_LINES = {
+        "138.48.33.128 - - [28/Feb/2014:16:25:21 +0100] \"GET /wordpress/wp-includes/css/admin-bar.min.css?ver=3.8.1 HTTP/1.1\" 304 -",
+        "rollier.info.fundp.ac.be moi xde [28/Feb/2014:16:27:48 +0100] \"POST /wordpress/wp-admin/admin-ajax.php HTTP/1.1\" 200 26",
+        "41.197.132.41 - \"\" [02/Jan/2013:06:50:15 +0100] \"GET /claroline/document/document.php?cmd=exChDir&file=L0NPVVJTX1dFQl9TRVJWSUNF&cidReset=true&cidReq=INNOM361 HTTP/1.1\" 302 -",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test1? HTTP/1.1\" 200 6760",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test1?a=b=c&&d HTTP/1.1\" 200 6760",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"PUT /test1 HTTP/1.1\" 200 6760",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /te\\\"st HTTP/1.1\" 200 6760",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"-\" 400 0",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test1 HTTP/1.1\" 2000 6760",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test1 HTTP/1.1\" 200 6760 ",
+        "1.1.1.1 - - [1/Jan/2013:00:00:13 +0100] \"GET /test1 HTTP/1.1\" 200 6760",
+        "",
+        "sdfljs n mlkqj kmlsqj mml ksmlkjqs mqmj"
+    };
+
+    private static final String[] COMBINED_LINES = {
+        "138.48.209.58 - - [15/May/2013:20:29:41 +0200] \"GET /wp-content/plugins/jetpack/modules/wpgroho.js?ver=3.4.2 HTTP/1.1\" 304 282 \"http://www.age-namur.be/\" \"Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.31 (KHTML, like Gecko) Chrome/26.0.1410.63 Safari/537.31\"",
+        "rollier.info.fundp.ac.be moi xde [15/May/2013:20:29:41 +0200] \"GET /wp-content/plugins/jetpack/modules/wpgroho.js?ver=3.4.2 HTTP/1.1\" 304 - \"http://www.age-namur.be/\" \"Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.31 (KHTML, like Gecko) Chrome/26.0.1410.63 Safari/537.31\"",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test1 HTTP/1.1\" 200 6760 \"-\" \"agent \\\"quoted\\\" name\"",
+        "1.1.1.1 - - [01/Jan/2013:00:00:13 +0100] \"GET /test1 HTTP/1.1\" 200 6760 \"-\"",
+        "sdnlkjnd  mlkjqmlk  mlqkj smflk mlkqjslmq jm lkjqsdmfkljqsmdlkj"
+    };
+
+    @Test
+    public void testTokenizerSupportedFormats() {
+        assertNotNull("Common log format should be tokenized!", ApacheLogLineTokenizer.compile(COMMON_LOG_FORMAT));
+        assertNotNull("Combined log format should be tokenized!", ApacheLogLineTokenizer.compile(COMBINED_LOG_FORMAT));
+        assertNull("Request format should not be tokenized!", ApacheLogLineTokenizer.compile(REQUEST_FORMAT));
+        assertNull("Unknown separators should not be tokenized!", ApacheLogLineTokenizer.compile("%h-%l"));
+    }
+
+    @Test
+    public void testParseCommonLogFormat() {
+        ApacheLogLineParser parser = new ApacheLogLineParser(COMMON_LOG_FORMAT);
+        assertTrue("Parser should use the tokenizer!", parser.isTokenized());
+        ApacheUserRequest request = parser.parse(COMMON_LINES[2]);
+        assertNotNull("Line should be parsed!", request);
+        assertEquals("Wrong client!", "41.197.132.41", request.getClient());
+        assertEquals("Wrong request type!", "GET", request.getRequestType());
+        assertEquals("Wrong resource!", "/claroline/document/document.php", request.getResource());
+        assertArrayEquals("Wrong parameters!", new String[]{"cmd", "file", "cidReset", "cidReq"}, request.getParameters());
+        assertArrayEquals("Wrong parameters values!", new String[]{"exChDir", "L0NPVVJTX1dFQl9TRVJWSUNF", "true", "INNOM361"}, request.getParametersValues());
+        assertEquals("Wrong status code!", 302, request.getStatusCode());
+        assertEquals("Wrong size!", 0, request.getObjSize());
+    }
+
+    @Test
+    public void testParseInvalidLines() {
+        ApacheLogLineParser parser = new ApacheLogLineParser(COMMON_LOG_FORMAT);
+        assertNull("Invalid status code should not be parsed!", parser.parse(COMMON_LINES[8]));
+        assertNull("Trailing characters should not be parsed!", parser.parse(COMMON_LINES[9]));
+        assertNull("Invalid time should not be parsed!", parser.parse(COMMON_LINES[10]));
+        assertNull("Empty line should not be parsed!", parser.parse(COMMON_LINES[11]));
+    }
+
+    @Test
+    public void testTokenizerSameAsPatternCommonLogFormat() {
+        assertSameRequests(COMMON_LOG_FORMAT, COMMON_LINES);
+    }
+
+    @Test
+    public void testTokenizerSameAsPatternCombinedLogFormat() {
+        assertSameRequests(COMBINED_LOG_FORMAT, COMBINED_LINES);
+    }
+
+    private void assertSameRequests(String format, String[] lines) {
+        ApacheLogLineParser tokenized = new ApacheLogLineParser(format, true);
+        ApacheLogLineParser regexp = new ApacheLogLineParser(format, false);
+        assertTrue("Parser should use the tokenizer!", tokenized.isTokenized());
+        assertFalse("Parser should use regular expressions!", regexp.isTokenized());
+        for (String line : lines) {
+            ApacheUserRequest expected = regexp.parse(line);
+            ApacheUserRequest actual = tokenized.parse(line);
+            LOG.debug("Expected {}, actual {}", expected, actual);
+            assertEquals("Wrong result for line " + line, String.valueOf(expected), String.valueOf(actual));
+        }
+    }
+
+}
@@ -0,0 +1,164 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import static org.junit.Assert.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ApacheTimestampParserTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApacheTimestampParserTest.class);
+
+    @Rule
+    public TestRule watcher = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            LOG.info(String.format("Starting test: %s()...",
+                    description.getMethodName()));
+        }
+    ;
+
+    };
+
+    private static final String[] ZONES = {"UTC", "Europe/Brussels", "America/Los_Angeles",
+        "Asia/Kolkata"};
+
+    @Test
+    public void testParse() throws Exception {
+        ApacheTimestampParser parser = new ApacheTimestampParser();
+        assertEquals("Wrong time!", 971211336000L, parser.parse("10/Oct/2000:13:55:36 -0700"));
+        assertEquals("Wrong time!", 1356994813000L, parser.parse("01/Jan/2013:00:00:13 +0100"));
+        // Cached second
+        assertEquals("Wrong time!", 1356994813000L, parser.parse("01/Jan/2013:00:00:13 +0100"));
+        assertEquals("Wrong time!", 1357038000000L, parser.parse("01/JAN/2013:12:00:00 +0100"));
+    }
+
+    @Test
+    public void testParseAfternoon() throws Exception {
+        ApacheTimestampParser parser = new ApacheTimestampParser();
+        long morning = parser.parse("01/Jan/2013:11:59:59 +0000");
+        long noon = parser.parse("01/Jan/2013:12:00:00 +0000");
+        long afternoon = parser.parse("01/Jan/2013:13:00:00 +0000");
+        assertEquals("Wrong time!", morning + 1000, noon);
+        assertEquals("Wrong time!", noon + 3600000, afternoon);
+    }
+
+    @Test
+    public void testParseSameAsDateFormat() throws Exception {
+        ApacheTimestampParser parser = new ApacheTimestampParser();
+        Random random = new Random(42);
+        for (String zone : ZONES) {
+            SimpleDateFormat format = newDateFormat(zone);
+            for (int i = 0; i < 5000; i++) {
+                // Between 1970 and 2100
+                long time = (long) (random.nextDouble() * 4102444800L) * 1000L;
+                String text = format.format(new Date(time));
+                assertEquals("Wrong time for " + text + "!", format.parse(text).getTime(),
+                        parser.parse(text));
+            }
+        }
+    }
+
+    @Test
+    public void testParseLenient() throws Exception {
+        ApacheTimestampParser parser = new ApacheTimestampParser();
+        SimpleDateFormat format = newDateFormat("UTC");
+        String text = "31/Feb/2016:25:61:61 +0000";
+        assertEquals("Wrong time!", format.parse(text).getTime(), parser.parse(text));
+    }
+
+    @Test
+    public void testParseInvalid() {
+        ApacheTimestampParser parser = new ApacheTimestampParser();
+        String[] invalid = {"10/Oct/2000:13:55:36", "10/Foo/2000:13:55:36 -0700",
+            "10/Oct/2000:13:5a:36 -0700", "10/Oct/2000 13:55:36 -0700",
+            "10/Oct/2000:13:55:36 *0700"};
+        for (String text : invalid) {
+            try {
+                parser.parse(text);
+                fail("Time " + text + " should not be parsed!");
+            } catch (ParseException e) {
+                LOG.debug("Expected exception: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testParseConcurrent() throws Exception {
+        final ApacheTimestampParser parser = new ApacheTimestampParser();
+        final SimpleDateFormat format = newDateFormat("Europe/Brussels");
+        final List<String> texts = new ArrayList<>();
+        final List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String text = format.format(new Date(1356994800000L + i * 1500L));
+            texts.add(text);
+            expected.add(format.parse(text).getTime());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int shift = t;
+                results.add(executor.submit(() -> {
+                    for (int n = 0; n < 50; n++) {
+                        for (int i = 0; i < texts.size(); i++) {
+                            int j = (i * (shift + 1) + n) % texts.size();
+                            if (parser.parse(texts.get(j)) != expected.get(j)) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue("Wrong time parsed concurrently!", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static SimpleDateFormat newDateFormat(String zone) {
+        SimpleDateFormat format = new SimpleDateFormat(ApacheLogFormatPatternBuilder.DATE_FORMAT,
+                ApacheLogFormatPatternBuilder.DATE_LOCALE);
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format;
+    }
+
+}
@@ -0,0 +1,102 @@
+package be.yami.web.apache;
+
+/*-
+ * #%L
+ * YAMI - Yet Another Model Inference tool
+ * %%
+ * Copyright (C) 2014 - 2018 University of Namur
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput (in lines per second) of
+ * {@link ApacheUserSessionBuilder} as the number of concurrently open sessions
+ * grows. This class is not a unit test and has to be launched manually:
+ *
+ * <pre>
+ * java -cp ... be.yami.web.apache.ApacheUserSessionBuilderBenchmark [lines] [clients...]
+ * </pre>
+ *
+ * @author Xavier Devroey - xavier.devroey@gmail.com
+ */
+public class ApacheUserSessionBuilderBenchmark {
+
+    private static final int DEFAULT_LINES = 1000000;
+    private static final int[] DEFAULT_CLIENTS = {1000, 10000, 50000, 100000, 200000};
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+        int[] clients = DEFAULT_CLIENTS;
+        if (args.length > 1) {
+            clients = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                clients[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("open sessions\tlines\ttime (ms)\tlines/sec");
+        for (int nbrClients : clients) {
+            byte[] log = generateLog(lines, nbrClients);
+            // Warm up
+            run(log);
+            long time = run(log);
+            System.out.println(String.format("%d\t%d\t%d\t%.0f", nbrClients, lines,
+                    time, lines / (time / 1000.0)));
+        }
+    }
+
+    private static long run(byte[] log) throws Exception {
+        final AtomicLong count = new AtomicLong();
+        ApacheUserSessionBuilder builder = ApacheUserSessionBuilder.newInstance();
+        builder.addListener((ApacheUserSession session) -> count.incrementAndGet());
+        long start = System.currentTimeMillis();
+        builder.buildSessions(new ByteArrayInputStream(log));
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Generates a log where the requests of the given number of clients are
+     * interleaved round robin. The clock moves one second every few lines
+     * (at least 10, more for many clients), so that a full pass over the
+     * clients lasts at most half the default session timeout: once every
+     * client has been seen, all the sessions stay open.
+     */
+    static byte[] generateLog(int lines, int clients) {
+        SimpleDateFormat format = new SimpleDateFormat(ApacheLogFormatPatternBuilder.DATE_FORMAT,
+                ApacheLogFormatPatternBuilder.DATE_LOCALE);
+        long passSeconds = ApacheUserSessionBuilder.DEFAULT_TIMEOUT / 1000 / 2;
+        int linesPerSecond = (int) Math.max(10, (clients + passSeconds - 1) / passSeconds);
+        StringBuilder buff = new StringBuilder(lines * 90);
+        long time = 1356994800000L;
+        String date = null;
+        for (int i = 0; i < lines; i++) {
+            if (i % linesPerSecond == 0) {
+                time += 1000;
+                date = format.format(new Date(time));
+            }
+            int client = i % clients;
+            buff.append(10 + client / 65536).append('.').append(client / 256 % 256)
+                    .append('.').append(client % 256).append(".1 - - [").append(date)
+                    .append("] \"GET /page").append(i % 50).append("?p=").append(i % 7)
+                    .append(" HTTP/1.1\" 200 6760\n");
+        }
+        return buff.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
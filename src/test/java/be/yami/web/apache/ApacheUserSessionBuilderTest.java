@@ -25,11 +25,26 @@ import be.yami.web.apache.ApacheUserSessionBuilder;
 import be.yami.web.apache.ApacheUserRequest;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
@@ -53,6 +68,9 @@ public class ApacheUserSessionBuilderTest {
 					description.getMethodName()));
 		};
 	};
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
 	
 	@Test
 	public void testBuildSessions() throws Exception {
@@ -90,4 +108,228 @@ public class ApacheUserSessionBuilderTest {
 		
 	}
 
+
+	@Test
+	public void testBuildSessionsPipelined() throws Exception {
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				ApacheUserSessionBuilderTest.class.getClassLoader().getResourceAsStream("test.log"));
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.parallelism(4).batchSize(3),
+				ApacheUserSessionBuilderTest.class.getClassLoader().getResourceAsStream("test.log"));
+		assertEquals("Wrong number of sessions!", 4, actual.size());
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void testBuildSessionsPipelinedGeneratedLog() throws Exception {
+		byte[] log = generateLog(5000, 40);
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				new ByteArrayInputStream(log));
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.parallelism(3).batchSize(64), new ByteArrayInputStream(log));
+		assertTrue("Sessions should be split by timeouts!", expected.size() > 40);
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void testBuildSessionsSharded() throws Exception {
+		byte[] log = generateLog(5000, 40);
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				new ByteArrayInputStream(log));
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.parallelism(2).shards(5).batchSize(64), new ByteArrayInputStream(log));
+		// Sessions of different shards are completed in any order
+		assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+	}
+
+	@Test
+	public void testBuildSessionsShardedSingleParser() throws Exception {
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				ApacheUserSessionBuilderTest.class.getClassLoader().getResourceAsStream("test.log"));
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.shards(3).batchSize(2),
+				ApacheUserSessionBuilderTest.class.getClassLoader().getResourceAsStream("test.log"));
+		assertEquals("Wrong number of sessions!", 4, actual.size());
+		assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+	}
+
+	@Test
+	public void testBuildSessionsMappedFile() throws Exception {
+		byte[] log = generateLog(5000, 40);
+		File file = tmp.newFile("generated.log");
+		Files.write(file.toPath(), log);
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				new ByteArrayInputStream(log));
+		// Regions smaller than a line have to be extended
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.regionSize(32).batchSize(1), file.toPath());
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+		actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.regionSize(10000).parallelism(3).batchSize(3), file.toPath());
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+		actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.parallelism(2).shards(3), file.toPath());
+		assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+	}
+
+	@Test
+	public void testBuildSessionsMappedFileCrLf() throws Exception {
+		String log = new String(generateLog(500, 10), StandardCharsets.UTF_8);
+		File file = tmp.newFile("crlf.log");
+		Files.write(file.toPath(), log.replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8));
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.regionSize(4096), file.toPath());
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void testBuildSessionsCompressedFile() throws Exception {
+		byte[] log = generateLog(2000, 20);
+		File file = tmp.newFile("access.log.1.gz");
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+			out.write(log);
+		}
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				new ByteArrayInputStream(log));
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance(), file.toPath());
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+		actual = buildSessions(ApacheUserSessionBuilder.newInstance().parallelism(2),
+				new FileInputStream(file));
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+	}
+
+	@Test
+	public void testBuildSessionsMerged() throws Exception {
+		byte[] log = generateLog(5000, 40);
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				new ByteArrayInputStream(log));
+		// One log per node, the requests of a client may be served by any node
+		List<InputStream> inputs = split(log, 3);
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance()
+				.batchSize(16), inputs);
+		assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+		inputs = split(log, 4);
+		actual = buildSessions(ApacheUserSessionBuilder.newInstance().shards(3), inputs);
+		assertEquals("Wrong sessions!", sorted(expected), sorted(actual));
+	}
+
+	@Test
+	public void testBuildSessionsMergedEmptyInput() throws Exception {
+		byte[] log = generateLog(500, 10);
+		List<ApacheUserSession> expected = buildSessions(ApacheUserSessionBuilder.newInstance(),
+				new ByteArrayInputStream(log));
+		List<InputStream> inputs = new ArrayList<InputStream>();
+		inputs.add(new ByteArrayInputStream(new byte[0]));
+		inputs.add(new ByteArrayInputStream(log));
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance(), inputs);
+		assertEquals("Wrong sessions!", expected.toString(), actual.toString());
+	}
+
+	/**
+	 * Splits the given log into several logs, line by line. The lines of a
+	 * client are spread on all the logs, and each log stays in chronological
+	 * order.
+	 */
+	private static List<InputStream> split(byte[] log, int count) {
+		StringBuilder[] buffs = new StringBuilder[count];
+		for (int i = 0; i < count; i++) {
+			buffs[i] = new StringBuilder();
+		}
+		String[] lines = new String(log, StandardCharsets.UTF_8).split("\n");
+		String previous = null;
+		int node = 0;
+		for (String line : lines) {
+			// Requests of a client at the same time stay on the same node
+			String key = line.length() > 40 ? line.substring(0, 40) : line;
+			if (!key.equals(previous)) {
+				node = (node + 1) % count;
+			}
+			previous = key;
+			buffs[node].append(line).append('\n');
+		}
+		List<InputStream> inputs = new ArrayList<InputStream>();
+		for (StringBuilder buff : buffs) {
+			inputs.add(new ByteArrayInputStream(buff.toString().getBytes(StandardCharsets.UTF_8)));
+		}
+		return inputs;
+	}
+
+	@Test
+	public void testBuildSessionsMappedEmptyFile() throws Exception {
+		File file = tmp.newFile("empty.log");
+		List<ApacheUserSession> actual = buildSessions(ApacheUserSessionBuilder.newInstance(), file.toPath());
+		assertTrue("No session expected!", actual.isEmpty());
+	}
+
+	private static List<String> sorted(List<ApacheUserSession> sessions) {
+		List<String> list = new ArrayList<String>();
+		for (ApacheUserSession session : sessions) {
+			list.add(session.toString());
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	static List<ApacheUserSession> buildSessions(ApacheUserSessionBuilder builder, InputStream in) throws Exception {
+		List<ApacheUserSession> sessions = configure(builder);
+		builder.buildSessions(in);
+		return sessions;
+	}
+
+	static List<ApacheUserSession> buildSessions(ApacheUserSessionBuilder builder, Path file) throws Exception {
+		List<ApacheUserSession> sessions = configure(builder);
+		builder.buildSessions(file);
+		return sessions;
+	}
+
+	static List<ApacheUserSession> buildSessions(ApacheUserSessionBuilder builder, List<InputStream> inputs) throws Exception {
+		List<ApacheUserSession> sessions = configure(builder);
+		builder.buildSessions(inputs);
+		return sessions;
+	}
+
+	private static List<ApacheUserSession> configure(ApacheUserSessionBuilder builder) {
+		final List<ApacheUserSession> sessions = new ArrayList<ApacheUserSession>();
+		builder.addListener(new UserSessionProcessor<ApacheUserSession>() {
+			@Override
+			public void process(ApacheUserSession session) {
+				sessions.add(session);
+			}
+		});
+		builder.exclude(new EntryFilter<ApacheUserRequest>() {
+			@Override
+			public boolean filter(ApacheUserRequest request) {
+				return request.getClient().equals("0.0.0.0") || request.getResource().endsWith("7");
+			}
+		});
+		return sessions;
+	}
+
+	/**
+	 * Generates a log with the given number of lines and clients. Some lines
+	 * can not be parsed and some clients stay idle long enough for their
+	 * sessions to timeout.
+	 */
+	static byte[] generateLog(int lines, int clients) {
+		SimpleDateFormat format = new SimpleDateFormat(ApacheLogFormatPatternBuilder.DATE_FORMAT,
+				ApacheLogFormatPatternBuilder.DATE_LOCALE);
+		Random random = new Random(42);
+		StringBuilder buff = new StringBuilder();
+		long time = 1356994800000L;
+		for (int i = 0; i < lines; i++) {
+			time += random.nextInt(60000);
+			if (i % 97 == 0) {
+				buff.append("not a log line\n");
+			}
+			int client = random.nextInt(clients);
+			buff.append("1.1.1.").append(client).append(" - - [")
+					.append(format.format(new Date(time))).append("] \"GET /page")
+					.append(random.nextInt(10)).append("?p=").append(random.nextInt(3))
+					.append(" HTTP/1.1\" 200 6760\n");
+		}
+		return buff.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
 }